@@ -13,6 +13,7 @@ import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventListener;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType;
 import fr.jmmc.oiexplorer.core.model.oi.SubsetDefinition;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
 import java.io.File;
 import java.io.IOException;
 import java.util.Vector;
@@ -54,8 +55,8 @@ public final class ExportUtils {
         final OIFitsCollectionManagerEventListener readyEventListener
                                                    = new ExportWhenReadyListener(file, options);
 
-        // Register READY event listener:
-        ocm.getReadyEventNotifier().register(readyEventListener);
+        // Register READY event listener (through the event batch: Ready events are delivered after any batched state):
+        ocm.getReadyEventNotifier().register(OIFitsCollectionEventBatch.getInstance().getListener(readyEventListener));
 
         // Keep code alive:
         aliveListeners.add(readyEventListener);
@@ -86,7 +87,7 @@ public final class ExportUtils {
 
         @Override
         public void dispose() {
-            ocm.unbind(this);
+            OIFitsCollectionEventBatch.getInstance().unbind(this);
         }
 
         /**
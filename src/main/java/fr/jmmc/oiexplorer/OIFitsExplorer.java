@@ -34,9 +34,13 @@ import fr.jmmc.oiexplorer.gui.action.LoadOIFitsFromCollectionAction;
 import fr.jmmc.oiexplorer.gui.action.NewAction;
 import fr.jmmc.oiexplorer.gui.action.OIFitsExplorerExportAction;
 import fr.jmmc.oiexplorer.gui.action.OIFitsExplorerExportAllAction;
+import fr.jmmc.oiexplorer.gui.action.RefreshCollectionAction;
 import fr.jmmc.oiexplorer.gui.action.RemoveAction;
+import fr.jmmc.oiexplorer.gui.action.RestoreSessionAction;
 import fr.jmmc.oiexplorer.gui.action.SaveOIDataCollectionAction;
 import fr.jmmc.oiexplorer.interop.SendOIFitsAction;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
+import fr.jmmc.oiexplorer.model.SessionAutoSaver;
 import fr.jmmc.oitools.model.DataModel;
 import fr.jmmc.oitools.model.OIFitsChecker;
 import java.awt.BorderLayout;
@@ -87,6 +91,8 @@ public final class OIFitsExplorer extends App {
     /* members */
     /** main Panel */
     private MainPanel mainPanel;
+    /** save collection action */
+    private SaveOIDataCollectionAction saveAction = null;
 
     /**
      * Main entry point : use swing setup and then launch the application
@@ -146,6 +152,14 @@ public final class OIFitsExplorer extends App {
 
         // Enable OI columns for OIFits datamodel
         DataModel.setOiModelColumnsSupport(true);
+
+        // Initialize the collection index before any GUI listener (event ordering):
+        OIFitsCollectionIndex.getInstance();
+
+        if (!Bootstrapper.isHeadless()) {
+            // Start the background autosave:
+            SessionAutoSaver.getInstance();
+        }
     }
 
     /**
@@ -202,6 +216,9 @@ public final class OIFitsExplorer extends App {
                 final JFrame appFrame = App.getExistingFrame();
                 if (appFrame != null) {
                     appFrame.setVisible(true);
+
+                    // propose to restore the previous session if closed with unsaved changes:
+                    RestoreSessionAction.checkUnsavedSession();
                 }
             }
         });
@@ -216,23 +233,22 @@ public final class OIFitsExplorer extends App {
     public boolean canBeTerminatedNow() {
         logger.debug("OifitsExplorerGui.finish() handler called.");
 
-        // Ask the user if he wants to save modifications
-        //@TODO replace by code when save will be available.
+        // Ask the user if he wants to save modifications (tracked by the autosave):
         MessagePane.ConfirmSaveChanges result = MessagePane.ConfirmSaveChanges.Ignore;
-        //MessagePane.ConfirmSaveChanges result = MessagePane.showConfirmSaveChangesBeforeClosing();
+        if (!Bootstrapper.isHeadless() && SessionAutoSaver.getInstance().isModified()) {
+            result = MessagePane.showConfirmSaveChangesBeforeClosing();
+        }
 
         // Handle user choice
         switch (result) {
             // If the user clicked the "Save" button, save and exit
             case Save:
-                /*
-                 if (this.saveAction != null) {
-                 return this.saveAction.save();
-                 }
-                 */
+                if (this.saveAction != null) {
+                    return this.saveAction.save();
+                }
                 break;
 
-            // If the user clicked the "Don't Save" button, exit
+            // If the user clicked the "Don't Save" button, exit (the autosaved session can be restored later)
             case Ignore:
                 break;
 
@@ -252,6 +268,10 @@ public final class OIFitsExplorer extends App {
      */
     @Override
     public void cleanup() {
+        if (!Bootstrapper.isHeadless()) {
+            // write the last changes:
+            SessionAutoSaver.getInstance().stop();
+        }
         // dispose GUI:
         if (this.mainPanel != null) {
             this.mainPanel.dispose();
@@ -324,9 +344,11 @@ public final class OIFitsExplorer extends App {
         new NewAction();
         new LoadOIFitsAction();
         new LoadOIFitsFromCollectionAction();
+        new RefreshCollectionAction();
 
         new LoadOIDataCollectionAction();
-        new SaveOIDataCollectionAction();
+        this.saveAction = new SaveOIDataCollectionAction();
+        new RestoreSessionAction();
 
         new ExportOIFitsAction();
 
@@ -18,7 +18,13 @@ public final class Preferences extends fr.jmmc.oiexplorer.core.Preferences {
     private static final Logger logger = LoggerFactory.getLogger(Preferences.class.getName());
 
     /* Preferences */
-    // TODO: add specific preferences
+    /** Preference : save / restore the binary session snapshot next to the OIFits collection file (oixp) */
+    public final static String SESSION_SNAPSHOT = "session.snapshot";
+    /** Preference : enable the background autosave of the OIFits collection */
+    public final static String SESSION_AUTOSAVE = "session.autosave";
+    /** Preference : autosave delay (ms) after the last change */
+    public final static String SESSION_AUTOSAVE_DELAY = "session.autosave.delay";
+
     /**
      * Private constructor that must be empty.
      *
@@ -63,7 +69,10 @@ public final class Preferences extends fr.jmmc.oiexplorer.core.Preferences {
 
         logger.debug("Preferences.setDefaultPreferences()");
 
-        // TODO
+        // Session:
+        setDefaultPreference(SESSION_SNAPSHOT, Boolean.TRUE);
+        setDefaultPreference(SESSION_AUTOSAVE, Boolean.TRUE);
+        setDefaultPreference(SESSION_AUTOSAVE_DELAY, 2000);
     }
 
     /**
@@ -5,7 +5,8 @@ package fr.jmmc.oiexplorer.gui;
 
 import fr.jmmc.jmal.ALX;
 import fr.jmmc.jmcs.gui.component.GenericJTree;
-import fr.jmmc.jmcs.gui.util.SwingUtils;
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
 import fr.jmmc.jmcs.util.ObjectUtils;
 import fr.jmmc.jmcs.util.StringUtils;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
@@ -19,6 +20,11 @@ import fr.jmmc.oiexplorer.core.model.oi.Plot;
 import fr.jmmc.oiexplorer.core.model.oi.SubsetDefinition;
 import fr.jmmc.oiexplorer.core.model.oi.SubsetFilter;
 import fr.jmmc.oiexplorer.core.model.oi.TableUID;
+import fr.jmmc.oiexplorer.model.GranuleGroupingField;
+import fr.jmmc.oiexplorer.model.GranuleSearchIndex;
+import fr.jmmc.oiexplorer.model.GranuleSortIndex;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
 import fr.jmmc.oitools.model.Granule;
 import fr.jmmc.oitools.model.InstrumentMode;
 import fr.jmmc.oitools.model.InstrumentModeManager;
@@ -28,18 +34,25 @@ import fr.jmmc.oitools.model.OITable;
 import fr.jmmc.oitools.model.Target;
 import fr.jmmc.oitools.model.TargetManager;
 import fr.jmmc.oitools.util.GranuleComparator;
-import java.awt.Component;
+import java.awt.GridBagConstraints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.swing.JTree;
+import javax.swing.JTextField;
+import javax.swing.Timer;
 import javax.swing.ToolTipManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 import org.slf4j.Logger;
@@ -65,6 +78,15 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                     Granule.GranuleField.INS_MODE
             )
     );
+    /** grouping fields matching CMP_TARGET_INSMODE (sorted granule views) */
+    private static final List<GranuleGroupingField> FIELDS_TARGET_INSMODE = Arrays.asList(
+            GranuleGroupingField.TARGET,
+            GranuleGroupingField.INS_MODE
+    );
+    /** delay (ms) to coalesce tree selection events before updating the subset */
+    private static final int SELECTION_DEBOUNCE_DELAY = 150;
+    /** tree build task */
+    private static final Task TASK_TREE = new Task("DataTree");
 
     /* members */
     /** OIFitsCollectionManager singleton reference */
@@ -73,12 +95,26 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
     private String subsetId = OIFitsCollectionManager.CURRENT_SUBSET_DEFINITION;
     /** Swing data tree */
     private GenericJTree<Object> dataTree;
+    /** tooltip cache */
+    private TreeTooltipCache tooltipCache = null;
+    /** search field (target / instrument mode / night) */
+    private JTextField jTextFieldSearch;
+    /** tree version (incremented by each tree generation) */
+    private int treeVersion = 0;
+    /** node index of the current tree (target, instrument mode and table lookups) */
+    private TreeIndex treeIndex = new TreeIndex(null);
+    /** selection timer (debounce): only the last selection updates the subset */
+    private Timer selectionTimer = null;
+    /** true if the pending tree generation must update the subset selection */
+    private boolean selectionUpdatePending = false;
 
     /** Creates new form DataTreePanel */
     public DataTreePanel() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
         // always bind at the beginning of the constructor (to maintain correct ordering):
-        ocm.bindCollectionChangedEvent(this);
-        ocm.getActivePlotChangedEventNotifier().register(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+        ocm.getActivePlotChangedEventNotifier().register(eventListener);
 
         initComponents();
         postInit();
@@ -94,7 +130,19 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
             logger.debug("dispose: {}", ObjectUtils.getObjectInfo(this));
         }
 
-        ocm.unbind(this);
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
+
+        cancelPendingSelection();
+    }
+
+    /**
+     * Cancel the pending (debounced) tree selection processing:
+     * the selection was made on the previous subset or tree and must not be applied to the new one
+     */
+    private void cancelPendingSelection() {
+        if (selectionTimer != null) {
+            selectionTimer.stop();
+        }
     }
 
     /**
@@ -109,14 +157,75 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
         final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
         rootNode.setUserObject("Targets");
 
-        ToolTipManager.sharedInstance().registerComponent(dataTree);
+        // tooltips are computed on hover only (cached per node):
+        tooltipCache = new TreeTooltipCache(dataTree, new TreeTooltipCache.TooltipProvider() {
+            /** temporary buffer */
+            private final StringBuilder tmpBuf = new StringBuilder(256);
 
-        dataTree.setCellRenderer(new TooltipTreeCellRenderer());
+            @Override
+            public boolean isExpensive(final Object userObject) {
+                return false;
+            }
+
+            @Override
+            public Object prepareTooltip(final Object userObject) {
+                return userObject;
+            }
+
+            @Override
+            public String computeTooltip(final Object input) {
+                return getTreeTooltipText(input, tmpBuf);
+            }
+        }, "DataTreeTooltip");
+
+        ToolTipManager.sharedInstance().registerComponent(dataTree);
 
         // tree selection listener :
         dataTree.addTreeSelectionListener(this);
 
+        // coalesce selection events (arrow keys, range selection):
+        selectionTimer = new Timer(SELECTION_DEBOUNCE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent ae) {
+                processTreeSelection();
+            }
+        });
+        selectionTimer.setRepeats(false);
+
         genericTreePanel.add(dataTree);
+
+        // instant search (indexed target / instrument mode / night names):
+        jTextFieldSearch = new JTextField();
+        jTextFieldSearch.setToolTipText("Show only targets whose name, alias, instrument mode or night starts with the given text");
+        jTextFieldSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent de) {
+                searchChanged();
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent de) {
+                searchChanged();
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent de) {
+                // no-op
+            }
+        });
+        final GridBagConstraints gridBagConstraints = new GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 2;
+        gridBagConstraints.fill = GridBagConstraints.HORIZONTAL;
+        add(jTextFieldSearch, gridBagConstraints);
+    }
+
+    /**
+     * Regenerate the data tree when the search text changes:
+     * the subset definition is left unchanged (its selection is restored if still visible)
+     */
+    private void searchChanged() {
+        generateTree(ocm.getOIFitsCollection(), true);
     }
 
     /**
@@ -124,13 +233,38 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
      * @param oiFitsCollection OIFitsCollection to process
      */
     private void updateOIFitsCollection(final OIFitsCollection oiFitsCollection) {
+        cancelPendingSelection();
+
         // force clean up ...
         setSubsetId(subsetId);
 
-        generateTree(oiFitsCollection);
+        generateTree(oiFitsCollection, false);
+    }
 
+    /**
+     * Restore the tree selection from the subset definition (tree regenerated)
+     * @param oiFitsCollection OIFitsCollection to process
+     * @param keepSubset true to leave the subset definition unchanged (search)
+     */
+    private void restoreSelection(final OIFitsCollection oiFitsCollection, final boolean keepSubset) {
         final SubsetDefinition subsetRef = getSubsetDefinitionRef();
 
+        if (keepSubset) {
+            // ignore selection events while the selection is restored:
+            dataTree.removeTreeSelectionListener(this);
+            try {
+                if (subsetRef != null) {
+                    final TreePath[] selection = computeSelectionFromSubsetFilter(subsetRef.getFilter(), oiFitsCollection);
+                    if (selection.length != 0) {
+                        dataTree.selectPaths(selection);
+                    }
+                }
+            } finally {
+                dataTree.addTreeSelectionListener(this);
+            }
+            return;
+        }
+
         // ALWAYS select a target
         if (oiFitsCollection.isEmpty()) {
             processSelection(null, null, null);
@@ -164,26 +298,112 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
     }
 
     /**
-     * Generate the tree from the current edited list of targets
+     * Generate the tree from the current edited list of targets:
+     * the tree nodes are built by a background worker from a snapshot of the collection
+     * (see TreeBuildSwingWorker) then swapped in the tree on the EDT (see treeBuilt()).
+     * A newer generation cancels the pending one.
      * @param oiFitsCollection OIFitsCollection to process
+     * @param keepSubset true to leave the subset definition unchanged (search)
      */
-    private void generateTree(final OIFitsCollection oiFitsCollection) {
+    private void generateTree(final OIFitsCollection oiFitsCollection, final boolean keepSubset) {
+        // filter granules matching the search text (if any):
+        final String query = jTextFieldSearch.getText().trim();
+        final OIFitsCollectionIndex collectionIndex = OIFitsCollectionIndex.getInstance();
+        final Set<Object> matches = (query.isEmpty()) ? null : collectionIndex.getSearchIndex().search(query);
+
+        // snapshot of the collection (granules and their tables):
+        final Map<Granule, Set<OIData>> oiDataPerGranule = new HashMap<Granule, Set<OIData>>(oiFitsCollection.getOiDataPerGranule());
+
+        // a search must not cancel the selection update of a pending collection change:
+        final boolean keep = keepSubset && !selectionUpdatePending;
+        selectionUpdatePending = !keep;
+
+        new TreeBuildSwingWorker(this, oiFitsCollection, oiDataPerGranule, collectionIndex.getSortIndex(), matches, keep,
+                ++treeVersion).executeTask();
+    }
+
+    /**
+     * Swap the tree built in background, restore the expanded nodes and the subset selection
+     * @param oiFitsCollection processed OIFitsCollection
+     * @param builtTreeIndex new nodes (detached root node) and their index
+     * @param keepSubset true to leave the subset definition unchanged (search)
+     * @param version tree version
+     */
+    private void treeBuilt(final OIFitsCollection oiFitsCollection, final TreeIndex builtTreeIndex,
+                           final boolean keepSubset, final int version) {
+        if (version != treeVersion) {
+            // obsolete:
+            return;
+        }
+        selectionUpdatePending = false;
+
+        // invalidate tooltips:
+        tooltipCache.clear();
 
         final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
-        rootNode.removeAllChildren();
+        final TreeExpansionState state = TreeExpansionState.capture(dataTree, rootNode);
+
+        final DefaultMutableTreeNode builtRootNode = builtTreeIndex.rootNode;
+
+        // ignore selection events while nodes are replaced:
+        dataTree.removeTreeSelectionListener(this);
+        try {
+            rootNode.removeAllChildren();
+            treeIndex = builtTreeIndex;
+
+            final DefaultMutableTreeNode[] children = new DefaultMutableTreeNode[builtRootNode.getChildCount()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = (DefaultMutableTreeNode) builtRootNode.getChildAt(i);
+            }
+            builtRootNode.removeAllChildren();
+            for (DefaultMutableTreeNode child : children) {
+                rootNode.add(child);
+            }
+
+            // fire node structure changed :
+            dataTree.fireNodeChanged(rootNode);
+
+            // selection is restored from the subset definition:
+            state.restore(dataTree, rootNode, false);
+        } finally {
+            dataTree.addTreeSelectionListener(this);
+        }
+
+        restoreSelection(oiFitsCollection, keepSubset);
+    }
+
+    /**
+     * Build the tree nodes (target / instrument mode / tables) on a detached root node and index them
+     * @param oiDataPerGranule OIData tables per granule (snapshot)
+     * @param sortIndex sorted granule views
+     * @param matches matching field values (search) or null
+     * @return new nodes (detached root node) and their index
+     */
+    private static TreeIndex buildNodes(final Map<Granule, Set<OIData>> oiDataPerGranule,
+                                                     final GranuleSortIndex sortIndex, final Set<Object> matches) {
+        final long startTime = System.nanoTime();
+
+        final DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode();
+        final TreeIndex treeIndex = new TreeIndex(rootNode);
 
         // Sort granule by criteria (target / insMode / night):
         final GranuleComparator comparator = CMP_TARGET_INSMODE;
 
-        final List<Granule> granules = oiFitsCollection.getSortedGranules(comparator);
+        // cached sorted view (read-only):
+        List<Granule> granules = sortIndex.getSortedGranules(FIELDS_TARGET_INSMODE, null);
         logger.debug("granules sorted: {}", granules);
 
-        final Map<Granule, Set<OIData>> oiDataPerGranule = oiFitsCollection.getOiDataPerGranule();
+        if (matches != null) {
+            granules = GranuleSearchIndex.filter(granules, matches);
+        }
 
         // Add nodes and their data tables:
         final List<Granule.GranuleField> fields = comparator.getSortDirectives();
         final int fieldsLen = fields.size();
 
+        // hashed child lookups (de-duplication and selection):
+        final TreeNodeIndex nodeIndex = treeIndex.nodeIndex;
+
         final DefaultMutableTreeNode[] pathNodes = new DefaultMutableTreeNode[fieldsLen + 1];
         int level;
         Granule.GranuleField field;
@@ -221,7 +441,7 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                     }
                 }
 
-                pathNodes[level] = dataTree.addNode(pathNodes[level - 1], value);
+                pathNodes[level] = nodeIndex.addNode(pathNodes[level - 1], value);
             }
 
             final DefaultMutableTreeNode parent = pathNodes[level - 1];
@@ -232,49 +452,54 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                 // for now per OIData:
                 for (OITable table : oiDatas) {
                     // Avoid Table duplicates :
-                    if (GenericJTree.findTreeNode(parent, table) == null) {
-                        dataTree.addNode(parent, table);
+                    if (nodeIndex.findChild(parent, table) == null) {
+                        treeIndex.addTable(parent, nodeIndex.addNode(parent, table), table);
                     }
                 }
             }
         }
 
-        // fire node structure changed :
-        dataTree.fireNodeChanged(rootNode);
+        logger.debug("buildNodes: {} granules - duration = {} ms.", granules.size(), 1e-6d * (System.nanoTime() - startTime));
+
+        return treeIndex;
     }
 
     /**
-     * Process the tree selection events
+     * Process the tree selection events:
+     * events are coalesced (debounce timer) so that only the final selection updates the subset
      * @param e tree selection event
      */
     @Override
     public void valueChanged(final TreeSelectionEvent e) {
+        if (dataTree.getSelectionPaths() != null) {
+            // restart the timer: the pending processing of the previous selection is cancelled
+            selectionTimer.restart();
+        }
+    }
 
+    /**
+     * Update the subset from the current tree selection (debounce timer)
+     */
+    private void processTreeSelection() {
         final TreePath[] selection = dataTree.getSelectionPaths();
 
         if (selection != null) {
-            // Use invokeLater to selection change issues with editors :
-            SwingUtils.invokeLaterEDT(new Runnable() {
-                @Override
-                public void run() {
-                    // Check if the root node is selected and is the only one.
-                    final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
-                    if (selection.length == 1 && selection[0].getLastPathComponent() == rootNode) {
-                        dataTree.selectFirstChildNode(rootNode); // always select a node other than root
-                        return;
-                    }
+            // Check if the root node is selected and is the only one.
+            final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
+            if (selection.length == 1 && selection[0].getLastPathComponent() == rootNode) {
+                dataTree.selectFirstChildNode(rootNode); // always select a node other than root
+                return;
+            }
 
-                    updateSubsetFilterFromTreeSelection(selection);
+            updateSubsetFilterFromTreeSelection(selection);
 
-                    // we compute a new selection, because it can prune the old one from unwanted paths
-                    final TreePath[] newSelection = computeSelectionFromSubsetFilter(
-                            getSubsetDefinitionRef().getFilter(), ocm.getOIFitsCollection());
+            // we compute a new selection, because it can prune the old one from unwanted paths
+            final TreePath[] newSelection = computeSelectionFromSubsetFilter(
+                    getSubsetDefinitionRef().getFilter(), ocm.getOIFitsCollection());
 
-                    if (!Arrays.equals(selection, newSelection)) {
-                        dataTree.selectPaths(newSelection); // ask to change the selection if it has changed
-                    }
-                }
-            });
+            if (!Arrays.equals(selection, newSelection)) {
+                dataTree.selectPaths(newSelection); // ask to change the selection if it has changed
+            }
         }
     }
 
@@ -351,12 +576,14 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
         final ArrayList<TreePath> selection = new ArrayList<>();
 
         if (filter.getTargetUID() == null) {
-            // if target null, select first target as a default
-            DefaultMutableTreeNode firstTargetNode = (DefaultMutableTreeNode) dataTree.getRootNode().getFirstChild();
-            selection.add(new TreePath(firstTargetNode.getPath()));
+            // if target null, select first target as a default (none if filtered out by the search)
+            if (dataTree.getRootNode().getChildCount() != 0) {
+                DefaultMutableTreeNode firstTargetNode = (DefaultMutableTreeNode) dataTree.getRootNode().getFirstChild();
+                selection.add(new TreePath(firstTargetNode.getPath()));
+            }
         } else {
             final Target target = oiFitsCollection.getTargetManager().getGlobalByUID(filter.getTargetUID());
-            final DefaultMutableTreeNode targetTreeNode = dataTree.findTreeNode(target);
+            final DefaultMutableTreeNode targetTreeNode = treeIndex.findTarget(target);
 
             if (targetTreeNode != null) {
                 DefaultMutableTreeNode insModeTreeNode = null;
@@ -364,7 +591,7 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
 
                 if (filter.getInsModeUID() != null) {
                     final InstrumentMode insMode = oiFitsCollection.getInstrumentModeManager().getGlobalByUID(filter.getInsModeUID());
-                    insModeTreeNode = GenericJTree.findTreeNode(targetTreeNode, insMode);
+                    insModeTreeNode = treeIndex.nodeIndex.findChild(targetTreeNode, insMode);
                 }
 
                 if (!filter.getTables().isEmpty()) {
@@ -381,21 +608,16 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                         // for every table of the filter
                         for (TableUID tableUID : filter.getTables()) {
 
-                            final String filePath = tableUID.getFile().getFile();
                             final Integer extNb = tableUID.getExtNb();
 
-                            for (int j = 0, sizeJ = insNode.getChildCount(); j < sizeJ; j++) {
-                                final DefaultMutableTreeNode node = (DefaultMutableTreeNode) insNode.getChildAt(j);
-                                final OITable oiTable = (OITable) node.getUserObject();
-
-                                if (filePath.equals(oiTable.getOIFitsFile().getAbsoluteFilePath())) {
-                                    if (extNb != null && extNb.intValue() == oiTable.getExtNb()) {
-                                        if (listTableTreeNode == null) {
-                                            listTableTreeNode = new ArrayList<>();
-                                        }
-                                        listTableTreeNode.add(node);
-                                        break;
+                            if (extNb != null) {
+                                // hashed lookup (file path, extNb):
+                                final DefaultMutableTreeNode node = treeIndex.findTable(insNode, tableUID.getFile().getFile(), extNb.intValue());
+                                if (node != null) {
+                                    if (listTableTreeNode == null) {
+                                        listTableTreeNode = new ArrayList<>();
                                     }
+                                    listTableTreeNode.add(node);
                                 }
                             }
                         }
@@ -564,6 +786,7 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
      * @param subsetId subset identifier
      */
     public void setSubsetId(final String subsetId) {
+        cancelPendingSelection();
         this.subsetId = subsetId;
     }
 
@@ -594,6 +817,7 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                 updateOIFitsCollection(event.getOIFitsCollection());
                 break;
             case ACTIVE_PLOT_CHANGED:
+                cancelPendingSelection();
                 updateOIFitsCollection(event.getActivePlot());
                 break;
             default:
@@ -632,6 +856,12 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
                 return toString(userObject);
             }
 
+            /** This method is called as the cursor moves within the tree */
+            @Override
+            public String getToolTipText(final MouseEvent evt) {
+                return (tooltipCache != null) ? tooltipCache.getToolTipText(evt) : null;
+            }
+
             /**
              * Return the label displayed in the data tree
              * @param table OITable to display
@@ -657,115 +887,237 @@ public final class DataTreePanel extends javax.swing.JPanel implements TreeSelec
         };
     }
 
-    private final static class TooltipTreeCellRenderer extends DefaultTreeCellRenderer {
+    /**
+     * Return the tooltip of the given tree user object
+     * @param value tree user object
+     * @param sb temporary buffer
+     * @return tooltip or null
+     */
+    private static String getTreeTooltipText(final Object value, final StringBuilder sb) {
+        sb.setLength(0);
+
+        if (value instanceof Target) {
+            final Target target = (Target) value;
+            sb.append("<b>name:</b> ").append(target.getTarget());
+
+            final List<String> aliases = getTargetManager().getSortedUniqueAliases(target);
+            if (aliases != null) {
+                sb.append("<hr>");
+                sb.append("<b>Aliases:</b><br>");
+                for (int j = 0, end = aliases.size(); j < end; j++) {
+                    if (j != 0) {
+                        sb.append("<br>");
+                    }
+                    sb.append("- ").append(aliases.get(j));
+                }
+                sb.append("<hr>");
+            } else {
+                sb.append("<br>");
+            }
+            sb.append("<b>Coords:</b> ");
+            ALX.toHMS(sb, target.getRaEp0());
+            sb.append(' ');
+            ALX.toDMS(sb, target.getDecEp0());
+
+            // TODO: check units
+            if (!Double.isNaN(target.getPmRa()) && !Double.isNaN(target.getPmDec())) {
+                // convert deg/year in mas/year :
+                sb.append("<br><b>Proper motion</b> (mas/yr): ").append(target.getPmRa() * ALX.DEG_IN_MILLI_ARCSEC)
+                        .append(' ').append(target.getPmDec() * ALX.DEG_IN_MILLI_ARCSEC);
+            }
+            if (!Double.isNaN(target.getParallax()) && !Double.isNaN(target.getParaErr())) {
+                sb.append("<br><b>Parallax</b> (mas): ").append(target.getParallax() * ALX.DEG_IN_MILLI_ARCSEC)
+                        .append(" [").append(target.getParaErr() * ALX.DEG_IN_MILLI_ARCSEC).append(']');
+            }
+            if (target.getSpecTyp() != null && !target.getSpecTyp().isEmpty()) {
+                sb.append("<br><b>Spectral types</b>: ").append(target.getSpecTyp());
+            }
+        } else if (value instanceof InstrumentMode) {
+            final InstrumentMode insMode = (InstrumentMode) value;
+            sb.append("<b>name:</b> ").append(insMode.getInsName());
+
+            final List<String> aliases = getInstrumentModeManager().getSortedUniqueAliases(insMode);
+            if (aliases != null) {
+                sb.append("<hr>");
+                sb.append("<b>Aliases:</b><br>");
+                for (int j = 0, end = aliases.size(); j < end; j++) {
+                    if (j != 0) {
+                        sb.append("<br>");
+                    }
+                    sb.append("- ").append(aliases.get(j));
+                }
+                sb.append("<hr>");
+            } else {
+                sb.append("<br>");
+            }
+            sb.append("<b>Nb channels:</b> ").append(insMode.getNbChannels());
+            sb.append("<br><b>Lambda min:</b> ").append(insMode.getLambdaMin());
+            sb.append("<br><b>Lambda max:</b> ").append(insMode.getLambdaMax());
+            sb.append("<br><b>Resolution:</b> ").append(insMode.getResPower());
+        } else if (value instanceof OIData) {
+            final OIData oiData = (OIData) value;
+            sb.append("<b>Table:</b> ").append(oiData.getExtName()).append('#').append(oiData.getExtNb());
+            sb.append("<br><b>OIFits:</b> ").append(oiData.getOIFitsFile().getFileName());
+            sb.append("<br><b>DATE-OBS:</b> ").append(oiData.getDateObs());
+            sb.append("<br><b>ARRNAME:</b> ").append(oiData.getArrName());
+            sb.append("<br><b>INSNAME:</b> ").append(oiData.getInsName());
+            sb.append("<br><b>NB_MEASUREMENTS:</b> ").append(oiData.getNbMeasurements());
+
+            sb.append("<br><b>Baselines:</b> ");
+            for (short[] staIndex : oiData.getDistinctStaIndex()) {
+                sb.append(oiData.getStaNames(staIndex)).append(' '); // cached
+            }
+            sb.append("<br><b>Configurations:</b> ");
+            for (short[] staConf : oiData.getDistinctStaConf()) {
+                sb.append(oiData.getStaNames(staConf)).append(' '); // cached
+            }
+        }
+        if (sb.length() == 0) {
+            return null;
+        } else {
+            sb.insert(0, "<html>");
+            sb.append("</html>");
+        }
+        return sb.toString();
+    }
 
-        private static final long serialVersionUID = 1L;
+    /**
+     * This worker builds the data tree nodes from a collection snapshot in background
+     */
+    private static final class TreeBuildSwingWorker extends TaskSwingWorker<TreeIndex> {
+
+        /* members */
+        /** data tree panel to refresh */
+        private final DataTreePanel panel;
+        /** OIFitsCollection to process */
+        private final OIFitsCollection oiFitsCollection;
+        /** OIData tables per granule (snapshot) */
+        private final Map<Granule, Set<OIData>> oiDataPerGranule;
+        /** sorted granule views */
+        private final GranuleSortIndex sortIndex;
+        /** matching field values (search) or null */
+        private final Set<Object> matches;
+        /** true to leave the subset definition unchanged (search) */
+        private final boolean keepSubset;
+        /** tree version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param panel data tree panel to refresh
+         * @param oiFitsCollection OIFitsCollection to process
+         * @param oiDataPerGranule OIData tables per granule (snapshot)
+         * @param sortIndex sorted granule views
+         * @param matches matching field values (search) or null
+         * @param keepSubset true to leave the subset definition unchanged (search)
+         * @param version tree version
+         */
+        private TreeBuildSwingWorker(final DataTreePanel panel, final OIFitsCollection oiFitsCollection,
+                                     final Map<Granule, Set<OIData>> oiDataPerGranule, final GranuleSortIndex sortIndex,
+                                     final Set<Object> matches,
+                                     final boolean keepSubset, final int version) {
+            super(TASK_TREE);
+            this.panel = panel;
+            this.oiFitsCollection = oiFitsCollection;
+            this.oiDataPerGranule = oiDataPerGranule;
+            this.sortIndex = sortIndex;
+            this.matches = matches;
+            this.keepSubset = keepSubset;
+            this.version = version;
+        }
 
-        /** temporary buffer */
-        private final StringBuilder tmpBuf = new StringBuilder(64);
+        /**
+         * Build the tree nodes.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return new nodes (detached root node) and their index
+         */
+        @Override
+        public TreeIndex computeInBackground() {
+            return buildNodes(oiDataPerGranule, sortIndex, matches);
+        }
 
+        /**
+         * Swap the tree.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param builtTreeIndex new nodes (detached root node) and their index
+         */
         @Override
-        public Component getTreeCellRendererComponent(JTree tree, Object value,
-                                                      boolean sel, boolean expanded, boolean leaf, int row,
-                                                      boolean hasFocus) {
-
-            if (value != null) {
-                final Object userObject;
-                if (value instanceof DefaultMutableTreeNode) {
-                    userObject = ((DefaultMutableTreeNode) value).getUserObject();
-                    setToolTipText(getTreeTooltipText(userObject, tmpBuf));
-                }
+        public void refreshUI(final TreeIndex builtTreeIndex) {
+            panel.treeBuilt(oiFitsCollection, builtTreeIndex, keepSubset, version);
+        }
+    }
+
+    /**
+     * Index of the data tree nodes built with the tree: target nodes, child nodes per parent (instrument modes)
+     * and table nodes per instrument mode node keyed by (absolute file path, extNb)
+     */
+    private static final class TreeIndex {
+
+        /** root node used to build the tree (detached) */
+        final DefaultMutableTreeNode rootNode;
+        /** child nodes per parent node keyed by user object */
+        final TreeNodeIndex nodeIndex = new TreeNodeIndex();
+        /** table nodes per parent node (identity) keyed by table key */
+        private final Map<DefaultMutableTreeNode, Map<TableKey, DefaultMutableTreeNode>> tablesPerNode
+                                                                                      = new IdentityHashMap<DefaultMutableTreeNode, Map<TableKey, DefaultMutableTreeNode>>();
+
+        TreeIndex(final DefaultMutableTreeNode rootNode) {
+            this.rootNode = rootNode;
+        }
+
+        DefaultMutableTreeNode findTarget(final Target target) {
+            return (rootNode != null) ? nodeIndex.findChild(rootNode, target) : null;
+        }
+
+        void addTable(final DefaultMutableTreeNode parent, final DefaultMutableTreeNode node, final OITable table) {
+            Map<TableKey, DefaultMutableTreeNode> tables = tablesPerNode.get(parent);
+            if (tables == null) {
+                tables = new HashMap<TableKey, DefaultMutableTreeNode>(16);
+                tablesPerNode.put(parent, tables);
+            }
+            final TableKey key = new TableKey(table.getOIFitsFile().getAbsoluteFilePath(), table.getExtNb());
+            // keep the first match:
+            if (!tables.containsKey(key)) {
+                tables.put(key, node);
             }
-            return super.getTreeCellRendererComponent(tree, value, sel,
-                    expanded, leaf, row, hasFocus);
         }
 
-        private String getTreeTooltipText(final Object value, final StringBuilder sb) {
-            sb.setLength(0);
+        DefaultMutableTreeNode findTable(final DefaultMutableTreeNode parent, final String filePath, final int extNb) {
+            final Map<TableKey, DefaultMutableTreeNode> tables = tablesPerNode.get(parent);
+            return (tables != null) ? tables.get(new TableKey(filePath, extNb)) : null;
+        }
+    }
 
-            if (value instanceof Target) {
-                final Target target = (Target) value;
-                sb.append("<b>name:</b> ").append(target.getTarget());
+    /**
+     * Table key (absolute file path, extNb)
+     */
+    private static final class TableKey {
 
-                final List<String> aliases = getTargetManager().getSortedUniqueAliases(target);
-                if (aliases != null) {
-                    sb.append("<hr>");
-                    sb.append("<b>Aliases:</b><br>");
-                    for (int j = 0, end = aliases.size(); j < end; j++) {
-                        if (j != 0) {
-                            sb.append("<br>");
-                        }
-                        sb.append("- ").append(aliases.get(j));
-                    }
-                    sb.append("<hr>");
-                } else {
-                    sb.append("<br>");
-                }
-                sb.append("<b>Coords:</b> ");
-                ALX.toHMS(sb, target.getRaEp0());
-                sb.append(' ');
-                ALX.toDMS(sb, target.getDecEp0());
-
-                // TODO: check units
-                if (!Double.isNaN(target.getPmRa()) && !Double.isNaN(target.getPmDec())) {
-                    // convert deg/year in mas/year :
-                    sb.append("<br><b>Proper motion</b> (mas/yr): ").append(target.getPmRa() * ALX.DEG_IN_MILLI_ARCSEC)
-                            .append(' ').append(target.getPmDec() * ALX.DEG_IN_MILLI_ARCSEC);
-                }
-                if (!Double.isNaN(target.getParallax()) && !Double.isNaN(target.getParaErr())) {
-                    sb.append("<br><b>Parallax</b> (mas): ").append(target.getParallax() * ALX.DEG_IN_MILLI_ARCSEC)
-                            .append(" [").append(target.getParaErr() * ALX.DEG_IN_MILLI_ARCSEC).append(']');
-                }
-                if (target.getSpecTyp() != null && !target.getSpecTyp().isEmpty()) {
-                    sb.append("<br><b>Spectral types</b>: ").append(target.getSpecTyp());
-                }
-            } else if (value instanceof InstrumentMode) {
-                final InstrumentMode insMode = (InstrumentMode) value;
-                sb.append("<b>name:</b> ").append(insMode.getInsName());
-
-                final List<String> aliases = getInstrumentModeManager().getSortedUniqueAliases(insMode);
-                if (aliases != null) {
-                    sb.append("<hr>");
-                    sb.append("<b>Aliases:</b><br>");
-                    for (int j = 0, end = aliases.size(); j < end; j++) {
-                        if (j != 0) {
-                            sb.append("<br>");
-                        }
-                        sb.append("- ").append(aliases.get(j));
-                    }
-                    sb.append("<hr>");
-                } else {
-                    sb.append("<br>");
-                }
-                sb.append("<b>Nb channels:</b> ").append(insMode.getNbChannels());
-                sb.append("<br><b>Lambda min:</b> ").append(insMode.getLambdaMin());
-                sb.append("<br><b>Lambda max:</b> ").append(insMode.getLambdaMax());
-                sb.append("<br><b>Resolution:</b> ").append(insMode.getResPower());
-            } else if (value instanceof OIData) {
-                final OIData oiData = (OIData) value;
-                sb.append("<b>Table:</b> ").append(oiData.getExtName()).append('#').append(oiData.getExtNb());
-                sb.append("<br><b>OIFits:</b> ").append(oiData.getOIFitsFile().getFileName());
-                sb.append("<br><b>DATE-OBS:</b> ").append(oiData.getDateObs());
-                sb.append("<br><b>ARRNAME:</b> ").append(oiData.getArrName());
-                sb.append("<br><b>INSNAME:</b> ").append(oiData.getInsName());
-                sb.append("<br><b>NB_MEASUREMENTS:</b> ").append(oiData.getNbMeasurements());
-
-                sb.append("<br><b>Baselines:</b> ");
-                for (short[] staIndex : oiData.getDistinctStaIndex()) {
-                    sb.append(oiData.getStaNames(staIndex)).append(' '); // cached
-                }
-                sb.append("<br><b>Configurations:</b> ");
-                for (short[] staConf : oiData.getDistinctStaConf()) {
-                    sb.append(oiData.getStaNames(staConf)).append(' '); // cached
-                }
+        /** absolute file path */
+        private final String filePath;
+        /** extension number */
+        private final int extNb;
+
+        TableKey(final String filePath, final int extNb) {
+            this.filePath = filePath;
+            this.extNb = extNb;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
             }
-            if (sb.length() == 0) {
-                return null;
-            } else {
-                sb.insert(0, "<html>");
-                sb.append("</html>");
+            if (!(o instanceof TableKey)) {
+                return false;
             }
-            return sb.toString();
+            final TableKey other = (TableKey) o;
+            return extNb == other.extNb && ((filePath != null) ? filePath.equals(other.filePath) : other.filePath == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * extNb + ((filePath != null) ? filePath.hashCode() : 0);
         }
     }
 }
@@ -4,6 +4,9 @@
 package fr.jmmc.oiexplorer.gui;
 
 import fr.jmmc.jmcs.gui.component.GenericListModel;
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorkerExecutor;
 import fr.jmmc.oiexplorer.core.gui.GenericFilterEditor;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
@@ -14,21 +17,33 @@ import fr.jmmc.oiexplorer.core.model.oi.GenericFilter;
 import fr.jmmc.oiexplorer.core.model.oi.Identifiable;
 import fr.jmmc.oiexplorer.core.model.oi.SubsetDefinition;
 import fr.jmmc.oiexplorer.core.model.plot.Range;
+import fr.jmmc.oiexplorer.model.ColumnStatistics;
+import fr.jmmc.oiexplorer.model.GenericFilterEvaluator;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
 import fr.jmmc.oitools.OIFitsProcessor;
 import fr.jmmc.oitools.model.DataModel;
+import fr.jmmc.oitools.model.OIData;
+import fr.jmmc.oitools.model.OIFitsFile;
 import fr.jmmc.oitools.processing.Selector;
 import fr.jmmc.oitools.processing.SelectorResult;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import javax.swing.JButton;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import org.slf4j.Logger;
@@ -47,6 +62,11 @@ public class GenericFiltersPanel extends javax.swing.JPanel
     /** OIFitsCollectionManager singleton reference */
     private final static OIFitsCollectionManager OCM = OIFitsCollectionManager.getInstance();
 
+    /** delay (ms) between the last filter edit and the subset update */
+    private static final int FILTER_DEBOUNCE_DELAY = 250;
+    /** task evaluating the pending generic filters */
+    private static final Task TASK_FILTER_EVAL = new Task("GenericFilterEval");
+
     /** List of GenericFilterEditor for each GenericFilter in the current SubsetDefinition */
     private final transient List<GenericFilterEditor> genericFilterEditorList;
 
@@ -56,20 +76,62 @@ public class GenericFiltersPanel extends javax.swing.JPanel
     /** when true, disables handler of Changes set on GenericFilterEditors. Used in updateGUI(). */
     private boolean updatingGUI = false;
 
+    /** timer coalescing filter edits into a single evaluation */
+    private final Timer filterTimer;
+
+    /** filter keys of the model when the pending edit started (null if no pending edit) */
+    private List<String> pendingBaseKeys = null;
+
+    /** pending evaluation version (used to discard obsolete evaluations) */
+    private int evalVersion = 0;
+
+    /** filter keys of the last evaluation (accepted points label) */
+    private List<String> evaluatedKeys = null;
+
+    /** numerical column names of the last subset (column choices) */
+    private Set<String> lastColumnNames = null;
+
     /** Creates new form GenericFiltersPanel */
     public GenericFiltersPanel() {
         logger.debug("creates GenericFiltersPanel");
         initComponents();
         genericFilterEditorList = new ArrayList<>(1);
         jComboBoxColumnName.setModel(new GenericListModel<String>(columnChoices, true));
-        OCM.getSubsetDefinitionChangedEventNotifier().register(this);
+
+        // distribution preview of the selected column (column statistics catalog built in background):
+        jComboBoxColumnName.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent ae) {
+                updateColumnPreview();
+            }
+        });
+        jComboBoxColumnName.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseEntered(final MouseEvent me) {
+                updateColumnPreview();
+            }
+        });
+
+        // coalesce filter edits (spinner drags ...): only the last state is evaluated then updates the subset
+        filterTimer = new Timer(FILTER_DEBOUNCE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent ae) {
+                evaluateFilters();
+            }
+        });
+        filterTimer.setRepeats(false);
+
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
+        OCM.getSubsetDefinitionChangedEventNotifier().register(eventListener);
     }
 
     /** Removes listeners references */
     @Override
     public void dispose() {
+        cancelPendingEdit();
         genericFilterEditorList.forEach(GenericFilterEditor::dispose);
-        OCM.unbind(this);
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
     }
 
     /** Updates OIExplorer Model from the GUI values. Here it updates the generic filters. Called when there is a change
@@ -77,6 +139,9 @@ public class GenericFiltersPanel extends javax.swing.JPanel
     private void updateModel() {
         logger.debug("updates Model");
 
+        // pending edits are submitted now:
+        cancelPendingEdit();
+
         final SubsetDefinition subsetDefinitionCopy = OCM.getCurrentSubsetDefinition();
 
         final List<GenericFilter> filters = subsetDefinitionCopy.getGenericFilters();
@@ -97,29 +162,44 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         try {
             updatingGUI = true;
 
-            // we clear and re-create GenericFilterEditors
-            jPanelGenericFilters.removeAll();
-            genericFilterEditorList.forEach(GenericFilterEditor::dispose);
-            genericFilterEditorList.clear();
+            final SubsetDefinition subsetDefinitionCopy = OCM.getCurrentSubsetDefinition();
 
-            // we clear and recreate column name choices
-            columnChoices.clear();
+            final List<GenericFilter> genericFilters = (subsetDefinitionCopy != null)
+                    ? subsetDefinitionCopy.getGenericFilters() : Collections.<GenericFilter>emptyList();
 
-            final SubsetDefinition subsetDefinitionCopy = OCM.getCurrentSubsetDefinition();
+            // keep editors having pending edits (submitted on the new subset) only if its filters did not change:
+            if (pendingBaseKeys != null && !pendingBaseKeys.equals(getFilterKeys(genericFilters))) {
+                logger.debug("updateGUI: filters changed, pending edit discarded");
+                cancelPendingEdit();
+            }
+
+            if (pendingBaseKeys == null) {
+                // update, add or remove only the changed GenericFilterEditors
+                updateGenericFilterEditors(genericFilters);
+
+                if (evaluatedKeys != null && !evaluatedKeys.equals(getFilterKeys(genericFilters))) {
+                    // accepted points are obsolete:
+                    evaluatedKeys = null;
+                    jLabelAccepted.setText(null);
+                }
+            }
 
             if (subsetDefinitionCopy != null) {
                 final SelectorResult selectorResult = subsetDefinitionCopy.getSelectorResult();
 
-                for (GenericFilter genericFilter : subsetDefinitionCopy.getGenericFilters()) {
-                    addGenericFilterEditor(genericFilter);
-                }
+                // updating column choices from SelectorResult only if the subset columns changed
+                final Set<String> numericalColumnNames = getDistinctNumericalColumnNames(selectorResult);
 
-                // updating column choices from SelectorResult
-                for (String specialName : Selector.SPECIAL_COLUMN_NAMES) {
-                    columnChoices.add(specialName);
-                }
-                for (String columnName : getDistinctNumericalColumnNames(selectorResult)) {
-                    columnChoices.add(columnName);
+                if (!numericalColumnNames.equals(lastColumnNames)) {
+                    lastColumnNames = new LinkedHashSet<String>(numericalColumnNames);
+
+                    columnChoices.clear();
+                    for (String specialName : Selector.SPECIAL_COLUMN_NAMES) {
+                        columnChoices.add(specialName);
+                    }
+                    for (String columnName : numericalColumnNames) {
+                        columnChoices.add(columnName);
+                    }
                 }
                 if (jComboBoxColumnName.getSelectedIndex() == -1) {
                     jComboBoxColumnName.setSelectedIndex(0);
@@ -131,6 +211,9 @@ public class GenericFiltersPanel extends javax.swing.JPanel
                                 ? ""
                                 : OIFitsProcessor.generateCLIargs(selectorResult.getSelector());
                 jTextAreaCLI.setText(cliArgs);
+            } else {
+                lastColumnNames = null;
+                columnChoices.clear();
             }
 
             revalidate();
@@ -139,6 +222,168 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         }
     }
 
+    /**
+     * Stop the filter timer, cancel any running evaluation and forget the pending edit
+     */
+    private void cancelPendingEdit() {
+        filterTimer.stop();
+        pendingBaseKeys = null;
+        // discard any running evaluation:
+        evalVersion++;
+        TaskSwingWorkerExecutor.cancelTask(TASK_FILTER_EVAL);
+    }
+
+    /**
+     * Evaluate in background the filters of the editors on the data points of the current subset files
+     * (cancels any running evaluation); the subset is updated once evaluated
+     */
+    private void evaluateFilters() {
+        final List<GenericFilter> genericFilters = new ArrayList<GenericFilter>(genericFilterEditorList.size());
+        for (final GenericFilterEditor genericFilterEditor : this.genericFilterEditorList) {
+            genericFilters.add(Identifiable.clone(genericFilterEditor.getGenericFilter()));
+        }
+
+        final List<OIData> oiDatas = new ArrayList<OIData>();
+        final SubsetDefinition subsetDefinition = OCM.getCurrentSubsetDefinition();
+        if (subsetDefinition != null && subsetDefinition.getSelectorResult() != null) {
+            for (OIFitsFile oiFitsFile : subsetDefinition.getSelectorResult().getSortedOIFitsFiles()) {
+                oiDatas.addAll(Arrays.asList(oiFitsFile.getOiDatas()));
+            }
+        }
+
+        new FilterEvalSwingWorker(this, genericFilters, oiDatas, ++evalVersion).executeTask();
+    }
+
+    /**
+     * Submit the pending edit if the evaluation is the last one and the model filters did not change meanwhile,
+     * else restore the editors from the model
+     * @param genericFilters evaluated generic filters
+     * @param counts {accepted points, total points}
+     * @param version evaluation version
+     */
+    private void filtersEvaluated(final List<GenericFilter> genericFilters, final long[] counts, final int version) {
+        if (version != evalVersion || pendingBaseKeys == null) {
+            // obsolete:
+            return;
+        }
+        final SubsetDefinition subsetDefinitionCopy = OCM.getCurrentSubsetDefinition();
+        final List<GenericFilter> modelFilters = (subsetDefinitionCopy != null)
+                ? subsetDefinitionCopy.getGenericFilters() : Collections.<GenericFilter>emptyList();
+
+        if (subsetDefinitionCopy == null || !pendingBaseKeys.equals(getFilterKeys(modelFilters))) {
+            logger.debug("filtersEvaluated: filters changed, pending edit discarded");
+            cancelPendingEdit();
+            try {
+                updatingGUI = true;
+                updateGenericFilterEditors(modelFilters);
+            } finally {
+                updatingGUI = false;
+            }
+            return;
+        }
+        evaluatedKeys = getFilterKeys(genericFilters);
+        jLabelAccepted.setText(counts[0] + " / " + counts[1]);
+
+        updateModel();
+    }
+
+    /**
+     * Update the tooltip of the column chooser with the statistics of the selected column (distribution preview)
+     */
+    private void updateColumnPreview() {
+        final String columnName = (String) jComboBoxColumnName.getSelectedItem();
+        String tooltip = null;
+
+        if (columnName != null) {
+            final ColumnStatistics stats = OIFitsCollectionIndex.getInstance().getColumnStatistics(columnName);
+            if (stats != null) {
+                tooltip = stats.toHtml(new StringBuilder(256).append("<html>")).append("</html>").toString();
+            }
+        }
+        jComboBoxColumnName.setToolTipText(tooltip);
+    }
+
+    /**
+     * Diff the given generic filters against the existing GenericFilterEditors (same order):
+     * editors with a different filter are updated in place, missing editors are added and extra editors removed
+     * @param genericFilters generic filters of the current SubsetDefinition
+     */
+    private void updateGenericFilterEditors(final List<GenericFilter> genericFilters) {
+        final int nFilters = genericFilters.size();
+        int nUpdated = 0;
+
+        // remove extra editors (last ones):
+        for (int i = genericFilterEditorList.size() - 1; i >= nFilters; i--) {
+            final GenericFilterEditor genericFilterEditor = genericFilterEditorList.remove(i);
+            jPanelGenericFilters.remove(genericFilterEditor.getParent());
+            genericFilterEditor.dispose();
+        }
+
+        for (int i = 0; i < nFilters; i++) {
+            final GenericFilter genericFilter = genericFilters.get(i);
+
+            if (i < genericFilterEditorList.size()) {
+                final GenericFilterEditor genericFilterEditor = genericFilterEditorList.get(i);
+                if (!isSameFilter(genericFilterEditor.getGenericFilter(), genericFilter)) {
+                    genericFilterEditor.setGenericFilter(genericFilter);
+                    nUpdated++;
+                }
+            } else {
+                addGenericFilterEditor(genericFilter);
+                nUpdated++;
+            }
+        }
+        logger.debug("updateGenericFilterEditors: {} filters, {} editors updated", nFilters, nUpdated);
+    }
+
+    /**
+     * Return true if both generic filters have the same definition (enabled flag, column, ranges and values)
+     * @param filter1 generic filter
+     * @param filter2 other generic filter
+     * @return true if both filters are equivalent
+     */
+    private static boolean isSameFilter(final GenericFilter filter1, final GenericFilter filter2) {
+        return (filter1 != null) && (filter1.isEnabled() == filter2.isEnabled())
+                && getFilterKey(filter1).equals(getFilterKey(filter2));
+    }
+
+    /**
+     * Return the keys of the given generic filters (enabled flag and canonical key) in the same order
+     * @param genericFilters generic filters
+     * @return filter keys
+     */
+    private static List<String> getFilterKeys(final List<GenericFilter> genericFilters) {
+        final List<String> keys = new ArrayList<String>(genericFilters.size());
+        for (GenericFilter genericFilter : genericFilters) {
+            keys.add(genericFilter.isEnabled() + ":" + getFilterKey(genericFilter));
+        }
+        return keys;
+    }
+
+    /**
+     * Return the canonical key of the given generic filter: column name, data type, sorted ranges and values
+     * (enabled flag ignored)
+     * @param genericFilter generic filter
+     * @return canonical key
+     */
+    private static String getFilterKey(final GenericFilter genericFilter) {
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append(genericFilter.getColumnName()).append(':').append(genericFilter.getDataType());
+
+        final List<String> ranges = new ArrayList<String>(genericFilter.getAcceptedRanges().size());
+        for (Range range : genericFilter.getAcceptedRanges()) {
+            ranges.add(range.getMin() + ":" + range.getMax());
+        }
+        Collections.sort(ranges);
+        sb.append('=').append(ranges);
+
+        final List<String> values = new ArrayList<String>(genericFilter.getAcceptedValues());
+        Collections.sort(values);
+        sb.append('=').append(values);
+
+        return sb.toString();
+    }
+
     /** Adds a GenericFilterEditor to the Panel, along with a delete button */
     private void addGenericFilterEditor(final GenericFilter genericFilter) {
         final JPanel panel = new JPanel(new GridBagLayout());
@@ -184,15 +429,15 @@ public class GenericFiltersPanel extends javax.swing.JPanel
 
             switch (dataType) {
                 case NUMERIC:
-                    final fr.jmmc.oitools.model.range.Range oitoolsRange
-                                                            = OCM.getOIFitsCollection().getColumnRange(columnName);
+                    // column statistics catalog or cached per collection version:
+                    final double[] columnRange = OIFitsCollectionIndex.getInstance().getColumnRange(columnName);
                     final Range range = new Range();
-                    range.setMin(Double.isFinite(oitoolsRange.getMin()) ? oitoolsRange.getMin() : Double.NaN);
-                    range.setMax(Double.isFinite(oitoolsRange.getMax()) ? oitoolsRange.getMax() : Double.NaN);
+                    range.setMin(Double.isFinite(columnRange[0]) ? columnRange[0] : Double.NaN);
+                    range.setMax(Double.isFinite(columnRange[1]) ? columnRange[1] : Double.NaN);
                     newGenericFilter.getAcceptedRanges().add(range);
                     break;
                 case STRING:
-                    final List<String> initValues = OCM.getOIFitsCollection().getDistinctValues(columnName);
+                    final List<String> initValues = OIFitsCollectionIndex.getInstance().getDistinctValues(columnName);
                     if (initValues != null) {
                         newGenericFilter.getAcceptedValues().addAll(initValues);
                     }
@@ -237,14 +482,23 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         }
     }
 
-    /** Listener on changes on GenericFilterEditors
+    /** Listener on changes on GenericFilterEditors: the filters are evaluated then the subset is updated once edits
+     * settle; any running evaluation is cancelled
      *
      * @param ce Event
      */
     @Override
     public void stateChanged(ChangeEvent ce) {
         if (!updatingGUI) {
-            updateModel();
+            if (pendingBaseKeys == null) {
+                final SubsetDefinition subsetDefinition = OCM.getCurrentSubsetDefinition();
+                pendingBaseKeys = getFilterKeys((subsetDefinition != null)
+                        ? subsetDefinition.getGenericFilters() : Collections.<GenericFilter>emptyList());
+            }
+            // discard any running evaluation:
+            evalVersion++;
+            TaskSwingWorkerExecutor.cancelTask(TASK_FILTER_EVAL);
+            filterTimer.restart();
         }
     }
 
@@ -286,6 +540,63 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         return SelectorResult.getDataModel(selectorResult).getNumericalColumnNames();
     }
 
+    /**
+     * This worker counts the data points accepted by the pending generic filters in background
+     */
+    private static final class FilterEvalSwingWorker extends TaskSwingWorker<long[]> {
+
+        /* members */
+        /** generic filters panel to refresh */
+        private final GenericFiltersPanel panel;
+        /** pending generic filters (copies) */
+        private final List<GenericFilter> genericFilters;
+        /** compiled pending filters */
+        private final GenericFilterEvaluator evaluator;
+        /** OIData tables of the current subset files */
+        private final List<OIData> oiDatas;
+        /** evaluation version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param panel generic filters panel to refresh
+         * @param genericFilters pending generic filters (copies)
+         * @param oiDatas OIData tables of the current subset files
+         * @param version evaluation version
+         */
+        private FilterEvalSwingWorker(final GenericFiltersPanel panel, final List<GenericFilter> genericFilters,
+                                      final List<OIData> oiDatas, final int version) {
+            super(TASK_FILTER_EVAL);
+            this.panel = panel;
+            this.genericFilters = genericFilters;
+            this.evaluator = GenericFilterEvaluator.compile(genericFilters);
+            this.oiDatas = oiDatas;
+            this.version = version;
+        }
+
+        /**
+         * Evaluate the filters on all data points.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return {accepted points, total points} or null if interrupted
+         */
+        @Override
+        public long[] computeInBackground() {
+            return evaluator.countAccepted(oiDatas);
+        }
+
+        /**
+         * Submit the pending edit.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param counts {accepted points, total points}
+         */
+        @Override
+        public void refreshUI(final long[] counts) {
+            if (counts != null) {
+                panel.filtersEvaluated(genericFilters, counts, version);
+            }
+        }
+    }
+
     /**
      * This method is called from within the constructor to initialize the form. WARNING: Do NOT modify this code. The
      * content of this method is always regenerated by the Form Editor.
@@ -298,6 +609,7 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         jPanelToolbar = new javax.swing.JPanel();
         jButtonAddGenericFilter = new javax.swing.JButton();
         jComboBoxColumnName = new javax.swing.JComboBox<>();
+        jLabelAccepted = new javax.swing.JLabel();
         jScrollPaneFilters = new javax.swing.JScrollPane();
         jPanelGenericFilters = new javax.swing.JPanel();
         jScrollPaneCLI = new javax.swing.JScrollPane();
@@ -331,6 +643,13 @@ public class GenericFiltersPanel extends javax.swing.JPanel
         gridBagConstraints.insets = new java.awt.Insets(2, 2, 2, 2);
         jPanelToolbar.add(jComboBoxColumnName, gridBagConstraints);
 
+        jLabelAccepted.setToolTipText("Data points accepted by the generic filters in the current subset files");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 2;
+        gridBagConstraints.gridy = 0;
+        gridBagConstraints.insets = new java.awt.Insets(2, 2, 2, 2);
+        jPanelToolbar.add(jLabelAccepted, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 0;
@@ -376,6 +695,7 @@ public class GenericFiltersPanel extends javax.swing.JPanel
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton jButtonAddGenericFilter;
     private javax.swing.JComboBox<String> jComboBoxColumnName;
+    private javax.swing.JLabel jLabelAccepted;
     private javax.swing.JPanel jPanelGenericFilters;
     private javax.swing.JPanel jPanelToolbar;
     private javax.swing.JScrollPane jScrollPaneCLI;
@@ -5,6 +5,9 @@ package fr.jmmc.oiexplorer.gui;
 
 import fr.jmmc.jmal.ALX;
 import fr.jmmc.jmcs.gui.component.GenericJTree;
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
+import fr.jmmc.jmcs.util.concurrent.ParallelJobExecutor;
 import fr.jmmc.jmcs.util.ObjectUtils;
 import fr.jmmc.jmcs.util.StringUtils;
 import fr.jmmc.oitools.model.InstrumentModeManager;
@@ -12,6 +15,13 @@ import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventListener;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType;
+import fr.jmmc.oiexplorer.model.GranuleBucketIndex;
+import fr.jmmc.oiexplorer.model.GranuleGroupingField;
+import fr.jmmc.oiexplorer.model.GranuleSearchIndex;
+import fr.jmmc.oiexplorer.model.GranuleSortIndex;
+import fr.jmmc.oiexplorer.model.GranuleStatistics;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
 import fr.jmmc.oitools.model.TargetManager;
 import fr.jmmc.oitools.util.GranuleComparator;
 import fr.jmmc.oiexplorer.core.model.util.MJDConverter;
@@ -25,16 +35,30 @@ import fr.jmmc.oitools.model.OIFitsCollection;
 import fr.jmmc.oitools.model.OITable;
 import fr.jmmc.oitools.model.Target;
 import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import javax.swing.JTree;
+import javax.swing.Timer;
 import javax.swing.ToolTipManager;
 import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.event.TableColumnModelEvent;
 import javax.swing.event.TableColumnModelListener;
 import javax.swing.event.TableModelEvent;
@@ -44,6 +68,8 @@ import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +90,18 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
     /* constants */
     /** Show root of granule tree */
     private static final boolean SHOW_DATATREE_ROOTVISIBLE = false;
+    /** max number of granules to expand all nodes automatically (larger trees only expand the first level) */
+    private static final int EXPAND_ALL_MAX_GRANULES = 1000;
+    /** delay (ms) after the last search keystroke before filtering the tree */
+    private static final int SEARCH_DEBOUNCE_DELAY = 200;
+    /** max number of tables in a node to compute its tooltip synchronously (larger nodes use a background task) */
+    private static final int TOOLTIP_MAX_SYNC_TABLES = 20;
+    /** number of granules per statistics job */
+    private static final int STATS_GRANULES_PER_JOB = 32;
+    /** statistics task */
+    private static final Task TASK_STATISTICS = new Task("GranuleStatistics");
+    /** tree build task */
+    private static final Task TASK_TREE = new Task("GranuleTree");
 
     /* members */
     /** OIFitsCollectionManager singleton reference */
@@ -72,11 +110,38 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
     private GenericJTree<Object> dataTree;
     /** temporary buffer */
     private final StringBuilder tmpBuf = new StringBuilder(64);
+    /** current tree context (layout and collection data) */
+    private TreeContext treeContext = null;
+    /** tree version (incremented by each tree generation) */
+    private int treeVersion = 0;
+    /** tooltip cache */
+    private TreeTooltipCache tooltipCache = null;
+    /** statistics per granule of the current collection (null until computed) */
+    private Map<Granule, GranuleStatistics> granuleStats = null;
+    /** statistics version (incremented when granule statistics change) */
+    private int statsVersion = 0;
+    /** search debounce timer */
+    private Timer searchTimer = null;
+    /** true if the tree generation waits for the bucket index of the derived fields */
+    private boolean waitingBucketIndex = false;
+    /** bucket index listener: generate the tree once the bucket index is built */
+    private final ChangeListener bucketIndexListener = new ChangeListener() {
+        @Override
+        public void stateChanged(final ChangeEvent ce) {
+            if (waitingBucketIndex) {
+                waitingBucketIndex = false;
+                updateOIFitsCollection();
+            }
+        }
+    };
 
     /** Creates new GranuleTreePanel */
     public GranuleTreePanel() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
         // always bind at the beginning of the constructor (to maintain correct ordering):
-        ocm.bindCollectionChangedEvent(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+        OIFitsCollectionIndex.getInstance().addBucketIndexListener(bucketIndexListener);
 
         initComponents();
         postInit();
@@ -92,7 +157,8 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
             logger.debug("dispose: {}", ObjectUtils.getObjectInfo(this));
         }
 
-        ocm.unbind(this);
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
+        OIFitsCollectionIndex.getInstance().removeBucketIndexListener(bucketIndexListener);
     }
 
     /**
@@ -131,11 +197,50 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
                 }
                 return toString(userObject);
             }
+
+            /** This method is called as the cursor moves within the tree */
+            @Override
+            public String getToolTipText(final MouseEvent evt) {
+                return (tooltipCache != null) ? tooltipCache.getToolTipText(evt) : null;
+            }
         };
 
+        // tooltips are computed on hover only (cached per node):
+        tooltipCache = new TreeTooltipCache(dataTree, new TreeTooltipCache.TooltipProvider() {
+            @Override
+            public boolean isExpensive(final Object userObject) {
+                return (userObject instanceof StatisticatedObject)
+                        && ((StatisticatedObject) userObject).getOITables().size() > TOOLTIP_MAX_SYNC_TABLES;
+            }
+
+            @Override
+            public Object prepareTooltip(final Object userObject) {
+                if (userObject instanceof StatisticatedObject) {
+                    // aliases and statistics are read on the EDT; only the table details are left to the worker:
+                    final StatisticatedObject sobject = (StatisticatedObject) userObject;
+                    final StringBuilder sb = new StringBuilder(256);
+                    appendTooltipHeader(sobject, sb);
+                    return new NodeTooltipInput(sb.toString(), new ArrayList<OITable>(sobject.getOITables()));
+                }
+                return userObject;
+            }
+
+            @Override
+            public String computeTooltip(final Object input) {
+                if (input instanceof NodeTooltipInput) {
+                    final NodeTooltipInput nodeInput = (NodeTooltipInput) input;
+                    final StringBuilder sb = new StringBuilder(nodeInput.header.length() + 256 * nodeInput.oiTables.size());
+                    sb.append("<html>").append(nodeInput.header);
+                    appendTableTooltips(nodeInput.oiTables, sb);
+                    return sb.append("</html>").toString();
+                }
+                return getTreeTooltipText(input, new StringBuilder(256), false);
+            }
+        }, "GranuleTreeTooltip");
+
         ToolTipManager.sharedInstance().registerComponent(dataTree);
 
-        dataTree.setCellRenderer(new TooltipTreeCellRenderer());
+        dataTree.setCellRenderer(new StatisticsTreeCellRenderer());
 
         dataTree.setRootVisible(SHOW_DATATREE_ROOTVISIBLE);
 
@@ -145,6 +250,48 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
 
         genericTreePanel.add(dataTree);
 
+        // instant search (indexed target / instrument mode / night names) once typing pauses:
+        searchTimer = new Timer(SEARCH_DEBOUNCE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent ae) {
+                updateOIFitsCollection();
+            }
+        });
+        searchTimer.setRepeats(false);
+
+        jTextFieldSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent de) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent de) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent de) {
+                // no-op
+            }
+        });
+
+        // create child nodes on expansion:
+        dataTree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(final TreeExpansionEvent event) {
+                final Object node = event.getPath().getLastPathComponent();
+                if (node instanceof GranuleTreeNode) {
+                    loadChildren((GranuleTreeNode) node);
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(final TreeExpansionEvent event) {
+                // no-op
+            }
+        });
+
         jTableCols.getColumnModel().addColumnModelListener(new TableColumnModelListener() {
             @Override
             public void columnAdded(TableColumnModelEvent e) {
@@ -197,18 +344,136 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
     }
 
     /**
-     * Generate the tree from the current edited list of targets
+     * Generate the tree from the current edited list of targets:
+     * the granules are sorted, filtered and grouped by a background worker from a snapshot of the collection
+     * (see TreeBuildSwingWorker) then swapped in the tree on the EDT (see treeBuilt()).
+     * A newer generation cancels the pending one.
      * @param oiFitsCollection OIFitsCollection to process
      */
     private void generateTree(final OIFitsCollection oiFitsCollection) {
-
         final boolean showFile = this.jRadioButtonFile.isSelected();
         final boolean showOITable = this.jRadioButtonOITable.isSelected();
 
+        final List<GranuleGroupingField> selectedFields = getSelectedFields();
+
+        // Sort granule by criteria (target / insMode / night / derived fields):
+        final List<GranuleGroupingField> fields = new ArrayList<GranuleGroupingField>(selectedFields);
+        boolean derived = false;
+
+        if (fields.isEmpty()) {
+            for (GranuleField field : GranuleComparator.DEFAULT.getSortDirectives()) {
+                fields.add(GranuleGroupingField.of(field));
+            }
+        }
+        for (GranuleGroupingField field : fields) {
+            derived |= field.isDerived();
+        }
+
+        final OIFitsCollectionIndex collectionIndex = OIFitsCollectionIndex.getInstance();
+
+        // derived values are computed once per collection in background:
+        final GranuleBucketIndex bucketIndex = (derived) ? collectionIndex.getBucketIndex() : null;
+
+        waitingBucketIndex = (derived && bucketIndex == null);
+        if (waitingBucketIndex) {
+            // discard any pending generation; the tree is generated once the bucket index is built:
+            treeVersion++;
+            return;
+        }
+
+        // granules matching the search text (if any) are filtered in background
+        // (the search index is built once per collection):
+        final String query = jTextFieldSearch.getText().trim();
+        final GranuleSearchIndex searchIndex = (query.isEmpty()) ? null : collectionIndex.getSearchIndex();
+
+        // snapshot of the collection (granules and their tables):
+        final TreeContext context = new TreeContext(fields, bucketIndex, showFile, showOITable,
+                collectionIndex.getGranuleSnapshot(), getSortKey(), granuleStats);
+
+        // if the tree layout (granule fields, files, tables) is unchanged, only the collection delta is applied:
+        final boolean merge = (treeContext != null && treeContext.isSameLayout(context));
+
+        new TreeBuildSwingWorker(this, context, collectionIndex.getSortIndex(), searchIndex, query, merge,
+                oiFitsCollection.size(), ++treeVersion).executeTask();
+    }
+
+    /**
+     * Swap the tree built in background:
+     * if the tree layout is unchanged, only the collection delta is applied
+     * (targeted insert / remove notifications on loaded nodes) else the first level is replaced
+     * and the expanded / selected nodes are restored;
+     * deeper nodes are created on expansion (see GranuleTreeNode)
+     * @param result tree build result
+     */
+    private void treeBuilt(final TreeBuildResult result) {
+        if (result.version != treeVersion) {
+            // obsolete:
+            return;
+        }
+        final long startTime = System.nanoTime();
+
+        // invalidate tooltips:
+        tooltipCache.clear();
+
+        final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
+        final List<Granule> granules = result.granules;
+
+        if (result.rootNode == null) {
+            treeContext = result.context;
+            // apply the collection delta:
+            mergeChildren(rootNode, 0, granules);
+        } else {
+            final TreeExpansionState state = (treeContext != null) ? TreeExpansionState.capture(dataTree, rootNode) : null;
+
+            treeContext = result.context;
+            // Reset root content of datatree and move the new first level nodes:
+            rootNode.removeAllChildren();
+
+            final DefaultMutableTreeNode[] children = new DefaultMutableTreeNode[result.rootNode.getChildCount()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = (DefaultMutableTreeNode) result.rootNode.getChildAt(i);
+            }
+            result.rootNode.removeAllChildren();
+            for (DefaultMutableTreeNode child : children) {
+                rootNode.add(child);
+            }
+
+            // fire node structure changed :
+            getTreeModel().nodeStructureChanged(rootNode);
+
+            if (state != null) {
+                state.restore(dataTree, rootNode, true);
+            }
+        }
+
+        jLabelStats.setText(granules.size() + " granules, " + result.nbFiles + " oifits"
+                + ((result.filtered) ? " (filtered)" : ""));
+
+        if (jToggleButtonExpandTree.isSelected()) {
+            if (granules.size() <= EXPAND_ALL_MAX_GRANULES) {
+                dataTree.expandAll(true);
+            } else {
+                // only expand the first level (lazy nodes):
+                for (int i = 0, len = rootNode.getChildCount(); i < len; i++) {
+                    dataTree.expandPath(new TreePath(((DefaultMutableTreeNode) rootNode.getChildAt(i)).getPath()));
+                }
+            }
+        } else if (jToggleButtonCollapseTree.isSelected()) {
+            dataTree.expandAll(false);
+        }
+
+        logger.debug("treeBuilt: duration = {} ms.", 1e-6d * (System.nanoTime() - startTime));
+    }
+
+    /**
+     * Return the grouping fields selected in the column table (in column order)
+     * @return selected grouping fields
+     */
+    private List<GranuleGroupingField> getSelectedFields() {
         final TableColumnModel tcm = jTableCols.getColumnModel();
         final TableModel tm = jTableCols.getModel();
 
-        final List<GranuleField> selectedFields = new ArrayList<GranuleField>(4);
+        final List<GranuleGroupingField> selectedFields = new ArrayList<GranuleGroupingField>(4);
         for (int i = 0, len = tcm.getColumnCount(); i < len; i++) {
             final TableColumn col = tcm.getColumn(i);
             final Boolean selected = (Boolean) tm.getValueAt(0, col.getModelIndex());
@@ -217,93 +482,246 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
                 final String colName = (String) tcm.getColumn(i).getHeaderValue();
                 logger.debug("column: {}", colName);
 
-                if ("Target".equals(colName)) {
-                    selectedFields.add(GranuleField.TARGET);
-                } else if ("Ins. mode".equals(colName)) {
-                    selectedFields.add(GranuleField.INS_MODE);
-                } else if ("Night".equals(colName)) {
-                    selectedFields.add(GranuleField.NIGHT);
+                final GranuleGroupingField field = GranuleGroupingField.fromLabel(colName);
+                if (field != null) {
+                    selectedFields.add(field);
                 } else {
                     logger.warn("unsupported col: {}", colName);
                 }
             }
         }
+        return selectedFields;
+    }
 
-        // Sort granule by criteria (target / insMode / night):
-        final GranuleComparator comparator = (selectedFields.isEmpty()) ? GranuleComparator.DEFAULT
-                : new GranuleComparator(selectedFields);
+    /**
+     * Return the tree model
+     * @return tree model
+     */
+    private DefaultTreeModel getTreeModel() {
+        return (DefaultTreeModel) dataTree.getModel();
+    }
 
-        // Reset root content of datatree:
-        final DefaultMutableTreeNode rootNode = dataTree.getRootNode();
-        rootNode.removeAllChildren();
+    /**
+     * Create the children of the given lazy node if needed and notify the tree model
+     * @param node node to load
+     */
+    private void loadChildren(final GranuleTreeNode node) {
+        if (!node.loaded) {
+            node.loaded = true;
+            addChildren(treeContext, node, node.level, node.granules);
+
+            final int len = node.getChildCount();
+            if (len != 0) {
+                final int[] indices = new int[len];
+                for (int i = 0; i < len; i++) {
+                    indices[i] = i;
+                }
+                getTreeModel().nodesWereInserted(node, indices);
+            }
+        }
+    }
 
-        final List<Granule> granules = oiFitsCollection.getSortedGranules(comparator);
-        logger.debug("granules sorted: {}", granules);
+    /**
+     * Add the child nodes of the given parent (no notification).
+     * Called by the tree build worker (detached root node) or on expansion
+     * @param context tree context
+     * @param parent parent node
+     * @param level parent level (0 = root)
+     * @param granules sorted granules covered by the parent node
+     */
+    private void addChildren(final TreeContext context, final DefaultMutableTreeNode parent, final int level,
+                             final List<Granule> granules) {
+        if (level < context.fieldsLen) {
+            for (GranuleGroup group : groupGranules(context, level, granules)) {
+                parent.add(createNode(context, group, level + 1));
+            }
+        } else {
+            addLeafChildren(context, parent, granules);
+        }
+    }
 
-        final Map<Granule, Set<OIData>> oiDataPerGranule = oiFitsCollection.getOiDataPerGranule();
+    /**
+     * Group consecutive granules having the same value for the granule field at the given level
+     * @param context tree context
+     * @param level parent level (0 = root)
+     * @param granules sorted granules covered by the parent node
+     * @return granule groups
+     */
+    private static List<GranuleGroup> groupGranules(final TreeContext context, final int level, final List<Granule> granules) {
+        final GranuleGroupingField field = context.fields.get(level);
 
-        // Add nodes and their data tables:
-        final List<GranuleField> fields = comparator.getSortDirectives();
-        final int fieldsLen = fields.size();
+        final List<GranuleGroup> groups = new ArrayList<GranuleGroup>();
+        Object prev = null;
+        int from = 0;
 
-        final DefaultMutableTreeNode[] pathNodes = new DefaultMutableTreeNode[fieldsLen + 1];
-        int level;
-        GranuleField field;
-        Object value, other;
+        for (int i = 0, len = granules.size(); i < len; i++) {
+            final Granule granule = granules.get(i);
+            Object value = context.getValue(granule, field);
 
-        pathNodes[0] = rootNode;
+            if (value == null) {
+                logger.warn("null field value for granule: {}", granule);
+                value = "UNDEFINED";
+            }
+            // note: equals uses custom implementation in Target / InstrumentMode / NightId (all members are equals)
+            // equals method must be called on other to support proxy object (value.equals(other) may be different)
+            if (prev != null && !prev.equals(value)) {
+                groups.add(new GranuleGroup(prev, new ArrayList<Granule>(granules.subList(from, i))));
+                from = i;
+            }
+            prev = value;
+        }
+        if (prev != null) {
+            groups.add(new GranuleGroup(prev, new ArrayList<Granule>(granules.subList(from, granules.size()))));
+        }
+
+        final Comparator<GranuleStatistics> statsComparator = context.sortKey.getComparator();
+        if (statsComparator != null && context.granuleStats != null) {
+            for (GranuleGroup group : groups) {
+                group.stats = getStatistics(context.granuleStats, group.granules);
+            }
+            // stable sort:
+            Collections.sort(groups, new Comparator<GranuleGroup>() {
+                @Override
+                public int compare(final GranuleGroup g1, final GranuleGroup g2) {
+                    return statsComparator.compare(g1.stats, g2.stats);
+                }
+            });
+        }
+        return groups;
+    }
+
+    /**
+     * Return the selected sort key
+     * @return sort key
+     */
+    private GranuleStatistics.SortKey getSortKey() {
+        final Object selected = (jComboBoxSort != null) ? jComboBoxSort.getSelectedItem() : null;
+        return (selected instanceof GranuleStatistics.SortKey) ? (GranuleStatistics.SortKey) selected : GranuleStatistics.SortKey.NONE;
+    }
+
+    /**
+     * Return the aggregated statistics of the given granules
+     * @param granules granules
+     * @return aggregated statistics or null if not computed yet
+     */
+    private GranuleStatistics getStatistics(final Collection<Granule> granules) {
+        return getStatistics(granuleStats, granules);
+    }
 
+    /**
+     * Return the aggregated statistics of the given granules
+     * @param stats statistics per granule (may be null)
+     * @param granules granules
+     * @return aggregated statistics or null if not computed yet
+     */
+    private static GranuleStatistics getStatistics(final Map<Granule, GranuleStatistics> stats, final Collection<Granule> granules) {
+        if (stats == null) {
+            return null;
+        }
+        final List<GranuleStatistics> values = new ArrayList<GranuleStatistics>(granules.size());
         for (Granule granule : granules) {
+            final GranuleStatistics s = stats.get(granule);
+            if (s != null) {
+                values.add(s);
+            }
+        }
+        return (values.isEmpty()) ? GranuleStatistics.EMPTY : GranuleStatistics.merge(values);
+    }
 
-            // loop on fields:
-            for (level = 1; level <= fieldsLen; level++) {
-                field = fields.get(level - 1);
-                value = granule.getField(field);
+    /**
+     * Compute the statistics of all granules of the given collection in background (parallel jobs)
+     * unless restored from the session snapshot (see OIFitsCollectionIndex)
+     * @param oiFitsCollection OIFitsCollection to process
+     */
+    private void computeStatistics(final OIFitsCollection oiFitsCollection) {
+        granuleStats = OIFitsCollectionIndex.getInstance().getGranuleStatistics();
+        statsVersion++;
 
-                if (value == null) {
-                    logger.warn("null field value for granule: {}", granule);
-                    value = "UNDEFINED";
-                }
+        if (granuleStats == null && !oiFitsCollection.isEmpty()) {
+            final OIFitsCollectionIndex collectionIndex = OIFitsCollectionIndex.getInstance();
+            new StatisticsSwingWorker(this, collectionIndex.getVersion(), collectionIndex.getGranuleSnapshot()).executeTask();
+        }
+    }
 
-                DefaultMutableTreeNode prevNode = pathNodes[level];
-                if (prevNode != null) {
-                    // compare ?
-                    other = prevNode.getUserObject();
-
-                    // note: equals uses custom implementation in Target / InstrumentMode / NightId (all members are equals)
-                    // equals method must be called on other to support proxy object (value.equals(other) may be different)
-                    if (other == null || other.equals(value)) {
-                        continue;
-                    } else {
-                        // different:
-                        for (int i = level + 1; i <= fieldsLen; i++) {
-                            // clear previous nodes:
-                            pathNodes[i] = null;
-                        }
-                    }
-                }
+    /**
+     * Use the computed granule statistics: refresh labels or regenerate the tree if sorted by statistics
+     * @param collectionVersion collection index version when the task started
+     * @param stats statistics per granule
+     */
+    private void statisticsComputed(final int collectionVersion, final Map<Granule, GranuleStatistics> stats) {
+        if (collectionVersion != OIFitsCollectionIndex.getInstance().getVersion()) {
+            // obsolete (the collection changed, even if the collection instance is the same):
+            return;
+        }
+        granuleStats = stats;
+        statsVersion++;
+
+        // shared with the session snapshot:
+        OIFitsCollectionIndex.getInstance().setGranuleStatistics(stats, collectionVersion);
+
+        if (getSortKey() != GranuleStatistics.SortKey.NONE) {
+            // force rebuild:
+            treeContext = null;
+            updateOIFitsCollection();
+        } else {
+            tooltipCache.clear();
+            dataTree.repaint();
+        }
+    }
 
-                // insert original granule value if we are on the deepest level (no file and no table)
-                // or use a proxy object enriched by material that need to be used by tooltip (and probably more in the future)
-                if (level < fieldsLen || showFile || showOITable) {
-                    pathNodes[level] = dataTree.addNode(pathNodes[level - 1], value);
-                } else {
-                    final StatisticatedObject sobject = new StatisticatedObject(value);
-                    pathNodes[level] = dataTree.addNode(pathNodes[level - 1], sobject);
-                    // reference on table will be appent below
-                    // we could add more information comming from current granule
+    /**
+     * Create the node for the given granule group
+     * @param context tree context
+     * @param group granule group
+     * @param level node level (1 = first granule field)
+     * @return new (lazy) node
+     */
+    private GranuleTreeNode createNode(final TreeContext context, final GranuleGroup group, final int level) {
+        // insert original granule value if we are not on the deepest level or if files or tables are shown
+        // or use a proxy object enriched by material that need to be used by tooltip (and probably more in the future)
+        if (level < context.fieldsLen || context.showFile || context.showOITable) {
+            return new GranuleTreeNode(group.value, group.value, level, group.granules);
+        }
+        return new GranuleTreeNode(group.value, createStatisticatedObject(context, group), level, group.granules);
+    }
+
+    /**
+     * Create the proxy object (deepest level) referencing the granules and their tables
+     * @param context tree context
+     * @param group granule group
+     * @return StatisticatedObject
+     */
+    private static StatisticatedObject createStatisticatedObject(final TreeContext context, final GranuleGroup group) {
+        final StatisticatedObject sobject = new StatisticatedObject(group.value);
+        for (Granule granule : group.granules) {
+            sobject.addGranule(granule);
+
+            final Set<OIData> oiDatas = context.oiDataPerGranule.get(granule);
+            if (oiDatas != null) {
+                for (OITable table : oiDatas) {
+                    sobject.addOITable(table);
                 }
             }
+        }
+        return sobject;
+    }
 
-            final DefaultMutableTreeNode parent = pathNodes[level - 1];
+    /**
+     * Add the file / table nodes of the given deepest granule node (no notification)
+     * @param context tree context
+     * @param parent deepest granule node
+     * @param granules granules covered by the parent node
+     */
+    private static void addLeafChildren(final TreeContext context, final DefaultMutableTreeNode parent, final List<Granule> granules) {
+        final boolean showFile = context.showFile;
+        final boolean showOITable = context.showOITable;
 
-            // if parent store a proxy object, add reference on granule
-            if (parent.getUserObject() instanceof StatisticatedObject) {
-                ((StatisticatedObject) parent.getUserObject()).addGranule(granule);
-            }
+        // hashed child lookups (de-duplication):
+        final TreeNodeIndex nodeIndex = new TreeNodeIndex();
 
+        for (Granule granule : granules) {
             // Leaf:
-            final Set<OIData> oiDatas = oiDataPerGranule.get(granule);
+            final Set<OIData> oiDatas = context.oiDataPerGranule.get(granule);
             if (oiDatas != null) {
                 if (showFile) {
                     // insert node per OIFits File:
@@ -322,15 +740,15 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
                             prev = fileName;
                             // Avoid File duplicates :
                             if (showOITable) {
-                                current = GenericJTree.findTreeNode(parent, fileName);
+                                current = nodeIndex.findChild(parent, fileName);
                                 if (current == null) {
-                                    current = dataTree.addNode(parent, fileName);
+                                    current = nodeIndex.addNode(parent, fileName);
                                 }
                             } else {
                                 StatisticatedObject sobject = new StatisticatedObject(fileName);
-                                current = GenericJTree.findTreeNode(parent, sobject);
+                                current = nodeIndex.findChild(parent, sobject);
                                 if (current == null) {
-                                    current = dataTree.addNode(parent, sobject);
+                                    current = nodeIndex.addNode(parent, sobject);
                                 } else {
                                     sobject = (StatisticatedObject) current.getUserObject();
                                 }
@@ -339,8 +757,8 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
                         }
                         if (showOITable) {
                             // Avoid Table duplicates :
-                            if (GenericJTree.findTreeNode(parent, table) == null) {
-                                dataTree.addNode(current, table);
+                            if (nodeIndex.findChild(current, table) == null) {
+                                nodeIndex.addNode(current, table);
                             }
                         } else {
                             //add reference on table + other stat info into userObject of current
@@ -352,32 +770,134 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
                     // for now per OIData:
                     for (OITable table : oiDatas) {
                         // Avoid Table duplicates :
-                        if (GenericJTree.findTreeNode(parent, table) == null) {
-                            dataTree.addNode(parent, table);
+                        if (nodeIndex.findChild(parent, table) == null) {
+                            nodeIndex.addNode(parent, table);
                         }
                     }
-                } else {
-                    // add reference on table + other stat info into userObject of parent
-                    StatisticatedObject sobject = (StatisticatedObject) parent.getUserObject();
-                    for (OITable table : oiDatas) {
-                        sobject.addOITable(table);
-                    }
                 }
             }
         }
+    }
 
-        jLabelStats.setText(granules.size() + " granules, " + oiFitsCollection.size() + " oifits");
+    /**
+     * Apply the collection delta to the children of the given (loaded) node:
+     * obsolete children are removed, new ones inserted and kept ones updated (recursively if loaded)
+     * using targeted tree model notifications
+     * @param parent parent node (root or loaded node)
+     * @param level parent level (0 = root)
+     * @param granules new sorted granules covered by the parent node
+     */
+    private void mergeChildren(final DefaultMutableTreeNode parent, final int level, final List<Granule> granules) {
+        final DefaultTreeModel model = getTreeModel();
+
+        if (level >= treeContext.fieldsLen) {
+            // file / table nodes: replace them only if changed
+            final DefaultMutableTreeNode tmp = new DefaultMutableTreeNode();
+            addLeafChildren(treeContext, tmp, granules);
+
+            if (!isSameChildren(parent, tmp)) {
+                parent.removeAllChildren();
+                while (tmp.getChildCount() != 0) {
+                    parent.add((DefaultMutableTreeNode) tmp.getFirstChild());
+                }
+                model.nodeStructureChanged(parent);
+            }
+            return;
+        }
 
-        // fire node structure changed :
-        dataTree.fireNodeChanged(rootNode);
+        final List<GranuleGroup> groups = groupGranules(treeContext, level, granules);
 
-        if (jToggleButtonExpandTree.isSelected()) {
-            dataTree.expandAll(true);
-        } else if (jToggleButtonCollapseTree.isSelected()) {
-            dataTree.expandAll(false);
+        final Set<Object> keys = new HashSet<Object>(groups.size());
+        for (GranuleGroup group : groups) {
+            keys.add(group.value);
+        }
+
+        // remove obsolete children:
+        final List<Integer> removedIndices = new ArrayList<Integer>();
+        final List<Object> removedNodes = new ArrayList<Object>();
+        for (int i = 0, len = parent.getChildCount(); i < len; i++) {
+            final GranuleTreeNode child = (GranuleTreeNode) parent.getChildAt(i);
+            if (!keys.contains(child.value)) {
+                removedIndices.add(i);
+                removedNodes.add(child);
+            }
+        }
+        if (!removedIndices.isEmpty()) {
+            for (int i = removedIndices.size() - 1; i >= 0; i--) {
+                parent.remove(removedIndices.get(i).intValue());
+            }
+            model.nodesWereRemoved(parent, toArray(removedIndices), removedNodes.toArray());
+        }
+
+        // insert new children and update kept ones (same relative order):
+        final List<Integer> insertedIndices = new ArrayList<Integer>();
+        for (int i = 0, len = groups.size(); i < len; i++) {
+            final GranuleGroup group = groups.get(i);
+            final GranuleTreeNode child = (i < parent.getChildCount()) ? (GranuleTreeNode) parent.getChildAt(i) : null;
+
+            if (child != null && child.value.equals(group.value)) {
+                child.granules = group.granules;
+
+                if (child.getUserObject() instanceof StatisticatedObject) {
+                    child.setUserObject(createStatisticatedObject(treeContext, group));
+                    model.nodeChanged(child);
+                } else if (child.loaded) {
+                    mergeChildren(child, child.level, group.granules);
+                }
+            } else {
+                parent.insert(createNode(treeContext, group, level + 1), i);
+                insertedIndices.add(i);
+            }
+        }
+        if (!insertedIndices.isEmpty()) {
+            model.nodesWereInserted(parent, toArray(insertedIndices));
         }
     }
 
+    /**
+     * Return true if both nodes have the same children (recursively)
+     * @param node node
+     * @param other other node
+     * @return true if both nodes have the same children
+     */
+    private static boolean isSameChildren(final DefaultMutableTreeNode node, final DefaultMutableTreeNode other) {
+        final int len = node.getChildCount();
+        if (len != other.getChildCount()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            final DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+            final DefaultMutableTreeNode otherChild = (DefaultMutableTreeNode) other.getChildAt(i);
+
+            final Object userObject = child.getUserObject();
+            final Object otherObject = otherChild.getUserObject();
+
+            if (userObject instanceof StatisticatedObject && otherObject instanceof StatisticatedObject) {
+                final StatisticatedObject sobject = (StatisticatedObject) userObject;
+                final StatisticatedObject otherSObject = (StatisticatedObject) otherObject;
+                if (!sobject.equals(otherSObject)
+                        || !sobject.getOITables().equals(otherSObject.getOITables())
+                        || !sobject.getGranules().equals(otherSObject.getGranules())) {
+                    return false;
+                }
+            } else if (userObject == null || !userObject.equals(otherObject)) {
+                return false;
+            }
+            if (!isSameChildren(child, otherChild)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
     /** 
      * This method is called from within the constructor to
      * initialize the form.
@@ -399,8 +919,10 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         jTableCols = new javax.swing.JTable();
         jLabelStats = new javax.swing.JLabel();
         jPanelButtons = new javax.swing.JPanel();
+        jComboBoxSort = new javax.swing.JComboBox<>();
         jToggleButtonExpandTree = new javax.swing.JToggleButton();
         jToggleButtonCollapseTree = new javax.swing.JToggleButton();
+        jTextFieldSearch = new javax.swing.JTextField();
 
         setLayout(new java.awt.GridBagLayout());
 
@@ -448,14 +970,14 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         jTableCols.setAutoCreateRowSorter(true);
         jTableCols.setModel(new javax.swing.table.DefaultTableModel(
             new Object [][] {
-                { new Boolean(true),  new Boolean(true),  new Boolean(true)}
+                { new Boolean(true),  new Boolean(true),  new Boolean(true), new Boolean(false), new Boolean(false), new Boolean(false)}
             },
             new String [] {
-                "Target", "Ins. mode", "Night"
+                "Target", "Ins. mode", "Night", "Array conf.", "Array", "Run"
             }
         ) {
             Class[] types = new Class [] {
-                java.lang.Boolean.class, java.lang.Boolean.class, java.lang.Boolean.class
+                java.lang.Boolean.class, java.lang.Boolean.class, java.lang.Boolean.class, java.lang.Boolean.class, java.lang.Boolean.class, java.lang.Boolean.class
             };
 
             public Class getColumnClass(int columnIndex) {
@@ -488,6 +1010,15 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
         add(jLabelStats, gridBagConstraints);
 
+        jComboBoxSort.setModel(new javax.swing.DefaultComboBoxModel<>(fr.jmmc.oiexplorer.model.GranuleStatistics.SortKey.values()));
+        jComboBoxSort.setToolTipText("Sort granule nodes by statistics (descending)");
+        jComboBoxSort.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jComboBoxSortActionPerformed(evt);
+            }
+        });
+        jPanelButtons.add(jComboBoxSort);
+
         jToggleButtonExpandTree.setSelected(true);
         jToggleButtonExpandTree.setText("Expand");
         jToggleButtonExpandTree.addActionListener(new java.awt.event.ActionListener() {
@@ -511,6 +1042,14 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         gridBagConstraints.gridwidth = 2;
         gridBagConstraints.anchor = java.awt.GridBagConstraints.EAST;
         add(jPanelButtons, gridBagConstraints);
+
+        jTextFieldSearch.setToolTipText("Show only granules whose target, instrument mode or night (name or alias) starts with the given text");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 5;
+        gridBagConstraints.gridwidth = 3;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        add(jTextFieldSearch, gridBagConstraints);
     }// </editor-fold>//GEN-END:initComponents
 
     private void jRadioButtonFileActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jRadioButtonFileActionPerformed
@@ -537,8 +1076,14 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         }
     }//GEN-LAST:event_jToggleButtonCollapseTreeActionPerformed
 
+    private void jComboBoxSortActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jComboBoxSortActionPerformed
+        logger.debug("jComboBoxSortActionPerformed");
+        updateOIFitsCollection();
+    }//GEN-LAST:event_jComboBoxSortActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel genericTreePanel;
+    private javax.swing.JComboBox<fr.jmmc.oiexplorer.model.GranuleStatistics.SortKey> jComboBoxSort;
     private javax.swing.JLabel jLabelStats;
     private javax.swing.JPanel jPanelButtons;
     private javax.swing.JPanel jPanelTable;
@@ -548,6 +1093,7 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
     private javax.swing.JScrollPane jScrollPaneTable;
     private javax.swing.JTabbedPane jTabbedPane1;
     private javax.swing.JTable jTableCols;
+    private javax.swing.JTextField jTextFieldSearch;
     private javax.swing.JToggleButton jToggleButtonCollapseTree;
     private javax.swing.JToggleButton jToggleButtonExpandTree;
     // End of variables declaration//GEN-END:variables
@@ -576,6 +1122,7 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
 
         switch (event.getType()) {
             case COLLECTION_CHANGED:
+                computeStatistics(event.getOIFitsCollection());
                 updateOIFitsCollection(event.getOIFitsCollection());
                 break;
             default:
@@ -629,18 +1176,8 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
 
         if (value instanceof StatisticatedObject) {
             final StatisticatedObject statisticatedObject = (StatisticatedObject) value;
-            final Object mainObject = statisticatedObject.getMainObject();
-            // TODO display statistics....
-            // by now, just append orinal tooltip
-            final String mainObjectToolTip = getTreeTooltipText(mainObject, new StringBuilder(256), true);
-            if (mainObjectToolTip != null) {
-                sb.append(mainObjectToolTip);
-            }
-            sb.append("<hr>This node gathers following material from ").append(statisticatedObject.getGranules().size()).append(" granule(s)");
-            for (OITable oitable : statisticatedObject.getOITables()) {
-                sb.append("<br><br>").append(oitable).append("<br>");
-                getTreeTooltipText(oitable, sb, true);
-            }
+            appendTooltipHeader(statisticatedObject, sb);
+            appendTableTooltips(statisticatedObject.getOITables(), sb);
         } else if (value instanceof Target) {
             final Target target = (Target) value;
             sb.append("<b>name:</b> ").append(target.getTarget());
@@ -700,23 +1237,7 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
             sb.append("<br><b>Lambda max:</b> ").append(insMode.getLambdaMax());
             sb.append("<br><b>Resolution:</b> ").append(insMode.getResPower());
         } else if (value instanceof OIData) {
-            final OIData oiData = (OIData) value;
-            sb.append("<html>");
-            sb.append("<b>Table:</b> ").append(oiData.getExtName()).append('#').append(oiData.getExtNb());
-            sb.append("<br><b>OIFits:</b> ").append(oiData.getOIFitsFile().getFileName());
-            sb.append("<br><b>DATE-OBS:</b> ").append(oiData.getDateObs());
-            sb.append("<br><b>ARRNAME:</b> ").append(oiData.getArrName());
-            sb.append("<br><b>INSNAME:</b> ").append(oiData.getInsName());
-            sb.append("<br><b>NB_MEASUREMENTS:</b> ").append(oiData.getNbMeasurements());
-
-            sb.append("<br><b>Baselines:</b> ");
-            for (short[] staIndex : oiData.getDistinctStaIndex()) {
-                sb.append(oiData.getStaNames(staIndex)).append(' '); // cached
-            }
-            sb.append("<br><b>Configurations:</b> ");
-            for (short[] staConf : oiData.getDistinctStaConf()) {
-                sb.append(oiData.getStaNames(staConf)).append(' '); // cached
-            }
+            appendOIDataTooltip((OIData) value, sb);
         }
         if (sb.length() == 0) {
             return null;
@@ -727,6 +1248,434 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
         return sb.toString();
     }
 
+    /**
+     * Append the description of the given node (main object, aggregated statistics) without its tables.
+     * Note: reads the collection managers and the granule statistics so it must be called from the EDT
+     * @param statisticatedObject node user object
+     * @param sb buffer
+     */
+    private void appendTooltipHeader(final StatisticatedObject statisticatedObject, final StringBuilder sb) {
+        final Object mainObject = statisticatedObject.getMainObject();
+        final String mainObjectToolTip = getTreeTooltipText(mainObject, new StringBuilder(256), true);
+        if (mainObjectToolTip != null) {
+            sb.append(mainObjectToolTip);
+        }
+        final GranuleStatistics stats = getStatistics(statisticatedObject.getGranules());
+        if (stats != null) {
+            sb.append("<hr>");
+            stats.toHtml(sb);
+        }
+        sb.append("<hr>This node gathers following material from ").append(statisticatedObject.getGranules().size()).append(" granule(s)");
+    }
+
+    /**
+     * Append the description of the given tables (only reads the tables: may be called by a worker thread)
+     * @param oiTables tables
+     * @param sb buffer
+     */
+    private static void appendTableTooltips(final Collection<OITable> oiTables, final StringBuilder sb) {
+        for (OITable oitable : oiTables) {
+            sb.append("<br><br>").append(oitable).append("<br>");
+            if (oitable instanceof OIData) {
+                appendOIDataTooltip((OIData) oitable, sb);
+            }
+        }
+    }
+
+    /**
+     * Append the description of the given OIData table
+     * @param oiData OIData table
+     * @param sb buffer
+     */
+    private static void appendOIDataTooltip(final OIData oiData, final StringBuilder sb) {
+        sb.append("<html>");
+        sb.append("<b>Table:</b> ").append(oiData.getExtName()).append('#').append(oiData.getExtNb());
+        sb.append("<br><b>OIFits:</b> ").append(oiData.getOIFitsFile().getFileName());
+        sb.append("<br><b>DATE-OBS:</b> ").append(oiData.getDateObs());
+        sb.append("<br><b>ARRNAME:</b> ").append(oiData.getArrName());
+        sb.append("<br><b>INSNAME:</b> ").append(oiData.getInsName());
+        sb.append("<br><b>NB_MEASUREMENTS:</b> ").append(oiData.getNbMeasurements());
+
+        sb.append("<br><b>Baselines:</b> ");
+        for (short[] staIndex : oiData.getDistinctStaIndex()) {
+            sb.append(oiData.getStaNames(staIndex)).append(' '); // cached
+        }
+        sb.append("<br><b>Configurations:</b> ");
+        for (short[] staConf : oiData.getDistinctStaConf()) {
+            sb.append(oiData.getStaNames(staConf)).append(' '); // cached
+        }
+    }
+
+    /**
+     * Tree context: granule fields, display options and collection data used to create nodes
+     */
+    private static final class TreeContext {
+
+        /** grouping fields (tree levels) */
+        final List<GranuleGroupingField> fields;
+        /** bucket index of the derived fields (null if no derived field) */
+        final GranuleBucketIndex bucketIndex;
+        /** number of granule fields */
+        final int fieldsLen;
+        /** true to show file nodes */
+        final boolean showFile;
+        /** true to show table nodes */
+        final boolean showOITable;
+        /** OIData tables per granule (immutable snapshot) */
+        final Map<Granule, Set<OIData>> oiDataPerGranule;
+        /** node sort key */
+        final GranuleStatistics.SortKey sortKey;
+        /** statistics per granule (may be null) */
+        final Map<Granule, GranuleStatistics> granuleStats;
+
+        TreeContext(final List<GranuleGroupingField> fields, final GranuleBucketIndex bucketIndex,
+                    final boolean showFile, final boolean showOITable,
+                    final Map<Granule, Set<OIData>> oiDataPerGranule, final GranuleStatistics.SortKey sortKey,
+                    final Map<Granule, GranuleStatistics> granuleStats) {
+            this.fields = fields;
+            this.bucketIndex = bucketIndex;
+            this.fieldsLen = fields.size();
+            this.showFile = showFile;
+            this.showOITable = showOITable;
+            this.oiDataPerGranule = oiDataPerGranule;
+            this.sortKey = sortKey;
+            this.granuleStats = granuleStats;
+        }
+
+        Object getValue(final Granule granule, final GranuleGroupingField field) {
+            return (bucketIndex != null) ? bucketIndex.getValue(granule, field) : granule.getField(field.getGranuleField());
+        }
+
+        boolean isSameLayout(final TreeContext other) {
+            // sorted nodes are not merged (statistics order changes):
+            return this.fields.equals(other.fields) && this.showFile == other.showFile && this.showOITable == other.showOITable
+                    && this.sortKey == GranuleStatistics.SortKey.NONE && other.sortKey == GranuleStatistics.SortKey.NONE;
+        }
+    }
+
+    /**
+     * Consecutive sorted granules sharing the same granule field value
+     */
+    private static final class GranuleGroup {
+
+        /** granule field value */
+        final Object value;
+        /** granules */
+        final List<Granule> granules;
+        /** optional aggregated statistics (sort) */
+        GranuleStatistics stats = null;
+
+        GranuleGroup(final Object value, final List<Granule> granules) {
+            this.value = value;
+            this.granules = granules;
+        }
+    }
+
+    /**
+     * Tree node representing a granule field value whose children are created on expansion
+     */
+    private final class GranuleTreeNode extends DefaultMutableTreeNode {
+
+        /** default serial UID for Serializable interface */
+        private static final long serialVersionUID = 1;
+        /** granule field value (key) */
+        final Object value;
+        /** node level (1 = first granule field) */
+        final int level;
+        /** granules covered by this node */
+        List<Granule> granules;
+        /** true if children were created */
+        boolean loaded = false;
+        /** cached aggregated statistics */
+        private GranuleStatistics stats = null;
+        /** statistics version of the cached statistics */
+        private int nodeStatsVersion = -1;
+
+        GranuleTreeNode(final Object value, final Object userObject, final int level, final List<Granule> granules) {
+            super(userObject);
+            this.value = value;
+            this.level = level;
+            this.granules = granules;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            if (!loaded) {
+                return !(level < treeContext.fieldsLen || treeContext.showFile || treeContext.showOITable);
+            }
+            return super.isLeaf();
+        }
+
+        /**
+         * Return the aggregated statistics of this node (cached)
+         * @return statistics or null if not computed yet
+         */
+        GranuleStatistics getStatistics() {
+            if (nodeStatsVersion != statsVersion) {
+                stats = GranuleTreePanel.this.getStatistics(granules);
+                if (stats != null) {
+                    nodeStatsVersion = statsVersion;
+                }
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Tree cell renderer appending the node statistics to granule node labels
+     */
+    private final class StatisticsTreeCellRenderer extends DefaultTreeCellRenderer {
+
+        /** default serial UID for Serializable interface */
+        private static final long serialVersionUID = 1;
+        /** temporary buffer */
+        private final StringBuilder sb = new StringBuilder(64);
+
+        @Override
+        public Component getTreeCellRendererComponent(final JTree tree, final Object value,
+                                                      final boolean sel, final boolean expanded, final boolean leaf,
+                                                      final int row, final boolean hasFocus) {
+            super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+
+            if (value instanceof GranuleTreeNode) {
+                final GranuleStatistics stats = ((GranuleTreeNode) value).getStatistics();
+                if (stats != null) {
+                    sb.setLength(0);
+                    sb.append(getText()).append(" (");
+                    stats.toShortString(sb).append(')');
+                    setText(sb.toString());
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Granules and first level nodes built in background
+     */
+    private static final class TreeBuildResult {
+
+        /** tree context */
+        final TreeContext context;
+        /** sorted (and filtered) granules */
+        final List<Granule> granules;
+        /** detached root node holding the first level nodes or null to merge the existing tree */
+        final DefaultMutableTreeNode rootNode;
+        /** true if the granules were filtered by the search text */
+        final boolean filtered;
+        /** number of OIFits files */
+        final int nbFiles;
+        /** tree version */
+        final int version;
+
+        TreeBuildResult(final TreeContext context, final List<Granule> granules, final DefaultMutableTreeNode rootNode,
+                        final boolean filtered, final int nbFiles, final int version) {
+            this.context = context;
+            this.granules = granules;
+            this.rootNode = rootNode;
+            this.filtered = filtered;
+            this.nbFiles = nbFiles;
+            this.version = version;
+        }
+    }
+
+    /**
+     * This worker sorts, filters and groups the granules of a collection snapshot in background
+     * and creates the first level nodes on a detached root node
+     */
+    private static final class TreeBuildSwingWorker extends TaskSwingWorker<TreeBuildResult> {
+
+        /* members */
+        /** granule tree panel to refresh */
+        private final GranuleTreePanel panel;
+        /** tree context (collection snapshot) */
+        private final TreeContext context;
+        /** sorted granule views */
+        private final GranuleSortIndex sortIndex;
+        /** search index (read-only) or null if no search */
+        private final GranuleSearchIndex searchIndex;
+        /** search text */
+        private final String query;
+        /** true to merge the existing tree (same layout) */
+        private final boolean merge;
+        /** number of OIFits files */
+        private final int nbFiles;
+        /** tree version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param panel granule tree panel to refresh
+         * @param context tree context (collection snapshot)
+         * @param sortIndex sorted granule views
+         * @param searchIndex search index (read-only) or null if no search
+         * @param query search text
+         * @param merge true to merge the existing tree (same layout)
+         * @param nbFiles number of OIFits files
+         * @param version tree version
+         */
+        private TreeBuildSwingWorker(final GranuleTreePanel panel, final TreeContext context, final GranuleSortIndex sortIndex,
+                                     final GranuleSearchIndex searchIndex, final String query,
+                                     final boolean merge, final int nbFiles, final int version) {
+            super(TASK_TREE);
+            this.panel = panel;
+            this.context = context;
+            this.sortIndex = sortIndex;
+            this.searchIndex = searchIndex;
+            this.query = query;
+            this.merge = merge;
+            this.nbFiles = nbFiles;
+            this.version = version;
+        }
+
+        /**
+         * Sort, filter and group the granules.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return tree build result or null if interrupted
+         */
+        @Override
+        public TreeBuildResult computeInBackground() {
+            final long startTime = System.nanoTime();
+
+            // cached sorted view (read-only):
+            List<Granule> granules = sortIndex.getSortedGranules(context.fields, context.bucketIndex);
+            logger.debug("granules sorted: {}", granules);
+
+            final Set<Object> matches = (searchIndex != null) ? searchIndex.search(query) : null;
+            if (matches != null) {
+                granules = GranuleSearchIndex.filter(granules, matches);
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                // cancelled by a newer generation:
+                return null;
+            }
+
+            DefaultMutableTreeNode rootNode = null;
+            if (!merge) {
+                rootNode = new DefaultMutableTreeNode();
+                panel.addChildren(context, rootNode, 0, granules);
+            }
+
+            logger.debug("buildTree: {} granules - duration = {} ms.", granules.size(), 1e-6d * (System.nanoTime() - startTime));
+
+            return new TreeBuildResult(context, granules, rootNode, (matches != null), nbFiles, version);
+        }
+
+        /**
+         * Swap the tree.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param result tree build result
+         */
+        @Override
+        public void refreshUI(final TreeBuildResult result) {
+            if (result != null) {
+                panel.treeBuilt(result);
+            }
+        }
+    }
+
+    /**
+     * This worker computes the statistics of all granules in background using parallel jobs
+     */
+    private static final class StatisticsSwingWorker extends TaskSwingWorker<Map<Granule, GranuleStatistics>> {
+
+        /* members */
+        /** granule tree panel to refresh */
+        private final GranuleTreePanel panel;
+        /** collection index version (used to discard obsolete results) */
+        private final int collectionVersion;
+        /** immutable snapshot of the OIData tables per granule */
+        private final Map<Granule, Set<OIData>> oiDataPerGranule;
+
+        /**
+         * Hidden constructor
+         * @param panel granule tree panel to refresh
+         * @param collectionVersion collection index version (used to discard obsolete results)
+         * @param oiDataPerGranule immutable snapshot of the OIData tables per granule
+         */
+        private StatisticsSwingWorker(final GranuleTreePanel panel, final int collectionVersion,
+                                      final Map<Granule, Set<OIData>> oiDataPerGranule) {
+            super(TASK_STATISTICS);
+            this.panel = panel;
+            this.collectionVersion = collectionVersion;
+            this.oiDataPerGranule = oiDataPerGranule;
+        }
+
+        /**
+         * Compute the statistics per granule.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return statistics per granule or null if interrupted
+         */
+        @Override
+        public Map<Granule, GranuleStatistics> computeInBackground() {
+            final long startTime = System.nanoTime();
+
+            final Granule[] granules = oiDataPerGranule.keySet().toArray(new Granule[oiDataPerGranule.size()]);
+            final int nGranules = granules.length;
+            final GranuleStatistics[] results = new GranuleStatistics[nGranules];
+
+            final int nJobs = 1 + (nGranules - 1) / STATS_GRANULES_PER_JOB;
+            final Callable<?>[] jobs = new Callable<?>[nJobs];
+
+            for (int j = 0; j < nJobs; j++) {
+                final int from = j * STATS_GRANULES_PER_JOB;
+                final int to = Math.min(from + STATS_GRANULES_PER_JOB, nGranules);
+
+                jobs[j] = new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = from; i < to; i++) {
+                            results[i] = GranuleStatistics.compute(granules[i], oiDataPerGranule.get(granules[i]));
+                        }
+                        return Boolean.TRUE;
+                    }
+                };
+            }
+
+            if (ParallelJobExecutor.getInstance().forkAndJoin("GranuleTreePanel.computeStatistics", jobs) == null) {
+                // interrupted:
+                return null;
+            }
+
+            final Map<Granule, GranuleStatistics> stats = new HashMap<Granule, GranuleStatistics>(2 * nGranules);
+            for (int i = 0; i < nGranules; i++) {
+                stats.put(granules[i], results[i]);
+            }
+
+            logger.info("computeStatistics: {} granules - duration = {} ms.", nGranules, 1e-6d * (System.nanoTime() - startTime));
+            return stats;
+        }
+
+        /**
+         * Refresh the granule tree.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param stats statistics per granule
+         */
+        @Override
+        public void refreshUI(final Map<Granule, GranuleStatistics> stats) {
+            if (stats != null) {
+                panel.statisticsComputed(collectionVersion, stats);
+            }
+        }
+    }
+
+    /**
+     * Immutable tooltip input of a granule node prepared on the EDT (see TreeTooltipCache.TooltipProvider)
+     */
+    private static final class NodeTooltipInput {
+
+        /** node description (main object and statistics) */
+        final String header;
+        /** copy of the node tables */
+        final List<OITable> oiTables;
+
+        NodeTooltipInput(final String header, final List<OITable> oiTables) {
+            this.header = header;
+            this.oiTables = oiTables;
+        }
+    }
+
     private static final class StatisticatedObject {
 
         private final Object mainObject;
@@ -764,26 +1713,11 @@ public final class GranuleTreePanel extends javax.swing.JPanel implements OIFits
             }
             return this.mainObject.equals(o);
         }
-    }
-
-    private class TooltipTreeCellRenderer extends DefaultTreeCellRenderer {
-
-        private static final long serialVersionUID = 1L;
 
         @Override
-        public Component getTreeCellRendererComponent(JTree tree, Object value,
-                                                      boolean sel, boolean expanded, boolean leaf, int row,
-                                                      boolean hasFocus) {
-
-            if (value != null) {
-                final Object userObject;
-                if (value instanceof DefaultMutableTreeNode) {
-                    userObject = ((DefaultMutableTreeNode) value).getUserObject();
-                    setToolTipText(getTreeTooltipText(userObject, tmpBuf, false));
-                }
-            }
-            return super.getTreeCellRendererComponent(tree, value, sel,
-                    expanded, leaf, row, hasFocus);
+        public int hashCode() {
+            // consistent with equals (hashed child lookups):
+            return this.mainObject.hashCode();
         }
     }
 }
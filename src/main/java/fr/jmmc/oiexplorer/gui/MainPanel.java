@@ -36,6 +36,7 @@ import fr.jmmc.oiexplorer.gui.action.LoadOIDataCollectionAction;
 import fr.jmmc.oiexplorer.gui.action.LoadOIFitsAction;
 import fr.jmmc.oiexplorer.gui.action.OIFitsExplorerExportAction;
 import fr.jmmc.oiexplorer.gui.action.RemoveAction;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
@@ -94,13 +95,15 @@ public class MainPanel extends javax.swing.JPanel implements OIFitsCollectionMan
      * Creates new form MainPanel
      */
     public MainPanel() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
         // always bind at the beginning of the constructor (to maintain correct ordering):
-        ocm.bindCollectionChangedEvent(this);
-        ocm.bindPlotListChangedEvent(this);
-        ocm.getActivePlotChangedEventNotifier().register(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+        ocm.bindPlotListChangedEvent(eventListener);
+        ocm.getActivePlotChangedEventNotifier().register(eventListener);
 
         if (DEV_MODE) {
-            ocm.getPlotChangedEventNotifier().register(this);
+            ocm.getPlotChangedEventNotifier().register(eventListener);
         }
 
         // Build GUI
@@ -120,7 +123,7 @@ public class MainPanel extends javax.swing.JPanel implements OIFitsCollectionMan
             logger.debug("dispose: {}", ObjectUtils.getObjectInfo(this));
         }
 
-        ocm.unbind(this);
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
 
         // forward dispose() to child components:
         if (dataTreePanel != null) {
@@ -594,13 +597,20 @@ public class MainPanel extends javax.swing.JPanel implements OIFitsCollectionMan
         plot.setPlotDefinition(plotDef);
         plot.setSubsetDefinition(subset);
 
-        // fire PlotListChanged ie will call updateTabContent():
-        if (!ocm.addPlot(plot)) {
-            throw new IllegalStateException("unable to addPlot : " + plot);
-        }
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+        try {
+            // fire PlotListChanged ie will call updateTabContent() at commit:
+            if (!ocm.addPlot(plot)) {
+                throw new IllegalStateException("unable to addPlot : " + plot);
+            }
 
-        // change selected plot:
-        ocm.fireActivePlotChanged(null, id, null);
+            // change selected plot (replayed after PlotListChanged so the new tab exists):
+            ocm.fireActivePlotChanged(null, id, null);
+        } finally {
+            // deliver consolidated events:
+            batch.commit();
+        }
     }
 
     /**
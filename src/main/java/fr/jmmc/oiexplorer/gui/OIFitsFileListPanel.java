@@ -17,6 +17,7 @@ import static fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType.ACT
 import static fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType.COLLECTION_CHANGED;
 import fr.jmmc.oiexplorer.core.model.oi.Plot;
 import fr.jmmc.oiexplorer.core.model.oi.SubsetDefinition;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
 import fr.jmmc.oitools.model.OIFitsCollection;
 import fr.jmmc.oitools.model.OIFitsFile;
 import java.awt.Component;
@@ -49,12 +50,14 @@ public class OIFitsFileListPanel extends javax.swing.JPanel implements OIFitsCol
 
     /** Creates new form OIFitsFileListPanel */
     public OIFitsFileListPanel() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
         // always bind at the beginning of the constructor (to maintain correct ordering):
-        ocm.bindCollectionChangedEvent(this);
-        ocm.getPlotChangedEventNotifier().register(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+        ocm.getPlotChangedEventNotifier().register(eventListener);
         // DOES not work : ocm.bindSubsetDefinitionListChangedEvent(this);
         // TODO fix and replace PlotChangedEvent
-        ocm.getActivePlotChangedEventNotifier().register(this);
+        ocm.getActivePlotChangedEventNotifier().register(eventListener);
 
         initComponents();
         postInit();
@@ -84,7 +87,7 @@ public class OIFitsFileListPanel extends javax.swing.JPanel implements OIFitsCol
             logger.debug("dispose: {}", ObjectUtils.getObjectInfo(this));
         }
 
-        ocm.unbind(this);
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
     }
 
     /** This method is called from within the constructor to
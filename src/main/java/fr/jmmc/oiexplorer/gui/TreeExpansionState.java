@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * This class captures the expanded and selected paths of a tree as user object paths
+ * so that they can be restored once the tree nodes are replaced (new tree model swapped in).
+ * All methods must be called from the Swing Event Dispatcher Thread.
+ */
+final class TreeExpansionState {
+
+    /** comparator of user object paths by length (parents first) */
+    private static final Comparator<Object[]> CMP_LENGTH = new Comparator<Object[]>() {
+        @Override
+        public int compare(final Object[] p1, final Object[] p2) {
+            return Integer.compare(p1.length, p2.length);
+        }
+    };
+
+    /* members */
+    /** expanded user object paths (parents first) */
+    private final List<Object[]> expandedPaths;
+    /** selected user object paths */
+    private final List<Object[]> selectedPaths;
+
+    /**
+     * Private constructor
+     * @param expandedPaths expanded user object paths
+     * @param selectedPaths selected user object paths
+     */
+    private TreeExpansionState(final List<Object[]> expandedPaths, final List<Object[]> selectedPaths) {
+        this.expandedPaths = expandedPaths;
+        this.selectedPaths = selectedPaths;
+    }
+
+    /**
+     * Capture the expanded and selected paths of the given tree
+     * @param tree tree
+     * @param rootNode root node
+     * @return tree expansion state
+     */
+    static TreeExpansionState capture(final JTree tree, final DefaultMutableTreeNode rootNode) {
+        final List<Object[]> expandedPaths = new ArrayList<Object[]>();
+
+        final Enumeration<TreePath> expanded = tree.getExpandedDescendants(new TreePath(rootNode.getPath()));
+        if (expanded != null) {
+            while (expanded.hasMoreElements()) {
+                expandedPaths.add(toUserObjects(expanded.nextElement()));
+            }
+            // expand parents first (lazy nodes):
+            Collections.sort(expandedPaths, CMP_LENGTH);
+        }
+
+        final List<Object[]> selectedPaths = new ArrayList<Object[]>();
+
+        final TreePath[] selection = tree.getSelectionPaths();
+        if (selection != null) {
+            for (TreePath path : selection) {
+                selectedPaths.add(toUserObjects(path));
+            }
+        }
+        return new TreeExpansionState(expandedPaths, selectedPaths);
+    }
+
+    /**
+     * Restore the expanded paths (and optionally the selected paths) still present in the given tree
+     * @param tree tree
+     * @param rootNode root node
+     * @param restoreSelection true to restore the selected paths
+     */
+    void restore(final JTree tree, final DefaultMutableTreeNode rootNode, final boolean restoreSelection) {
+        for (Object[] userObjects : expandedPaths) {
+            final TreePath path = findPath(rootNode, userObjects);
+            if (path != null) {
+                tree.expandPath(path);
+            }
+        }
+        if (restoreSelection && !selectedPaths.isEmpty()) {
+            final List<TreePath> selection = new ArrayList<TreePath>(selectedPaths.size());
+            for (Object[] userObjects : selectedPaths) {
+                final TreePath path = findPath(rootNode, userObjects);
+                if (path != null) {
+                    selection.add(path);
+                }
+            }
+            if (!selection.isEmpty()) {
+                tree.setSelectionPaths(selection.toArray(new TreePath[selection.size()]));
+            }
+        }
+    }
+
+    /**
+     * Return the user objects of the given tree path
+     * @param path tree path
+     * @return user objects (root first)
+     */
+    private static Object[] toUserObjects(final TreePath path) {
+        final Object[] nodes = path.getPath();
+        final Object[] userObjects = new Object[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            userObjects[i] = ((DefaultMutableTreeNode) nodes[i]).getUserObject();
+        }
+        return userObjects;
+    }
+
+    /**
+     * Find the tree path matching the given user objects (root excluded)
+     * @param rootNode root node
+     * @param userObjects user objects (root first)
+     * @return tree path or null if not found
+     */
+    private static TreePath findPath(final DefaultMutableTreeNode rootNode, final Object[] userObjects) {
+        DefaultMutableTreeNode node = rootNode;
+
+        for (int i = 1; i < userObjects.length && node != null; i++) {
+            final Object userObject = userObjects[i];
+            DefaultMutableTreeNode match = null;
+
+            for (int j = 0, len = node.getChildCount(); j < len; j++) {
+                final DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(j);
+                // equals method must be called on other to support proxy object:
+                if (child.getUserObject() != null && child.getUserObject().equals(userObject)) {
+                    match = child;
+                    break;
+                }
+            }
+            node = match;
+        }
+        return (node != null) ? new TreePath(node.getPath()) : null;
+    }
+}
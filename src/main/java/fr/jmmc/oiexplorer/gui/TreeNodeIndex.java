@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui;
+
+import fr.jmmc.jmcs.gui.component.GenericJTree;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * This class indexes the children of tree nodes by their user object (hash map per parent node)
+ * to replace the linear GenericJTree.findTreeNode(parent, userObject) lookups while building a tree:
+ * the first child having an equal user object is returned, as with the linear scan.
+ * User objects must implement hashCode() consistently with equals().
+ */
+final class TreeNodeIndex {
+
+    /* members */
+    /** children per parent node (identity) keyed by user object */
+    private final Map<DefaultMutableTreeNode, Map<Object, DefaultMutableTreeNode>> childrenPerParent
+                                                                                  = new IdentityHashMap<DefaultMutableTreeNode, Map<Object, DefaultMutableTreeNode>>();
+
+    /**
+     * Constructor
+     */
+    TreeNodeIndex() {
+        super();
+    }
+
+    /**
+     * Return the first child of the given parent having the given user object
+     * @param parent parent node
+     * @param userObject user object to look for
+     * @return child node or null if not found
+     */
+    DefaultMutableTreeNode findChild(final DefaultMutableTreeNode parent, final Object userObject) {
+        return getChildren(parent).get(userObject);
+    }
+
+    /**
+     * Create a new child node with the given user object, add it to the given parent and index it
+     * @param tree tree
+     * @param parent parent node
+     * @param userObject user object
+     * @return new child node
+     */
+    DefaultMutableTreeNode addNode(final GenericJTree<Object> tree, final DefaultMutableTreeNode parent, final Object userObject) {
+        final Map<Object, DefaultMutableTreeNode> children = getChildren(parent);
+        final DefaultMutableTreeNode node = tree.addNode(parent, userObject);
+        if (userObject != null && !children.containsKey(userObject)) {
+            children.put(userObject, node);
+        }
+        return node;
+    }
+
+    /**
+     * Create a new child node with the given user object, add it to the given parent and index it
+     * without any tree reference (detached trees built by worker threads)
+     * @param parent parent node
+     * @param userObject user object
+     * @return new child node
+     */
+    DefaultMutableTreeNode addNode(final DefaultMutableTreeNode parent, final Object userObject) {
+        final Map<Object, DefaultMutableTreeNode> children = getChildren(parent);
+        final DefaultMutableTreeNode node = new DefaultMutableTreeNode(userObject);
+        parent.add(node);
+        if (userObject != null && !children.containsKey(userObject)) {
+            children.put(userObject, node);
+        }
+        return node;
+    }
+
+    /**
+     * Clear the index
+     */
+    void clear() {
+        childrenPerParent.clear();
+    }
+
+    /**
+     * Return the index of the given parent, created from its current children if needed
+     * @param parent parent node
+     * @return children keyed by user object
+     */
+    private Map<Object, DefaultMutableTreeNode> getChildren(final DefaultMutableTreeNode parent) {
+        Map<Object, DefaultMutableTreeNode> children = childrenPerParent.get(parent);
+        if (children == null) {
+            final int len = parent.getChildCount();
+            children = new HashMap<Object, DefaultMutableTreeNode>(Math.max(16, 2 * len));
+
+            for (int i = 0; i < len; i++) {
+                final DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(i);
+                final Object userObject = child.getUserObject();
+                // keep the first match:
+                if (userObject != null && !children.containsKey(userObject)) {
+                    children.put(userObject, child);
+                }
+            }
+            childrenPerParent.put(parent, children);
+        }
+        return children;
+    }
+}
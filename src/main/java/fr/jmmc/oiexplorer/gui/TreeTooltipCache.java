@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui;
+
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
+import java.awt.Point;
+import java.awt.event.MouseEvent;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.JTree;
+import javax.swing.ToolTipManager;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * This class computes the tooltips of tree nodes on demand (mouse hover) and caches them per node
+ * until the tree is regenerated (see clear()).
+ * Expensive tooltips are computed in background while a placeholder is displayed.
+ * All methods must be called from the Swing Event Dispatcher Thread.
+ */
+final class TreeTooltipCache {
+
+    /** placeholder displayed while the tooltip is computed */
+    private static final String PLACEHOLDER = "<html><i>computing ...</i></html>";
+
+    /**
+     * Tooltip provider
+     */
+    interface TooltipProvider {
+
+        /**
+         * Return true if the tooltip of the given user object must be computed in background
+         * @param userObject node user object
+         * @return true if the tooltip is expensive
+         */
+        boolean isExpensive(Object userObject);
+
+        /**
+         * Prepare the tooltip input of the given user object (called on the EDT):
+         * any state that is only safe to read on the EDT (collection, managers, statistics) must be copied here
+         * @param userObject node user object
+         * @return immutable tooltip input given to computeTooltip()
+         */
+        Object prepareTooltip(Object userObject);
+
+        /**
+         * Compute the tooltip from the given input (called by a worker thread if expensive)
+         * @param input tooltip input (see prepareTooltip())
+         * @return tooltip or null
+         */
+        String computeTooltip(Object input);
+    }
+
+    /* members */
+    /** tree */
+    private final JTree tree;
+    /** tooltip provider */
+    private final TooltipProvider provider;
+    /** tooltip task (only the last hovered node is computed) */
+    private final Task task;
+    /** cached tooltips per node (identity) */
+    private final Map<DefaultMutableTreeNode, String> tooltips = new HashMap<DefaultMutableTreeNode, String>(64);
+    /** node whose tooltip is being computed */
+    private DefaultMutableTreeNode pendingNode = null;
+    /** cache version (incremented by clear()) */
+    private int version = 0;
+
+    /**
+     * Constructor
+     * @param tree tree
+     * @param provider tooltip provider
+     * @param taskName name of the background task
+     */
+    TreeTooltipCache(final JTree tree, final TooltipProvider provider, final String taskName) {
+        this.tree = tree;
+        this.provider = provider;
+        this.task = new Task(taskName);
+    }
+
+    /**
+     * Clear the cached tooltips (tree regenerated or collection changed)
+     */
+    void clear() {
+        tooltips.clear();
+        pendingNode = null;
+        version++;
+    }
+
+    /**
+     * Return the tooltip of the node at the mouse location
+     * @param evt mouse event
+     * @return tooltip, placeholder if computed in background or null
+     */
+    String getToolTipText(final MouseEvent evt) {
+        final DefaultMutableTreeNode node = getNodeAt(evt.getX(), evt.getY());
+        if (node == null) {
+            return null;
+        }
+        if (tooltips.containsKey(node)) {
+            return tooltips.get(node);
+        }
+        final Object userObject = node.getUserObject();
+
+        if (!provider.isExpensive(userObject)) {
+            final String tooltip = provider.computeTooltip(provider.prepareTooltip(userObject));
+            tooltips.put(node, tooltip);
+            return tooltip;
+        }
+        if (pendingNode != node) {
+            pendingNode = node;
+            new TooltipSwingWorker(this, node, provider.prepareTooltip(userObject), version).executeTask();
+        }
+        return PLACEHOLDER;
+    }
+
+    /**
+     * Return the tree node at the given location
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return tree node or null
+     */
+    private DefaultMutableTreeNode getNodeAt(final int x, final int y) {
+        final TreePath path = tree.getPathForLocation(x, y);
+        if (path != null && path.getLastPathComponent() instanceof DefaultMutableTreeNode) {
+            return (DefaultMutableTreeNode) path.getLastPathComponent();
+        }
+        return null;
+    }
+
+    /**
+     * Store the tooltip computed in background and refresh the displayed tooltip if the node is still hovered
+     * @param node tree node
+     * @param tooltip computed tooltip
+     * @param taskVersion cache version when the computation started
+     */
+    private void tooltipComputed(final DefaultMutableTreeNode node, final String tooltip, final int taskVersion) {
+        if (taskVersion != version) {
+            // obsolete:
+            return;
+        }
+        tooltips.put(node, tooltip);
+
+        if (pendingNode == node) {
+            pendingNode = null;
+
+            final Point pt = tree.getMousePosition();
+            if (pt != null && getNodeAt(pt.x, pt.y) == node) {
+                // let the ToolTipManager query the tooltip again:
+                ToolTipManager.sharedInstance().mouseMoved(new MouseEvent(tree, MouseEvent.MOUSE_MOVED,
+                        System.currentTimeMillis(), 0, pt.x, pt.y, 0, false));
+            }
+        }
+    }
+
+    /**
+     * This worker computes one expensive tooltip in background
+     */
+    private static final class TooltipSwingWorker extends TaskSwingWorker<String> {
+
+        /* members */
+        /** tooltip cache */
+        private final TreeTooltipCache cache;
+        /** tree node */
+        private final DefaultMutableTreeNode node;
+        /** tooltip input (see TooltipProvider.prepareTooltip()) */
+        private final Object input;
+        /** cache version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param cache tooltip cache
+         * @param node tree node
+         * @param input tooltip input
+         * @param version cache version
+         */
+        private TooltipSwingWorker(final TreeTooltipCache cache, final DefaultMutableTreeNode node,
+                                   final Object input, final int version) {
+            super(cache.task);
+            this.cache = cache;
+            this.node = node;
+            this.input = input;
+            this.version = version;
+        }
+
+        /**
+         * Compute the tooltip.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return tooltip
+         */
+        @Override
+        public String computeInBackground() {
+            return cache.provider.computeTooltip(input);
+        }
+
+        /**
+         * Store the tooltip.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param tooltip computed tooltip
+         */
+        @Override
+        public void refreshUI(final String tooltip) {
+            cache.tooltipComputed(node, tooltip, version);
+        }
+    }
+}
@@ -10,16 +10,32 @@ import fr.jmmc.jmcs.gui.action.RegisteredAction;
 import fr.jmmc.jmcs.gui.component.FileChooser;
 import fr.jmmc.jmcs.gui.component.MessagePane;
 import fr.jmmc.jmcs.gui.component.StatusBar;
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
 import fr.jmmc.jmcs.util.jaxb.XmlBindException;
+import fr.jmmc.oiexplorer.Preferences;
 import fr.jmmc.oiexplorer.core.model.LoadOIFitsListener;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.OIDataCollectionFileReader;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
+import fr.jmmc.oiexplorer.model.OIFitsFileFingerprint;
+import fr.jmmc.oiexplorer.model.SessionAutoSaver;
+import fr.jmmc.oiexplorer.model.SessionSnapshot;
 import fr.jmmc.oitools.model.OIFitsChecker;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +55,8 @@ public final class LoadOIDataCollectionAction extends RegisteredAction {
     private static final Logger logger = LoggerFactory.getLogger(className);
     /** OIFitsExplorer MimeType */
     private final static MimeType mimeType = MimeType.OIFITS_EXPLORER_COLLECTION;
+    /** read collection task */
+    private static final Task TASK_READ_COLLECTION = new Task("ReadOIDataCollection");
 
     /**
      * Public constructor that automatically register the action in RegisteredAction.
@@ -102,6 +120,18 @@ public final class LoadOIDataCollectionAction extends RegisteredAction {
         } else {
             StatusBar.show("loading OIFits Explorer Collection: " + fileLocation);
         }
+        // read file entries and capture file fingerprints in background (streaming parser) before loading files:
+        new ReadFileLocationsSwingWorker(file, ocm, appendOIFitsFilesOnly).executeTask();
+    }
+
+    /**
+     * Load the given OIFits Explorer Collection (full JAXB model)
+     * @param file OIFits Explorer Collection file
+     * @param ocm OIFitsCollectionManager
+     * @param appendOIFitsFilesOnly true to only append OIFits files
+     */
+    private static void loadOIFitsCollection(final File file, final OIFitsCollectionManager ocm, final boolean appendOIFitsFilesOnly) {
+        final String fileLocation = file.getAbsolutePath();
 
         // Create progress panel:
         final JProgressBar progressBar = new JProgressBar();
@@ -109,48 +139,308 @@ public final class LoadOIDataCollectionAction extends RegisteredAction {
 
         StatusBar.addCustomPanel(progressPanel);
 
+        // optional session snapshot validated in background and restored once its files are loaded:
+        OIFitsCollectionIndex.getInstance().loadSnapshot(
+                (!appendOIFitsFilesOnly && Preferences.getInstance().getPreferenceAsBoolean(Preferences.SESSION_SNAPSHOT))
+                ? SessionSnapshot.getSnapshotFile(file) : null);
+
+        // batch events until the load is done (see createLoadOIFitsListener):
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+
+        // true once the load is started (the listener commits the batch):
+        boolean started = false;
         Exception e = null;
         try {
             final OIFitsChecker checker = new OIFitsChecker();
 
-            ocm.loadOIFitsCollection(file, checker,
+            // a restored autosave keeps its unsaved changes:
+            final boolean markSaved = !appendOIFitsFilesOnly && !file.getAbsoluteFile().equals(SessionAutoSaver.getAutoSaveFile());
+
+            ocm.loadOIFitsCollection(file, checker, createLoadOIFitsListener(ocm, checker, progressBar, progressPanel, markSaved), appendOIFitsFilesOnly);
+            started = true;
+
+        } catch (IllegalStateException ise) {
+            e = ise;
+        } catch (IOException ioe) {
+            e = ioe;
+        } finally {
+            // always close the batch if the load failed (including runtime exceptions like XmlBindException):
+            if (!started) {
+                batch.commit();
+
+                StatusBar.removeCustomPanel(progressPanel);
+            }
+            if (e != null) {
+                StatusBar.show("Could not load OIFits Explorer Collection: " + fileLocation);
+                MessagePane.showErrorMessage("Could not load OIFits Explorer Collection: " + fileLocation, e);
+            }
+        }
+    }
+
+    /**
+     * Append the new OIFits files (read from an OIFits Explorer Collection)
+     * and report the skipped files (already loaded) in the status bar
+     * @param toLoad OIFits files to load and skipped files
+     * @param ocm OIFitsCollectionManager
+     */
+    private static void appendOIFitsFiles(final FilesToLoad toLoad, final OIFitsCollectionManager ocm) {
+        if (toLoad.files.isEmpty()) {
+            StatusBar.show("all OIFits files already loaded: " + toLoad.skipped + " files skipped.");
+            return;
+        }
+
+        // Create progress panel:
+        final JProgressBar progressBar = new JProgressBar();
+        final JPanel progressPanel = LoadOIFitsAction.createLoadOIFitsProgressPanel(progressBar);
+
+        StatusBar.addCustomPanel(progressPanel);
+
+        final OIFitsChecker checker = new OIFitsChecker();
+        final LoadOIFitsListener delegate = createLoadOIFitsListener(ocm, checker, progressBar, progressPanel, false);
+
+        final long startTime = System.nanoTime();
+
+        // batch events until the load is done (see createLoadOIFitsListener):
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+
+        boolean started = false;
+        try {
+            ocm.loadOIFitsFiles(toLoad.files.toArray(new File[toLoad.files.size()]), checker,
                     new LoadOIFitsListener() {
 
                 @Override
                 public void propertyChange(final PropertyChangeEvent pce) {
-                    if ("progress".equals(pce.getPropertyName())) {
-                        progressBar.setValue((Integer) pce.getNewValue());
-                    }
+                    delegate.propertyChange(pce);
                 }
 
                 @Override
                 public void done(final boolean cancelled) {
-                    StatusBar.removeCustomPanel(progressPanel);
+                    delegate.done(cancelled);
 
-                    // log validation messages anyway:
-                    final String checkReport = checker.getCheckReport();
-                    logger.info("validation results:\n{}", checkReport);
+                    if (!cancelled && toLoad.skipped != 0) {
+                        // estimate the saved time from the measured load throughput:
+                        final double duration = 1e-6d * (System.nanoTime() - startTime);
+                        final double saved = (toLoad.loadedBytes != 0L) ? (duration * toLoad.skippedBytes) / toLoad.loadedBytes : 0.0;
 
-                    // TODO: use a preference to show or hide the validation report:
-                    if (false && !cancelled) {
-                        MessagePane.showMessage(checkReport);
+                        StatusBar.show(toLoad.files.size() + " OIFits files loaded, " + toLoad.skipped
+                                + " already loaded files skipped (~" + Math.round(saved) + " ms saved).");
                     }
+                }
+            });
+            started = true;
+        } finally {
+            // always close the batch if the load failed to start:
+            if (!started) {
+                batch.commit();
+
+                StatusBar.removeCustomPanel(progressPanel);
+            }
+        }
+    }
+
+    /**
+     * Create the LoadOIFitsListener updating the progress bar, committing the event batch and firing the Ready event when done
+     * @param ocm OIFitsCollectionManager
+     * @param checker OIFits checker
+     * @param progressBar progress bar
+     * @param progressPanel progress panel
+     * @param markSaved true to mark the session as saved once loaded (see SessionAutoSaver)
+     * @return LoadOIFitsListener
+     */
+    private static LoadOIFitsListener createLoadOIFitsListener(final OIFitsCollectionManager ocm, final OIFitsChecker checker,
+                                                               final JProgressBar progressBar, final JPanel progressPanel,
+                                                               final boolean markSaved) {
+        return new LoadOIFitsListener() {
 
-                    // Fire the Ready event to any listener:
-                    ocm.fireReady(this, null);
+            @Override
+            public void propertyChange(final PropertyChangeEvent pce) {
+                if ("progress".equals(pce.getPropertyName())) {
+                    progressBar.setValue((Integer) pce.getNewValue());
                 }
-            }, appendOIFitsFilesOnly);
+            }
+
+            @Override
+            public void done(final boolean cancelled) {
+                final LoadOIFitsListener listener = this;
+
+                // deliver consolidated events (SessionAutoSaver included) then fire the Ready event to any listener:
+                OIFitsCollectionEventBatch.getInstance().commit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (markSaved && !cancelled) {
+                            SessionAutoSaver.markSessionSaved();
+                        }
+                        ocm.fireReady(listener, null);
+                    }
+                });
 
-        } catch (IllegalStateException ise) {
-            e = ise;
-        } catch (IOException ioe) {
-            e = ioe;
-        } finally {
-            if (e != null) {
                 StatusBar.removeCustomPanel(progressPanel);
 
-                StatusBar.show("Could not load OIFits Explorer Collection: " + fileLocation);
-                MessagePane.showErrorMessage("Could not load OIFits Explorer Collection: " + fileLocation, e);
+                // log validation messages anyway:
+                final String checkReport = checker.getCheckReport();
+                logger.info("validation results:\n{}", checkReport);
+
+                // TODO: use a preference to show or hide the validation report:
+                if (false && !cancelled) {
+                    MessagePane.showMessage(checkReport);
+                }
+            }
+        };
+    }
+
+    /**
+     * OIFits files to load, their fingerprints and statistics on skipped files (already loaded)
+     */
+    private static final class FilesToLoad {
+
+        /* members */
+        /** new OIFits files to load */
+        final List<File> files = new ArrayList<File>();
+        /** fingerprints (size and date) of the files to load captured before loading them keyed by absolute file path */
+        final Map<String, OIFitsFileFingerprint> fingerprints = new HashMap<String, OIFitsFileFingerprint>();
+        /** total size of the files to load (bytes) */
+        long loadedBytes = 0L;
+        /** number of skipped files (already loaded) */
+        int skipped = 0;
+        /** total size of the skipped files (bytes) */
+        long skippedBytes = 0L;
+    }
+
+    /**
+     * This worker reads the OIFits file entries of an OIFits Explorer Collection in background
+     * using a streaming parser (no JAXB model) and captures their fingerprints before they are read.
+     * Then it loads the whole collection (JAXB loader) or only appends the files not already loaded
+     * (same canonical path and unchanged fingerprint).
+     */
+    private static final class ReadFileLocationsSwingWorker extends TaskSwingWorker<FilesToLoad> {
+
+        /* members */
+        /** OIFits Explorer Collection file */
+        private final File oixpFile;
+        /** OIFitsCollectionManager */
+        private final OIFitsCollectionManager ocm;
+        /** true to only append OIFits files */
+        private final boolean appendOIFitsFilesOnly;
+        /** fingerprints of loaded files keyed by absolute file path (copy) */
+        private final Map<String, OIFitsFileFingerprint> loadedFingerprints;
+
+        /**
+         * Hidden constructor
+         * @param oixpFile OIFits Explorer Collection file
+         * @param ocm OIFitsCollectionManager
+         * @param appendOIFitsFilesOnly true to only append OIFits files
+         */
+        private ReadFileLocationsSwingWorker(final File oixpFile, final OIFitsCollectionManager ocm, final boolean appendOIFitsFilesOnly) {
+            super(TASK_READ_COLLECTION);
+            this.oixpFile = oixpFile;
+            this.ocm = ocm;
+            this.appendOIFitsFilesOnly = appendOIFitsFilesOnly;
+            this.loadedFingerprints = OIFitsCollectionIndex.getInstance().getFingerprints();
+        }
+
+        /**
+         * Read the file entries, capture their fingerprints and filter out files already loaded (append only).
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return OIFits files to load or null to use the full JAXB loader (remote files or parsing failure)
+         */
+        @Override
+        public FilesToLoad computeInBackground() {
+            try {
+                final List<String> locations = OIDataCollectionFileReader.readFileLocations(oixpFile);
+
+                if (!appendOIFitsFilesOnly) {
+                    // only capture fingerprints of local files (the JAXB loader reads all entries):
+                    final FilesToLoad toLoad = new FilesToLoad();
+                    for (String location : locations) {
+                        final File file = OIDataCollectionFileReader.resolveFile(oixpFile, location);
+                        if (file != null) {
+                            toLoad.files.add(file);
+                        }
+                    }
+                    toLoad.fingerprints.putAll(OIFitsFileFingerprint.of(toLoad.files));
+                    return toLoad;
+                }
+
+                // loaded fingerprints keyed by canonical path:
+                final Map<String, OIFitsFileFingerprint> loaded = new HashMap<String, OIFitsFileFingerprint>(loadedFingerprints.size());
+                for (Map.Entry<String, OIFitsFileFingerprint> e : loadedFingerprints.entrySet()) {
+                    loaded.put(getCanonicalPath(new File(e.getKey())), e.getValue());
+                }
+
+                final FilesToLoad toLoad = new FilesToLoad();
+                final Set<String> distinct = new HashSet<String>(locations.size());
+
+                for (String location : locations) {
+                    final File file = OIDataCollectionFileReader.resolveFile(oixpFile, location);
+                    if (file == null) {
+                        logger.debug("remote file: {}", location);
+                        return null;
+                    }
+                    final String canonicalPath = getCanonicalPath(file);
+                    if (!distinct.add(canonicalPath)) {
+                        // duplicated entry:
+                        continue;
+                    }
+                    final OIFitsFileFingerprint fingerprint = loaded.get(canonicalPath);
+                    final OIFitsFileFingerprint current = OIFitsFileFingerprint.of(file, false);
+
+                    if (current != null && fingerprint != null && (fingerprint.matches(current)
+                            || fingerprint.sameContent(current.withContentSum(file)))) {
+                        toLoad.skipped++;
+                        toLoad.skippedBytes += current.getSize();
+                    } else {
+                        toLoad.files.add(file);
+                        toLoad.loadedBytes += file.length();
+
+                        if (current != null) {
+                            toLoad.fingerprints.put(file.getAbsolutePath(), current);
+                        }
+                    }
+                }
+                logger.info("read OIFits Explorer Collection: {} files to load, {} files skipped.", toLoad.files.size(), toLoad.skipped);
+                return toLoad;
+
+            } catch (IOException ioe) {
+                logger.info("Unable to read OIFits Explorer Collection: {}", oixpFile, ioe);
+            } catch (XMLStreamException xse) {
+                logger.info("Unable to read OIFits Explorer Collection: {}", oixpFile, xse);
+            }
+            return null;
+        }
+
+        /**
+         * Load the OIFits files.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param toLoad OIFits files to load or null to use the full JAXB loader
+         */
+        @Override
+        public void refreshUI(final FilesToLoad toLoad) {
+            if (toLoad != null) {
+                OIFitsCollectionIndex.getInstance().addLoadFingerprints(toLoad.fingerprints);
+            }
+            if (toLoad == null || !appendOIFitsFilesOnly) {
+                // full load or fallback (reports errors):
+                loadOIFitsCollection(oixpFile, ocm, appendOIFitsFilesOnly);
+            } else if (!toLoad.files.isEmpty() || toLoad.skipped != 0) {
+                appendOIFitsFiles(toLoad, ocm);
+            } else {
+                StatusBar.show("no OIFits file in OIFits Explorer Collection: " + oixpFile.getAbsolutePath());
+            }
+        }
+
+        /**
+         * Return the canonical path of the given file or its absolute path if it can not be resolved
+         * @param file file
+         * @return canonical path
+         */
+        private static String getCanonicalPath(final File file) {
+            try {
+                return file.getCanonicalPath();
+            } catch (IOException ioe) {
+                logger.debug("getCanonicalPath failure: {}", file, ioe);
+                return file.getAbsolutePath();
             }
         }
     }
@@ -13,11 +13,15 @@ import fr.jmmc.jmcs.gui.component.StatusBar;
 import fr.jmmc.oiexplorer.OIFitsExplorer;
 import fr.jmmc.oiexplorer.core.model.LoadOIFitsListener;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
+import fr.jmmc.oiexplorer.model.OIFitsFileFingerprint;
 import fr.jmmc.oitools.model.OIFitsChecker;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.io.File;
+import java.util.Arrays;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import org.slf4j.Logger;
@@ -84,29 +88,50 @@ public final class LoadOIFitsAction extends RegisteredAction {
 
             final OIFitsChecker checker = new OIFitsChecker();
 
-            OIFitsCollectionManager.getInstance().loadOIFitsFiles(files, checker,
-                    new LoadOIFitsListener() {
+            // capture file fingerprints (size and date) before reading files:
+            OIFitsCollectionIndex.getInstance().addLoadFingerprints(OIFitsFileFingerprint.of(Arrays.asList(files)));
 
-                @Override
-                public void propertyChange(final PropertyChangeEvent pce) {
-                    if ("progress".equals(pce.getPropertyName())) {
-                        progressBar.setValue((Integer) pce.getNewValue());
+            // batch events until the load is done:
+            final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+            batch.begin();
+
+            boolean started = false;
+            try {
+                OIFitsCollectionManager.getInstance().loadOIFitsFiles(files, checker,
+                        new LoadOIFitsListener() {
+
+                    @Override
+                    public void propertyChange(final PropertyChangeEvent pce) {
+                        if ("progress".equals(pce.getPropertyName())) {
+                            progressBar.setValue((Integer) pce.getNewValue());
+                        }
                     }
-                }
 
-                @Override
-                public void done(final boolean cancelled) {
-                    StatusBar.removeCustomPanel(progressPanel);
+                    @Override
+                    public void done(final boolean cancelled) {
+                        // deliver consolidated events:
+                        batch.commit();
 
-                    // display validation messages anyway:
-                    final String checkReport = checker.getCheckReport();
-                    logger.info("validation results:\n{}", checkReport);
+                        StatusBar.removeCustomPanel(progressPanel);
 
-                    if (!cancelled) {
-                        MessagePane.showMessage(checkReport);
+                        // display validation messages anyway:
+                        final String checkReport = checker.getCheckReport();
+                        logger.info("validation results:\n{}", checkReport);
+
+                        if (!cancelled) {
+                            MessagePane.showMessage(checkReport);
+                        }
                     }
+                });
+                started = true;
+            } finally {
+                // always close the batch if the load failed to start:
+                if (!started) {
+                    batch.commit();
+
+                    StatusBar.removeCustomPanel(progressPanel);
                 }
-            });
+            }
         }
     }
 
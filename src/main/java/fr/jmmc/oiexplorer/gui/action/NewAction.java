@@ -9,6 +9,7 @@ import fr.jmmc.jmcs.gui.component.StatusBar;
 import fr.jmmc.jmcs.gui.action.RegisteredAction;
 import fr.jmmc.oiexplorer.OIFitsExplorer;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
 import java.awt.event.ActionEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,10 +70,17 @@ public final class NewAction extends RegisteredAction {
             }
         }
         // If the user clicked the "Don't Save" button, go on
-        OIFitsCollectionManager.getInstance().reset();
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+        try {
+            OIFitsCollectionManager.getInstance().reset();
 
-        // Remove other views (oifits browser):
-        OIFitsExplorer.getInstance().getMainPanel().removeOtherViews();
+            // Remove other views (oifits browser):
+            OIFitsExplorer.getInstance().getMainPanel().removeOtherViews();
+        } finally {
+            // deliver consolidated events:
+            batch.commit();
+        }
 
         StatusBar.show("new OIFits collection created.");
     }
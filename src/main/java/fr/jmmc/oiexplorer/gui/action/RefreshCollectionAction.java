@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui.action;
+
+import fr.jmmc.jmcs.gui.action.RegisteredAction;
+import fr.jmmc.jmcs.gui.component.StatusBar;
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
+import fr.jmmc.jmcs.util.concurrent.ParallelJobExecutor;
+import fr.jmmc.oiexplorer.core.model.LoadOIFitsListener;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
+import fr.jmmc.oiexplorer.model.OIFitsFileFingerprint;
+import fr.jmmc.oitools.model.OIFitsChecker;
+import fr.jmmc.oitools.model.OIFitsFile;
+import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refresh the current OIFits collection: reload the OIFits files modified on disk and remove deleted ones.
+ * Files are checked in parallel using their fingerprints (size and last modification date);
+ * the content sums (headers and DATASUM) of touched files are compared to avoid reloading unchanged content.
+ */
+public final class RefreshCollectionAction extends RegisteredAction {
+
+    /** default serial UID for Serializable interface */
+    private static final long serialVersionUID = 1;
+    /** Class name. This name is used to register to the ActionRegistrar */
+    public final static String className = RefreshCollectionAction.class.getName();
+    /** Action name. This name is used to register to the ActionRegistrar */
+    public final static String actionName = "refreshCollection";
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(className);
+    /** refresh task */
+    private static final Task TASK_REFRESH = new Task("RefreshCollection");
+    /** number of files checked per parallel job */
+    private static final int FILES_PER_JOB = 64;
+
+    /**
+     * Public constructor that automatically register the action in RegisteredAction.
+     */
+    public RefreshCollectionAction() {
+        super(className, actionName);
+    }
+
+    /**
+     * Handle the action event
+     * @param evt action event
+     */
+    @Override
+    public void actionPerformed(final ActionEvent evt) {
+        logger.debug("actionPerformed");
+
+        final Map<String, OIFitsFileFingerprint> fingerprints = OIFitsCollectionIndex.getInstance().getFingerprints();
+
+        if (fingerprints.isEmpty()) {
+            StatusBar.show("no OIFits file to refresh.");
+            return;
+        }
+
+        StatusBar.show("checking " + fingerprints.size() + " OIFits files ...");
+
+        // check files in background:
+        new RefreshSwingWorker(fingerprints).executeTask();
+    }
+
+    /**
+     * Apply the refresh result: reload modified files then remove deleted ones within the same
+     * event batch (see OIFitsCollectionEventBatch) so that listeners process a single COLLECTION_CHANGED event.
+     * @param result refresh result
+     */
+    private static void applyRefresh(final RefreshResult result) {
+        final OIFitsCollectionManager ocm = OIFitsCollectionManager.getInstance();
+
+        // touched files with the same content: only update their fingerprints:
+        final OIFitsCollectionIndex index = OIFitsCollectionIndex.getInstance();
+        for (int i = 0, len = result.touched.size(); i < len; i++) {
+            index.setFingerprint(result.touched.get(i), result.touchedFingerprints.get(i));
+        }
+
+        if (result.modified.isEmpty() && result.deleted.isEmpty()) {
+            StatusBar.show("OIFits collection is up to date (" + result.getSummary() + ").");
+            return;
+        }
+
+        if (result.modified.isEmpty()) {
+            removeDeletedFiles(ocm, result.deleted);
+            StatusBar.show("OIFits collection refreshed (" + result.getSummary() + ").");
+            return;
+        }
+
+        final File[] files = new File[result.modified.size()];
+        final Map<String, OIFitsFileFingerprint> loadFingerprints = new HashMap<String, OIFitsFileFingerprint>(2 * files.length);
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(result.modified.get(i));
+            loadFingerprints.put(result.modified.get(i), result.modifiedFingerprints.get(i));
+        }
+        // fingerprints captured before reloading the files:
+        index.addLoadFingerprints(loadFingerprints);
+
+        // Create progress panel:
+        final JProgressBar progressBar = new JProgressBar();
+        final JPanel progressPanel = LoadOIFitsAction.createLoadOIFitsProgressPanel(progressBar);
+
+        StatusBar.addCustomPanel(progressPanel);
+
+        final OIFitsChecker checker = new OIFitsChecker();
+
+        // batch events until the load is done and deleted files are removed:
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+
+        boolean started = false;
+        try {
+            ocm.loadOIFitsFiles(files, checker,
+                    new LoadOIFitsListener() {
+
+                @Override
+                public void propertyChange(final PropertyChangeEvent pce) {
+                    if ("progress".equals(pce.getPropertyName())) {
+                        progressBar.setValue((Integer) pce.getNewValue());
+                    }
+                }
+
+                @Override
+                public void done(final boolean cancelled) {
+                    StatusBar.removeCustomPanel(progressPanel);
+
+                    // log validation messages anyway:
+                    logger.info("validation results:\n{}", checker.getCheckReport());
+
+                    if (cancelled) {
+                        // deliver consolidated events:
+                        batch.commit();
+
+                        StatusBar.show("OIFits collection refresh cancelled.");
+                        return;
+                    }
+
+                    // note: events are merged with the COLLECTION_CHANGED event fired by the load:
+                    try {
+                        removeDeletedFiles(ocm, result.deleted);
+                    } finally {
+                        // deliver consolidated events:
+                        batch.commit();
+                    }
+
+                    StatusBar.show("OIFits collection refreshed (" + result.getSummary() + ").");
+                }
+            });
+            started = true;
+        } finally {
+            // always close the batch if the load failed to start:
+            if (!started) {
+                batch.commit();
+
+                StatusBar.removeCustomPanel(progressPanel);
+            }
+        }
+    }
+
+    /**
+     * Remove the given deleted files from the OIFits collection
+     * @param ocm OIFitsCollectionManager
+     * @param deleted absolute file paths
+     */
+    private static void removeDeletedFiles(final OIFitsCollectionManager ocm, final List<String> deleted) {
+        if (!deleted.isEmpty()) {
+            final Set<String> deletedPaths = new HashSet<String>(deleted);
+            final List<OIFitsFile> filesToRemove = new ArrayList<OIFitsFile>(deleted.size());
+
+            for (OIFitsFile oiFitsFile : ocm.getOIFitsCollection().getSortedOIFitsFiles()) {
+                if (deletedPaths.contains(oiFitsFile.getAbsoluteFilePath())) {
+                    filesToRemove.add(oiFitsFile);
+                }
+            }
+            if (!filesToRemove.isEmpty()) {
+                final List<OIFitsFile> removedFiles = ocm.removeOIFitsFileList(filesToRemove);
+                if (removedFiles.size() != filesToRemove.size()) {
+                    logger.error("Some files were not removed.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Refresh result: modified and deleted files
+     */
+    private static final class RefreshResult {
+
+        /* members */
+        /** number of checked files */
+        final int checked;
+        /** absolute paths of modified files */
+        final List<String> modified = new ArrayList<String>();
+        /** new fingerprints of modified files captured before reloading them (same order) */
+        final List<OIFitsFileFingerprint> modifiedFingerprints = new ArrayList<OIFitsFileFingerprint>();
+        /** absolute paths of touched files (new date but same content sum) */
+        final List<String> touched = new ArrayList<String>();
+        /** new fingerprints of touched files (same order) */
+        final List<OIFitsFileFingerprint> touchedFingerprints = new ArrayList<OIFitsFileFingerprint>();
+        /** absolute paths of deleted files */
+        final List<String> deleted = new ArrayList<String>();
+        /** check duration (ms) */
+        double duration = 0.0;
+
+        RefreshResult(final int checked) {
+            this.checked = checked;
+        }
+
+        String getSummary() {
+            return modified.size() + " modified, " + touched.size() + " touched, " + deleted.size() + " deleted; "
+                    + checked + " files checked in " + Math.round(duration) + " ms";
+        }
+    }
+
+    /**
+     * This worker checks the fingerprints of the loaded files in background
+     */
+    private static final class RefreshSwingWorker extends TaskSwingWorker<RefreshResult> {
+
+        /* members */
+        /** fingerprints of loaded files (copy) */
+        private final Map<String, OIFitsFileFingerprint> fingerprints;
+
+        /**
+         * Hidden constructor
+         * @param fingerprints fingerprints of loaded files (copy)
+         */
+        private RefreshSwingWorker(final Map<String, OIFitsFileFingerprint> fingerprints) {
+            super(TASK_REFRESH);
+            this.fingerprints = fingerprints;
+        }
+
+        /**
+         * Re-stat all files in parallel and compare their fingerprints.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return refresh result or null if interrupted
+         */
+        @Override
+        public RefreshResult computeInBackground() {
+            final long startTime = System.nanoTime();
+
+            final int nFiles = fingerprints.size();
+            final String[] filePaths = fingerprints.keySet().toArray(new String[nFiles]);
+            // null means unchanged:
+            final OIFitsFileFingerprint[] changed = new OIFitsFileFingerprint[nFiles];
+            // null means not touched:
+            final OIFitsFileFingerprint[] touched = new OIFitsFileFingerprint[nFiles];
+            final boolean[] deleted = new boolean[nFiles];
+
+            final int nJobs = 1 + (nFiles - 1) / FILES_PER_JOB;
+            final Callable<?>[] jobs = new Callable<?>[nJobs];
+
+            for (int j = 0; j < nJobs; j++) {
+                final int from = j * FILES_PER_JOB;
+                final int to = Math.min(from + FILES_PER_JOB, nFiles);
+
+                jobs[j] = new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = from; i < to; i++) {
+                            final String filePath = filePaths[i];
+                            final File file = new File(filePath);
+                            final OIFitsFileFingerprint previous = fingerprints.get(filePath);
+
+                            final OIFitsFileFingerprint current = OIFitsFileFingerprint.of(file, false);
+                            if (current == null) {
+                                deleted[i] = true;
+                            } else if (!previous.matches(current)) {
+                                // compare content sums (headers and DATASUM) if known:
+                                final OIFitsFileFingerprint content = (previous.getContentSum() != null
+                                        && previous.getSize() == current.getSize()) ? current.withContentSum(file) : null;
+
+                                if (previous.sameContent(content)) {
+                                    touched[i] = content;
+                                } else {
+                                    changed[i] = current;
+                                }
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                };
+            }
+
+            if (nJobs == 1) {
+                try {
+                    jobs[0].call();
+                } catch (Exception e) {
+                    throw new IllegalStateException("refresh failure", e);
+                }
+            } else if (ParallelJobExecutor.getInstance().forkAndJoin("RefreshCollection.checkFiles", jobs) == null) {
+                // interrupted:
+                return null;
+            }
+
+            final RefreshResult result = new RefreshResult(nFiles);
+            for (int i = 0; i < nFiles; i++) {
+                if (deleted[i]) {
+                    result.deleted.add(filePaths[i]);
+                } else if (changed[i] != null) {
+                    result.modified.add(filePaths[i]);
+                    result.modifiedFingerprints.add(changed[i]);
+                } else if (touched[i] != null) {
+                    result.touched.add(filePaths[i]);
+                    result.touchedFingerprints.add(touched[i]);
+                }
+            }
+            result.duration = 1e-6d * (System.nanoTime() - startTime);
+
+            logger.info("refresh collection: {}", result.getSummary());
+            return result;
+        }
+
+        /**
+         * Reload modified files and remove deleted ones.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param result refresh result
+         */
+        @Override
+        public void refreshUI(final RefreshResult result) {
+            if (result != null) {
+                applyRefresh(result);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ package fr.jmmc.oiexplorer.gui.action;
 import fr.jmmc.jmcs.gui.action.RegisteredAction;
 import fr.jmmc.oiexplorer.OIFitsExplorer;
 import fr.jmmc.oiexplorer.gui.OIFitsFileListPanel;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionEventBatch;
 import java.awt.event.ActionEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +45,15 @@ public class RemoveAction extends RegisteredAction {
     @Override
     public void actionPerformed(final ActionEvent evt) {
         OIFitsFileListPanel oiFitsFileListPanel = OIFitsExplorer.getInstance().getMainPanel().getOIFitsFileListPanel();
-        oiFitsFileListPanel.removeSelectedOIFitsFiles();
+
+        final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+        batch.begin();
+        try {
+            oiFitsFileListPanel.removeSelectedOIFitsFiles();
+        } finally {
+            // deliver consolidated events:
+            batch.commit();
+        }
     }
 
 }
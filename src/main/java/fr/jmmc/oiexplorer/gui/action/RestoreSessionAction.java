@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui.action;
+
+import fr.jmmc.jmcs.gui.action.RegisteredAction;
+import fr.jmmc.jmcs.gui.component.MessagePane;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.SessionAutoSaver;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restore the last autosaved session (see SessionAutoSaver)
+ */
+public final class RestoreSessionAction extends RegisteredAction {
+
+    /** default serial UID for Serializable interface */
+    private static final long serialVersionUID = 1;
+    /** Class name. This name is used to register to the ActionRegistrar */
+    public final static String className = RestoreSessionAction.class.getName();
+    /** Action name. This name is used to register to the ActionRegistrar */
+    public final static String actionName = "restoreSession";
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(className);
+
+    /**
+     * Public constructor that automatically register the action in RegisteredAction.
+     */
+    public RestoreSessionAction() {
+        super(className, actionName);
+    }
+
+    /**
+     * Handle the action event
+     * @param evt action event
+     */
+    @Override
+    public void actionPerformed(final ActionEvent evt) {
+        logger.debug("actionPerformed");
+
+        final File file = SessionAutoSaver.getAutoSaveFile();
+
+        if (!file.isFile()) {
+            MessagePane.showMessage("No autosaved session available.");
+            return;
+        }
+        restore(file);
+    }
+
+    /**
+     * Propose to restore the autosaved session if the previous session was closed with unsaved changes
+     * (called at startup)
+     */
+    public static void checkUnsavedSession() {
+        final SessionAutoSaver autoSaver = SessionAutoSaver.getInstance();
+
+        if (autoSaver.hasUnsavedSession()) {
+            if (MessagePane.showConfirmMessage("The previous session was closed with unsaved changes.\n"
+                    + "Do you want to restore it ?")) {
+                restore(SessionAutoSaver.getAutoSaveFile());
+            } else {
+                autoSaver.discardUnsavedSession();
+            }
+        }
+    }
+
+    /**
+     * Load the given autosave file
+     * @param file autosave file
+     */
+    private static void restore(final File file) {
+        LoadOIDataCollectionAction.loadOIFitsCollectionFromFile(file, OIFitsCollectionManager.getInstance(), false);
+    }
+}
@@ -8,7 +8,11 @@ import fr.jmmc.jmcs.gui.component.FileChooser;
 import fr.jmmc.jmcs.gui.component.MessagePane;
 import fr.jmmc.jmcs.gui.component.StatusBar;
 import fr.jmmc.jmcs.data.MimeType;
+import fr.jmmc.oiexplorer.Preferences;
 import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.model.OIFitsCollectionIndex;
+import fr.jmmc.oiexplorer.model.SessionAutoSaver;
+import fr.jmmc.oiexplorer.model.SessionSnapshot;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
@@ -47,6 +51,14 @@ public final class SaveOIDataCollectionAction extends RegisteredAction {
     public void actionPerformed(final ActionEvent evt) {
         logger.debug("actionPerformed");
 
+        save();
+    }
+
+    /**
+     * Ask the user the file to save the current OIFits Explorer collection into and save it
+     * @return true if the collection was saved; false if cancelled or failed
+     */
+    public boolean save() {
         final OIFitsCollectionManager ocm = OIFitsCollectionManager.getInstance();
 
         final File oiFitsCollectionFile = ocm.getOiFitsCollectionFile();
@@ -71,6 +83,12 @@ public final class SaveOIDataCollectionAction extends RegisteredAction {
             try {
                 ocm.saveOIFitsCollection(file);
 
+                SessionAutoSaver.markSessionSaved();
+
+                if (Preferences.getInstance().getPreferenceAsBoolean(Preferences.SESSION_SNAPSHOT)) {
+                    saveSessionSnapshot(file);
+                }
+
             } catch (IOException ex) {
                 e = ex;
             } catch (IllegalStateException ex) {
@@ -81,6 +99,23 @@ public final class SaveOIDataCollectionAction extends RegisteredAction {
                     StatusBar.show("Could not save the file: " + fileLocation);
                 }
             }
+            return (e == null);
+        }
+        return false;
+    }
+
+    /**
+     * Save the optional session snapshot next to the given OIFits Explorer collection file.
+     * Any failure is only logged as the snapshot is not mandatory.
+     * @param oixpFile OIFits Explorer collection file
+     */
+    private static void saveSessionSnapshot(final File oixpFile) {
+        final File snapshotFile = SessionSnapshot.getSnapshotFile(oixpFile);
+        try {
+            SessionSnapshot.write(snapshotFile, OIFitsCollectionIndex.getInstance().createSnapshot());
+        } catch (IOException ioe) {
+            logger.warn("Could not save the session snapshot: {}", snapshotFile, ioe);
+            StatusBar.show("Could not save the session snapshot: " + snapshotFile.getAbsolutePath());
         }
     }
 }
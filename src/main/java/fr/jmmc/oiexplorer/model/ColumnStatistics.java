@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class gathers the statistics of one numerical column over all tables of the collection:
+ * min / max, number of values and NaN values, distinct values (if at most MAX_DISTINCT)
+ * and a histogram of NB_BINS fixed bins over [min, max].
+ *
+ * Note: this class is immutable (see ColumnStatisticsCatalog).
+ */
+public final class ColumnStatistics {
+
+    /** number of histogram bins */
+    public static final int NB_BINS = 32;
+    /** max number of distinct values kept */
+    public static final int MAX_DISTINCT = 64;
+    /** histogram bar characters (lowest first) */
+    private static final char[] BARS = new char[]{'\u2581', '\u2582', '\u2583', '\u2584', '\u2585', '\u2586', '\u2587', '\u2588'};
+
+    /* members */
+    /** column name */
+    private final String name;
+    /** min value (NaN if no value) */
+    private final double min;
+    /** max value (NaN if no value) */
+    private final double max;
+    /** number of values (NaN excluded) */
+    private final long nbValues;
+    /** number of NaN values */
+    private final long nbNaN;
+    /** sorted distinct values or null if more than MAX_DISTINCT */
+    private final double[] distinctValues;
+    /** histogram (NB_BINS bins over [min, max]) */
+    private final long[] histogram;
+
+    /**
+     * Package-private constructor
+     * @param name column name
+     * @param min min value
+     * @param max max value
+     * @param nbValues number of values
+     * @param nbNaN number of NaN values
+     * @param distinctValues sorted distinct values or null if more than MAX_DISTINCT
+     * @param histogram histogram
+     */
+    ColumnStatistics(final String name, final double min, final double max, final long nbValues, final long nbNaN,
+                     final double[] distinctValues, final long[] histogram) {
+        this.name = name;
+        this.min = min;
+        this.max = max;
+        this.nbValues = nbValues;
+        this.nbNaN = nbNaN;
+        this.distinctValues = distinctValues;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Return the histogram bin of the given value
+     * @param value value in [min, max]
+     * @param min min value
+     * @param max max value
+     * @return bin index
+     */
+    static int getBin(final double value, final double min, final double max) {
+        if (max <= min) {
+            return 0;
+        }
+        final int bin = (int) (NB_BINS * (value - min) / (max - min));
+        return (bin >= NB_BINS) ? NB_BINS - 1 : bin;
+    }
+
+    /**
+     * Write these statistics (see SessionSnapshot)
+     * @param out output
+     * @throws IOException if any I/O error occurs
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeLong(nbValues);
+        out.writeLong(nbNaN);
+        if (distinctValues == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(distinctValues.length);
+            for (double value : distinctValues) {
+                out.writeDouble(value);
+            }
+        }
+        for (long count : histogram) {
+            out.writeLong(count);
+        }
+    }
+
+    /**
+     * Read statistics written by write()
+     * @param in input
+     * @return column statistics
+     * @throws IOException if any I/O error occurs or invalid content
+     */
+    static ColumnStatistics read(final DataInput in) throws IOException {
+        final String name = in.readUTF();
+        final double min = in.readDouble();
+        final double max = in.readDouble();
+        final long nbValues = in.readLong();
+        final long nbNaN = in.readLong();
+
+        final int nDistinct = in.readInt();
+        if (nDistinct > MAX_DISTINCT) {
+            throw new IOException("Invalid number of distinct values: " + nDistinct);
+        }
+        double[] distinctValues = null;
+        if (nDistinct >= 0) {
+            distinctValues = new double[nDistinct];
+            for (int i = 0; i < nDistinct; i++) {
+                distinctValues[i] = in.readDouble();
+            }
+        }
+        final long[] histogram = new long[NB_BINS];
+        for (int i = 0; i < NB_BINS; i++) {
+            histogram[i] = in.readLong();
+        }
+        return new ColumnStatistics(name, min, max, nbValues, nbNaN, distinctValues, histogram);
+    }
+
+    /**
+     * Return the column name
+     * @return column name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the min value
+     * @return min value (NaN if no value)
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Return the max value
+     * @return max value (NaN if no value)
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Return the number of values (NaN excluded)
+     * @return number of values
+     */
+    public long getNbValues() {
+        return nbValues;
+    }
+
+    /**
+     * Return the number of NaN values
+     * @return number of NaN values
+     */
+    public long getNbNaN() {
+        return nbNaN;
+    }
+
+    /**
+     * Return the sorted distinct values
+     * @return sorted distinct values or null if more than MAX_DISTINCT; do not modify the returned array
+     */
+    public double[] getDistinctValues() {
+        return distinctValues;
+    }
+
+    /**
+     * Return the histogram (NB_BINS bins over [min, max])
+     * @return histogram; do not modify the returned array
+     */
+    public long[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Append the histogram as a bar string (one character per bin)
+     * @param sb buffer
+     * @return buffer
+     */
+    public StringBuilder toHistogramString(final StringBuilder sb) {
+        long maxCount = 0L;
+        for (long count : histogram) {
+            maxCount = Math.max(maxCount, count);
+        }
+        for (long count : histogram) {
+            if (count == 0L) {
+                sb.append(' ');
+            } else {
+                sb.append(BARS[(int) ((BARS.length - 1) * count / maxCount)]);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Append the HTML description displayed in tooltips (distribution preview)
+     * @param sb buffer
+     * @return buffer
+     */
+    public StringBuilder toHtml(final StringBuilder sb) {
+        sb.append("<b>").append(name).append("</b>");
+        if (nbValues == 0L) {
+            sb.append("<br>No value");
+        } else {
+            sb.append("<br><b>Range:</b> ").append(min).append(" - ").append(max);
+            sb.append("<br><b>Values:</b> ").append(nbValues);
+            if (distinctValues != null) {
+                sb.append(" (").append(distinctValues.length).append(" distinct)");
+            }
+            sb.append("<br><tt>");
+            toHistogramString(sb);
+            sb.append("</tt>");
+        }
+        if (nbNaN != 0L) {
+            sb.append("<br><b>NaN:</b> ").append(nbNaN);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.jmcs.util.concurrent.ParallelJobExecutor;
+import fr.jmmc.oitools.model.OIData;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class gathers the statistics of the numerical columns of all tables of one collection version
+ * (see ColumnStatistics). The catalog is built in parallel jobs over table chunks in two passes
+ * (min / max / NaN / distinct values, then histograms) and partial results are merged in table order.
+ *
+ * Note: this catalog is immutable once built (thread-safe).
+ */
+public final class ColumnStatisticsCatalog {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(ColumnStatisticsCatalog.class.getName());
+    /** number of tables per parallel job */
+    private static final int TABLES_PER_JOB = 16;
+
+    /* members */
+    /** statistics keyed by column name */
+    private final Map<String, ColumnStatistics> statsPerColumn;
+
+    /**
+     * Private constructor
+     * @param statsPerColumn statistics keyed by column name
+     */
+    private ColumnStatisticsCatalog(final Map<String, ColumnStatistics> statsPerColumn) {
+        this.statsPerColumn = statsPerColumn;
+    }
+
+    /**
+     * Return the statistics of the given column
+     * @param columnName column name
+     * @return statistics or null if the column is not numerical or not present
+     */
+    public ColumnStatistics get(final String columnName) {
+        return statsPerColumn.get(columnName);
+    }
+
+    /**
+     * Write this catalog (see SessionSnapshot)
+     * @param out output
+     * @throws IOException if any I/O error occurs
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(statsPerColumn.size());
+        for (ColumnStatistics stats : statsPerColumn.values()) {
+            stats.write(out);
+        }
+    }
+
+    /**
+     * Read a catalog written by write()
+     * @param in input
+     * @return catalog
+     * @throws IOException if any I/O error occurs or invalid content
+     */
+    static ColumnStatisticsCatalog read(final DataInput in) throws IOException {
+        final int nCols = SessionSnapshot.readCount(in);
+        final Map<String, ColumnStatistics> statsPerColumn = new HashMap<String, ColumnStatistics>(2 * nCols);
+        for (int c = 0; c < nCols; c++) {
+            final ColumnStatistics stats = ColumnStatistics.read(in);
+            statsPerColumn.put(stats.getName(), stats);
+        }
+        return new ColumnStatisticsCatalog(Collections.unmodifiableMap(statsPerColumn));
+    }
+
+    /**
+     * Build the statistics of the given numerical columns over the given tables using parallel jobs
+     * @param oiDatas OIData tables of the collection
+     * @param columnNames numerical column names
+     * @return catalog or null if interrupted
+     */
+    public static ColumnStatisticsCatalog build(final List<OIData> oiDatas, final List<String> columnNames) {
+        final long startTime = System.nanoTime();
+
+        final OIData[] tables = oiDatas.toArray(new OIData[oiDatas.size()]);
+        final String[] columns = columnNames.toArray(new String[columnNames.size()]);
+        final int nTables = tables.length;
+        final int nCols = columns.length;
+        final int nJobs = (nTables == 0) ? 0 : 1 + (nTables - 1) / TABLES_PER_JOB;
+
+        final ParallelJobExecutor jobExecutor = ParallelJobExecutor.getInstance();
+
+        // pass 1: min / max / NaN / distinct values per job and column:
+        final Partial[][] partials = new Partial[nJobs][nCols];
+        final Callable<?>[] jobs = new Callable<?>[nJobs];
+
+        for (int j = 0; j < nJobs; j++) {
+            final int job = j;
+            final int from = j * TABLES_PER_JOB;
+            final int to = Math.min(from + TABLES_PER_JOB, nTables);
+
+            jobs[j] = new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int c = 0; c < nCols; c++) {
+                        final Partial partial = new Partial();
+                        for (int i = from; i < to; i++) {
+                            final double[][] values = OIDataColumns.getDoubles(tables[i], columns[c]);
+                            if (values != null) {
+                                partial.add(values);
+                            }
+                        }
+                        partials[job][c] = partial;
+                    }
+                    return Boolean.TRUE;
+                }
+            };
+        }
+        if (nJobs != 0 && jobExecutor.forkAndJoin("ColumnStatisticsCatalog.ranges", jobs) == null) {
+            // interrupted:
+            return null;
+        }
+
+        // merge in job order:
+        final Partial[] merged = new Partial[nCols];
+        for (int c = 0; c < nCols; c++) {
+            merged[c] = new Partial();
+            for (int j = 0; j < nJobs; j++) {
+                merged[c].merge(partials[j][c]);
+            }
+        }
+
+        // pass 2: histograms per job and column:
+        final long[][][] histograms = new long[nJobs][nCols][];
+
+        for (int j = 0; j < nJobs; j++) {
+            final int job = j;
+            final int from = j * TABLES_PER_JOB;
+            final int to = Math.min(from + TABLES_PER_JOB, nTables);
+
+            jobs[j] = new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int c = 0; c < nCols; c++) {
+                        final long[] histogram = new long[ColumnStatistics.NB_BINS];
+                        final double min = merged[c].min;
+                        final double max = merged[c].max;
+
+                        if (merged[c].nbValues != 0L) {
+                            for (int i = from; i < to; i++) {
+                                final double[][] values = OIDataColumns.getDoubles(tables[i], columns[c]);
+                                if (values != null) {
+                                    for (double[] row : values) {
+                                        for (double value : row) {
+                                            if (!Double.isNaN(value)) {
+                                                histogram[ColumnStatistics.getBin(value, min, max)]++;
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                        histograms[job][c] = histogram;
+                    }
+                    return Boolean.TRUE;
+                }
+            };
+        }
+        if (nJobs != 0 && jobExecutor.forkAndJoin("ColumnStatisticsCatalog.histograms", jobs) == null) {
+            // interrupted:
+            return null;
+        }
+
+        final Map<String, ColumnStatistics> statsPerColumn = new HashMap<String, ColumnStatistics>(2 * nCols);
+
+        for (int c = 0; c < nCols; c++) {
+            final Partial partial = merged[c];
+            if (partial.nbValues == 0L && partial.nbNaN == 0L) {
+                // column not present:
+                continue;
+            }
+            final long[] histogram = new long[ColumnStatistics.NB_BINS];
+            for (int j = 0; j < nJobs; j++) {
+                for (int b = 0; b < histogram.length; b++) {
+                    histogram[b] += histograms[j][c][b];
+                }
+            }
+            statsPerColumn.put(columns[c], new ColumnStatistics(columns[c],
+                    (partial.nbValues != 0L) ? partial.min : Double.NaN,
+                    (partial.nbValues != 0L) ? partial.max : Double.NaN,
+                    partial.nbValues, partial.nbNaN, partial.getDistinctValues(), histogram));
+        }
+
+        logger.info("build: {} columns on {} tables - duration = {} ms.", statsPerColumn.size(), nTables, 1e-6d * (System.nanoTime() - startTime));
+
+        return new ColumnStatisticsCatalog(Collections.unmodifiableMap(statsPerColumn));
+    }
+
+    /**
+     * Partial statistics of one column over a table chunk
+     */
+    private static final class Partial {
+
+        /* members */
+        /** min value */
+        double min = Double.POSITIVE_INFINITY;
+        /** max value */
+        double max = Double.NEGATIVE_INFINITY;
+        /** number of values */
+        long nbValues = 0L;
+        /** number of NaN values */
+        long nbNaN = 0L;
+        /** distinct values or null if more than MAX_DISTINCT */
+        TreeSet<Double> distinct = new TreeSet<Double>();
+
+        /**
+         * Add the given values
+         * @param values values per row
+         */
+        void add(final double[][] values) {
+            double last = Double.NaN;
+            for (double[] row : values) {
+                for (double value : row) {
+                    if (Double.isNaN(value)) {
+                        nbNaN++;
+                    } else {
+                        nbValues++;
+                        if (value < min) {
+                            min = value;
+                        }
+                        if (value > max) {
+                            max = value;
+                        }
+                        if (distinct != null && value != last) {
+                            last = value;
+                            distinct.add(value);
+                            if (distinct.size() > ColumnStatistics.MAX_DISTINCT) {
+                                distinct = null;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Merge the given partial statistics
+         * @param other partial statistics
+         */
+        void merge(final Partial other) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            nbValues += other.nbValues;
+            nbNaN += other.nbNaN;
+            if (distinct != null) {
+                if (other.distinct == null) {
+                    distinct = null;
+                } else {
+                    distinct.addAll(other.distinct);
+                    if (distinct.size() > ColumnStatistics.MAX_DISTINCT) {
+                        distinct = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the sorted distinct values
+         * @return sorted distinct values or null if more than MAX_DISTINCT
+         */
+        double[] getDistinctValues() {
+            if (distinct == null) {
+                return null;
+            }
+            final double[] values = new double[distinct.size()];
+            int i = 0;
+            for (Double value : distinct) {
+                values[i++] = value.doubleValue();
+            }
+            return values;
+        }
+    }
+}
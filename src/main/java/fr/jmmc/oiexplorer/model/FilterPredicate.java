@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.oi.DataType;
+import fr.jmmc.oiexplorer.core.model.oi.GenericFilter;
+import fr.jmmc.oiexplorer.core.model.plot.Range;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class is the compiled form of one generic filter evaluated on every data point:
+ * accepted ranges are folded once into sorted disjoint intervals (undefined bounds are infinite)
+ * tested with primitive comparisons (single interval or binary search), accepted string values
+ * are kept in a hash set.
+ *
+ * Note: this class is immutable (thread-safe).
+ */
+final class FilterPredicate {
+
+    /** comparator of intervals [lower, upper] by lower bound */
+    private static final Comparator<double[]> CMP_LOWER = new Comparator<double[]>() {
+        @Override
+        public int compare(final double[] i1, final double[] i2) {
+            return Double.compare(i1[0], i2[0]);
+        }
+    };
+
+    /* members */
+    /** column name */
+    private final String columnName;
+    /** true for string values */
+    private final boolean string;
+    /** lower bounds of the sorted disjoint intervals */
+    private final double[] lower;
+    /** upper bounds of the sorted disjoint intervals */
+    private final double[] upper;
+    /** number of intervals */
+    private final int nIntervals;
+    /** lower bound of the first interval */
+    private final double lower0;
+    /** upper bound of the first interval */
+    private final double upper0;
+    /** accepted string values (trimmed) */
+    private final Set<String> values;
+
+    /**
+     * Private constructor
+     * @param columnName column name
+     * @param string true for string values
+     * @param lower lower bounds of the sorted disjoint intervals
+     * @param upper upper bounds of the sorted disjoint intervals
+     * @param values accepted string values
+     */
+    private FilterPredicate(final String columnName, final boolean string,
+                            final double[] lower, final double[] upper, final Set<String> values) {
+        this.columnName = columnName;
+        this.string = string;
+        this.lower = lower;
+        this.upper = upper;
+        this.nIntervals = lower.length;
+        this.lower0 = (nIntervals != 0) ? lower[0] : Double.NaN;
+        this.upper0 = (nIntervals != 0) ? upper[0] : Double.NaN;
+        this.values = values;
+    }
+
+    /**
+     * Compile the given generic filter
+     * @param filter generic filter
+     * @return compiled predicate
+     */
+    static FilterPredicate compile(final GenericFilter filter) {
+        if (filter.getDataType() == DataType.STRING) {
+            final Set<String> values = new HashSet<String>(2 * filter.getAcceptedValues().size());
+            for (String value : filter.getAcceptedValues()) {
+                if (value != null) {
+                    values.add(value.trim());
+                }
+            }
+            return new FilterPredicate(filter.getColumnName(), true, new double[0], new double[0], values);
+        }
+        return compileRanges(filter.getColumnName(), filter.getAcceptedRanges());
+    }
+
+    /**
+     * Compile the given accepted ranges into sorted disjoint intervals
+     * @param columnName column name
+     * @param ranges accepted ranges (undefined bounds are open)
+     * @return compiled predicate
+     */
+    static FilterPredicate compileRanges(final String columnName, final Collection<Range> ranges) {
+        final double[][] intervals = new double[ranges.size()][];
+        int n = 0;
+        for (Range range : ranges) {
+            final double min = Double.isNaN(range.getMin()) ? Double.NEGATIVE_INFINITY : range.getMin();
+            final double max = Double.isNaN(range.getMax()) ? Double.POSITIVE_INFINITY : range.getMax();
+            if (min <= max) {
+                intervals[n++] = new double[]{min, max};
+            }
+        }
+        Arrays.sort(intervals, 0, n, CMP_LOWER);
+
+        // merge overlapping intervals:
+        final double[] lower = new double[n];
+        final double[] upper = new double[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m != 0 && intervals[i][0] <= upper[m - 1]) {
+                upper[m - 1] = Math.max(upper[m - 1], intervals[i][1]);
+            } else {
+                lower[m] = intervals[i][0];
+                upper[m] = intervals[i][1];
+                m++;
+            }
+        }
+        return new FilterPredicate(columnName, false, Arrays.copyOf(lower, m), Arrays.copyOf(upper, m), null);
+    }
+
+    /**
+     * Return the column name
+     * @return column name
+     */
+    String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Return true if this predicate tests string values
+     * @return true for string values
+     */
+    boolean isString() {
+        return string;
+    }
+
+    /**
+     * Return true if the given value is accepted (NaN is never accepted)
+     * @param value value
+     * @return true if accepted
+     */
+    boolean accept(final double value) {
+        if (nIntervals == 1) {
+            // NaN comparisons are false:
+            return value >= lower0 && value <= upper0;
+        }
+        if (nIntervals == 0) {
+            return false;
+        }
+        // last interval whose lower bound <= value:
+        int lo = 0;
+        int hi = nIntervals - 1;
+        if (!(value >= lower[0])) {
+            return false;
+        }
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (lower[mid] <= value) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return value <= upper[lo];
+    }
+
+    /**
+     * Return true if the given string value is accepted
+     * @param value value (trimmed before lookup)
+     * @return true if accepted
+     */
+    boolean accept(final String value) {
+        return value != null && values.contains(value.trim());
+    }
+}
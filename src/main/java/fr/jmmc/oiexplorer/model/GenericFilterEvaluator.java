@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.oi.GenericFilter;
+import fr.jmmc.oitools.model.OIData;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class evaluates the enabled numerical generic filters on every data point [row][wavelength] of OIData tables
+ * using the compiled predicates (see FilterPredicate): a point is accepted if every filter accepts the value
+ * of its column (1D columns apply to all wavelengths of the row).
+ *
+ * Note: string filters select whole tables (Selector) and filters on columns missing in a table are ignored.
+ * This class is immutable (thread-safe) and may be used by worker threads.
+ */
+public final class GenericFilterEvaluator {
+
+    /** Logger */
+    private static final Logger logger = LoggerFactory.getLogger(GenericFilterEvaluator.class.getName());
+
+    /* members */
+    /** compiled numerical predicates */
+    private final FilterPredicate[] predicates;
+
+    /**
+     * Private constructor
+     * @param predicates compiled numerical predicates
+     */
+    private GenericFilterEvaluator(final FilterPredicate[] predicates) {
+        this.predicates = predicates;
+    }
+
+    /**
+     * Compile the enabled numerical filters among the given generic filters
+     * @param genericFilters generic filters
+     * @return evaluator
+     */
+    public static GenericFilterEvaluator compile(final List<GenericFilter> genericFilters) {
+        final List<FilterPredicate> compiled = new ArrayList<FilterPredicate>(genericFilters.size());
+        for (GenericFilter genericFilter : genericFilters) {
+            if (genericFilter.isEnabled()) {
+                final FilterPredicate predicate = FilterPredicate.compile(genericFilter);
+                if (!predicate.isString()) {
+                    compiled.add(predicate);
+                }
+            }
+        }
+        return new GenericFilterEvaluator(compiled.toArray(new FilterPredicate[compiled.size()]));
+    }
+
+    /**
+     * Count the accepted data points of the given tables
+     * @param oiDatas OIData tables
+     * @return {accepted points, total points} or null if interrupted
+     */
+    public long[] countAccepted(final List<OIData> oiDatas) {
+        final long startTime = System.nanoTime();
+
+        long nAccepted = 0L;
+        long nPoints = 0L;
+
+        for (OIData oiData : oiDatas) {
+            if (Thread.currentThread().isInterrupted()) {
+                // cancelled:
+                return null;
+            }
+            nAccepted += countAccepted(oiData);
+            nPoints += ((long) oiData.getNbRows()) * oiData.getNWave();
+        }
+
+        logger.debug("countAccepted: {} / {} points - duration = {} ms.", nAccepted, nPoints, 1e-6d * (System.nanoTime() - startTime));
+
+        return new long[]{nAccepted, nPoints};
+    }
+
+    /**
+     * Count the accepted data points of the given table
+     * @param oiData OIData table
+     * @return number of accepted points
+     */
+    long countAccepted(final OIData oiData) {
+        final int nRows = oiData.getNbRows();
+        final int nWaves = oiData.getNWave();
+
+        // column values of the applicable predicates:
+        final int nPreds = predicates.length;
+        final FilterPredicate[] preds = new FilterPredicate[nPreds];
+        final double[][][] values = new double[nPreds][][];
+        int n = 0;
+        for (int p = 0; p < nPreds; p++) {
+            final double[][] columnValues = OIDataColumns.getDoubles(oiData, predicates[p].getColumnName());
+            if (columnValues != null) {
+                preds[n] = predicates[p];
+                values[n] = columnValues;
+                n++;
+            }
+        }
+        if (n == 0) {
+            return ((long) nRows) * nWaves;
+        }
+
+        long nAccepted = 0L;
+        for (int r = 0; r < nRows; r++) {
+            for (int w = 0; w < nWaves; w++) {
+                boolean accepted = true;
+                for (int p = 0; p < n; p++) {
+                    final double[] rowValues = values[p][r];
+                    if (!preds[p].accept((rowValues.length == 1) ? rowValues[0] : rowValues[w])) {
+                        accepted = false;
+                        break;
+                    }
+                }
+                if (accepted) {
+                    nAccepted++;
+                }
+            }
+        }
+        return nAccepted;
+    }
+}
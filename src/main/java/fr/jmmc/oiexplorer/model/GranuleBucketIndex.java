@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.util.MJDConverter;
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.Granule.GranuleField;
+import fr.jmmc.oitools.model.NightId;
+import fr.jmmc.oitools.model.OIData;
+import fr.jmmc.oitools.util.GranuleComparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class computes once per collection the values of the derived grouping dimensions
+ * (array configuration, array name, observing run) of every granule
+ * so that the granule tree can be regrouped on any dimension without scanning the OIData tables again.
+ * It is built in background after each collection change (see OIFitsCollectionIndex).
+ *
+ * Derived values are labels (String): a granule covering several configurations or array names
+ * gets the sorted list of its values (e.g. "A0-B2-C1-D0 | A0-G1-J2-K0").
+ * Observing runs are sequences of nights separated by at most RUN_MAX_GAP nights.
+ *
+ * Note: this index is immutable once built (thread-safe).
+ */
+public final class GranuleBucketIndex {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(GranuleBucketIndex.class.getName());
+    /** max number of nights between two consecutive nights of the same observing run */
+    private static final double RUN_MAX_GAP = 3.0;
+    /** separator between multiple values */
+    private static final String SEPARATOR = " | ";
+    /** undefined value */
+    private static final String UNDEFINED = "UNDEFINED";
+
+    /* members */
+    /** derived values per granule (ARRAY_CONF, ARRNAME, RUN order) */
+    private final Map<Granule, String[]> valuesPerGranule;
+
+    /**
+     * Private constructor
+     * @param valuesPerGranule derived values per granule
+     */
+    private GranuleBucketIndex(final Map<Granule, String[]> valuesPerGranule) {
+        this.valuesPerGranule = valuesPerGranule;
+    }
+
+    /**
+     * Build the bucket index of the given granules
+     * @param oiDataPerGranule immutable snapshot of the OIData tables per granule (see OIFitsCollectionIndex.getGranuleSnapshot())
+     * @return bucket index
+     */
+    public static GranuleBucketIndex build(final Map<Granule, Set<OIData>> oiDataPerGranule) {
+        final long startTime = System.nanoTime();
+
+        final Map<Double, String> runPerNight = computeRuns(oiDataPerGranule.keySet());
+
+        final Map<Granule, String[]> valuesPerGranule = new HashMap<Granule, String[]>(2 * oiDataPerGranule.size());
+
+        final Set<String> confs = new TreeSet<String>();
+        final Set<String> arrNames = new TreeSet<String>();
+
+        for (Map.Entry<Granule, Set<OIData>> entry : oiDataPerGranule.entrySet()) {
+            final Granule granule = entry.getKey();
+            confs.clear();
+            arrNames.clear();
+
+            if (entry.getValue() != null) {
+                for (OIData oiData : entry.getValue()) {
+                    for (short[] staConf : oiData.getDistinctStaConf()) {
+                        confs.add(oiData.getStaNames(staConf)); // cached
+                    }
+                    if (oiData.getArrName() != null) {
+                        arrNames.add(oiData.getArrName());
+                    }
+                }
+            }
+
+            final Object night = granule.getField(GranuleField.NIGHT);
+            final String run = (night instanceof NightId) ? runPerNight.get(getNight((NightId) night)) : null;
+
+            valuesPerGranule.put(granule, new String[]{join(confs), join(arrNames), (run != null) ? run : UNDEFINED});
+        }
+
+        logger.info("build: {} granules - duration = {} ms.", valuesPerGranule.size(), 1e-6d * (System.nanoTime() - startTime));
+
+        return new GranuleBucketIndex(valuesPerGranule);
+    }
+
+    /**
+     * Return the value of the given grouping field for the given granule
+     * @param granule granule
+     * @param field grouping field
+     * @return granule field value (granule field) or label (derived field) or null if undefined
+     */
+    public Object getValue(final Granule granule, final GranuleGroupingField field) {
+        if (!field.isDerived()) {
+            return granule.getField(field.getGranuleField());
+        }
+        final String[] values = valuesPerGranule.get(granule);
+        return (values != null) ? values[getDerivedIndex(field)] : null;
+    }
+
+    /**
+     * Return the comparator sorting granules by the given grouping fields (in order)
+     * @param fields grouping fields
+     * @return granule comparator
+     */
+    public Comparator<Granule> getComparator(final List<GranuleGroupingField> fields) {
+        final int len = fields.size();
+        final GranuleGroupingField[] sortFields = fields.toArray(new GranuleGroupingField[len]);
+        final GranuleComparator[] granuleComparators = new GranuleComparator[len];
+
+        for (int i = 0; i < len; i++) {
+            if (!sortFields[i].isDerived()) {
+                granuleComparators[i] = new GranuleComparator(Arrays.asList(sortFields[i].getGranuleField()));
+            }
+        }
+
+        return new Comparator<Granule>() {
+            @Override
+            public int compare(final Granule g1, final Granule g2) {
+                for (int i = 0; i < len; i++) {
+                    final int res;
+                    if (granuleComparators[i] != null) {
+                        res = granuleComparators[i].compare(g1, g2);
+                    } else {
+                        final String v1 = (String) getValue(g1, sortFields[i]);
+                        final String v2 = (String) getValue(g2, sortFields[i]);
+                        res = (v1 == null) ? ((v2 == null) ? 0 : 1) : ((v2 == null) ? -1 : v1.compareTo(v2));
+                    }
+                    if (res != 0) {
+                        return res;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Return the index of the given derived field in the value arrays
+     * @param field derived grouping field
+     * @return index
+     */
+    private static int getDerivedIndex(final GranuleGroupingField field) {
+        switch (field) {
+            case ARRAY_CONF:
+                return 0;
+            case ARRNAME:
+                return 1;
+            case RUN:
+                return 2;
+            default:
+                throw new IllegalArgumentException("Unsupported derived field: " + field);
+        }
+    }
+
+    /**
+     * Compute the observing runs: sequences of nights separated by at most RUN_MAX_GAP nights
+     * @param granules granules
+     * @return run label (first night - last night) keyed by night
+     */
+    private static Map<Double, String> computeRuns(final Set<Granule> granules) {
+        final TreeSet<Double> nights = new TreeSet<Double>();
+        for (Granule granule : granules) {
+            final Object night = granule.getField(GranuleField.NIGHT);
+            if (night instanceof NightId) {
+                nights.add(getNight((NightId) night));
+            }
+        }
+
+        final Map<Double, String> runPerNight = new HashMap<Double, String>(2 * nights.size());
+        final List<Double> run = new ArrayList<Double>();
+        final StringBuilder sb = new StringBuilder(32);
+
+        for (Double night : nights) {
+            if (!run.isEmpty() && (night - run.get(run.size() - 1)) > RUN_MAX_GAP) {
+                addRun(run, runPerNight, sb);
+            }
+            run.add(night);
+        }
+        addRun(run, runPerNight, sb);
+
+        return runPerNight;
+    }
+
+    /**
+     * Label the nights of the given run and clear it
+     * @param run nights of the run (sorted)
+     * @param runPerNight run label keyed by night
+     * @param sb temporary buffer
+     */
+    private static void addRun(final List<Double> run, final Map<Double, String> runPerNight, final StringBuilder sb) {
+        if (run.isEmpty()) {
+            return;
+        }
+        sb.setLength(0);
+        MJDConverter.mjdToString(run.get(0), sb);
+        if (run.size() > 1) {
+            sb.append(" - ");
+            MJDConverter.mjdToString(run.get(run.size() - 1), sb);
+        }
+        final String label = sb.toString();
+
+        for (Double night : run) {
+            runPerNight.put(night, label);
+        }
+        run.clear();
+    }
+
+    /**
+     * Return the night (MJD) of the given night identifier
+     * @param nightId night identifier
+     * @return night (MJD)
+     */
+    private static Double getNight(final NightId nightId) {
+        return Double.valueOf(nightId.getNightId());
+    }
+
+    /**
+     * Return the given sorted values joined by SEPARATOR
+     * @param values sorted values
+     * @return joined values or UNDEFINED if empty
+     */
+    private static String join(final Set<String> values) {
+        if (values.isEmpty()) {
+            return UNDEFINED;
+        }
+        final StringBuilder sb = new StringBuilder(32);
+        for (String value : values) {
+            if (sb.length() != 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.model.Granule.GranuleField;
+
+/**
+ * Grouping dimensions of the granule tree: granule fields (target, instrument mode, night)
+ * and derived dimensions (array configuration, array name, observing run) whose values are
+ * computed once per collection by the GranuleBucketIndex
+ */
+public enum GranuleGroupingField {
+    /** target */
+    TARGET("Target", GranuleField.TARGET),
+    /** instrument mode */
+    INS_MODE("Ins. mode", GranuleField.INS_MODE),
+    /** night */
+    NIGHT("Night", GranuleField.NIGHT),
+    /** array configuration (station sets) */
+    ARRAY_CONF("Array conf.", null),
+    /** array name (ARRNAME) */
+    ARRNAME("Array", null),
+    /** observing run (consecutive nights) */
+    RUN("Run", null);
+
+    /** label (column name) */
+    private final String label;
+    /** granule field or null if derived */
+    private final GranuleField granuleField;
+
+    /**
+     * Constructor
+     * @param label label (column name)
+     * @param granuleField granule field or null if derived
+     */
+    GranuleGroupingField(final String label, final GranuleField granuleField) {
+        this.label = label;
+        this.granuleField = granuleField;
+    }
+
+    /**
+     * Return the label (column name)
+     * @return label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Return the granule field
+     * @return granule field or null if derived (see GranuleBucketIndex)
+     */
+    public GranuleField getGranuleField() {
+        return granuleField;
+    }
+
+    /**
+     * Return true if this dimension is derived (see GranuleBucketIndex)
+     * @return true if derived
+     */
+    public boolean isDerived() {
+        return granuleField == null;
+    }
+
+    /**
+     * Return the grouping field matching the given label
+     * @param label label (column name)
+     * @return grouping field or null if not found
+     */
+    public static GranuleGroupingField fromLabel(final String label) {
+        for (GranuleGroupingField field : values()) {
+            if (field.label.equals(label)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the grouping field matching the given granule field
+     * @param granuleField granule field
+     * @return grouping field or null if not found
+     */
+    public static GranuleGroupingField of(final GranuleField granuleField) {
+        for (GranuleGroupingField field : values()) {
+            if (field.granuleField == granuleField) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
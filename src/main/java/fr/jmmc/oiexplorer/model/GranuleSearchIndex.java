@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.util.MJDConverter;
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.Granule.GranuleField;
+import fr.jmmc.oitools.model.InstrumentMode;
+import fr.jmmc.oitools.model.NightId;
+import fr.jmmc.oitools.model.OIFitsCollection;
+import fr.jmmc.oitools.model.Target;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class indexes the granule field values (targets, instrument modes, nights) of an OIFitsCollection
+ * by their names, aliases and night dates to find matching granules while typing.
+ *
+ * Each name is indexed (lower case) from every word start so that a query matches the beginning of any word
+ * (e.g. "1234" matches "HD 1234"); lookups are prefix range queries on a sorted map.
+ *
+ * Note: the index is read-only once built so it can be searched by background workers.
+ */
+public final class GranuleSearchIndex {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(GranuleSearchIndex.class.getName());
+    /** granule fields used to match granules */
+    private static final GranuleField[] FIELDS = new GranuleField[]{GranuleField.TARGET, GranuleField.INS_MODE, GranuleField.NIGHT};
+
+    /* members */
+    /** field values keyed by indexed token (lower case) */
+    private final TreeMap<String, Set<Object>> tokens = new TreeMap<String, Set<Object>>();
+
+    /**
+     * Package constructor (see build())
+     */
+    GranuleSearchIndex() {
+        super();
+    }
+
+    /**
+     * Build the search index of the given OIFitsCollection
+     * @param oiFitsCollection OIFitsCollection to index
+     * @return search index
+     */
+    public static GranuleSearchIndex build(final OIFitsCollection oiFitsCollection) {
+        final long startTime = System.nanoTime();
+
+        final GranuleSearchIndex index = new GranuleSearchIndex();
+
+        // distinct field values:
+        final Set<Object> values = new LinkedHashSet<Object>();
+        for (Granule granule : oiFitsCollection.getOiDataPerGranule().keySet()) {
+            for (GranuleField field : FIELDS) {
+                final Object value = granule.getField(field);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder(32);
+
+        for (Object value : values) {
+            if (value instanceof Target) {
+                final Target target = (Target) value;
+                index.add(target.getTarget(), value);
+
+                final List<String> aliases = oiFitsCollection.getTargetManager().getSortedUniqueAliases(target);
+                if (aliases != null) {
+                    for (String alias : aliases) {
+                        index.add(alias, value);
+                    }
+                }
+            } else if (value instanceof InstrumentMode) {
+                final InstrumentMode insMode = (InstrumentMode) value;
+                index.add(insMode.getInsName(), value);
+
+                final List<String> aliases = oiFitsCollection.getInstrumentModeManager().getSortedUniqueAliases(insMode);
+                if (aliases != null) {
+                    for (String alias : aliases) {
+                        index.add(alias, value);
+                    }
+                }
+            } else if (value instanceof NightId) {
+                sb.setLength(0);
+                index.add(MJDConverter.mjdToString(((NightId) value).getNightId(), sb).toString(), value);
+            }
+        }
+
+        logger.info("build: {} values, {} tokens - duration = {} ms.", values.size(), index.tokens.size(),
+                1e-6d * (System.nanoTime() - startTime));
+
+        return index;
+    }
+
+    /**
+     * Index the given name (from every word start)
+     * @param name name to index
+     * @param value field value
+     */
+    void add(final String name, final Object value) {
+        if (name == null) {
+            return;
+        }
+        final String text = name.trim().toLowerCase(Locale.ENGLISH);
+
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))) {
+                final String token = text.substring(i);
+
+                Set<Object> tokenValues = tokens.get(token);
+                if (tokenValues == null) {
+                    tokenValues = new HashSet<Object>(4);
+                    tokens.put(token, tokenValues);
+                }
+                tokenValues.add(value);
+            }
+        }
+    }
+
+    /**
+     * Return the field values matching the given query (prefix of any word of their names)
+     * @param query query text
+     * @return matching field values or null if the query is empty (no filter)
+     */
+    public Set<Object> search(final String query) {
+        if (query == null) {
+            return null;
+        }
+        final String prefix = query.trim().toLowerCase(Locale.ENGLISH);
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        final SortedMap<String, Set<Object>> matches = tokens.subMap(prefix, prefix + Character.MAX_VALUE);
+
+        final Set<Object> values = new HashSet<Object>();
+        for (Set<Object> tokenValues : matches.values()) {
+            values.addAll(tokenValues);
+        }
+        return values;
+    }
+
+    /**
+     * Return the granules having at least one field value in the given matching values
+     * @param granules granules to filter
+     * @param matches matching field values (see search())
+     * @return filtered granules (same order)
+     */
+    public static List<Granule> filter(final Collection<Granule> granules, final Set<Object> matches) {
+        final List<Granule> filtered = new ArrayList<Granule>();
+        for (Granule granule : granules) {
+            if (matches(granule, matches)) {
+                filtered.add(granule);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Return true if one field value of the given granule is in the given matching values
+     * @param granule granule to test
+     * @param matches matching field values
+     * @return true if the granule matches
+     */
+    public static boolean matches(final Granule granule, final Set<Object> matches) {
+        for (GranuleField field : FIELDS) {
+            final Object value = granule.getField(field);
+            if (value != null && matches.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.util.GranuleComparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps the sorted views of the granules of one collection version keyed by grouping field order.
+ * Granules are sorted on precomputed primitive keys: the rank of each granule value per grouping field
+ * (computed once per field by sorting the granules on that single field).
+ * Sorted views are equal to sorting with a GranuleComparator on the same fields.
+ *
+ * Note: this class is thread-safe: tree builds call getSortedGranules() from worker threads (DataTreePanel, GranuleTreePanel)
+ * and the EDT; sorted views and ranks are computed once under this instance lock.
+ */
+public final class GranuleSortIndex {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(GranuleSortIndex.class.getName());
+
+    /* members */
+    /** granules (collection order) */
+    private final Granule[] granules;
+    /** ranks per granule (same order as granules) per grouping field (guarded by this) */
+    private final Map<GranuleGroupingField, int[]> ranksPerField
+                                                  = new EnumMap<GranuleGroupingField, int[]>(GranuleGroupingField.class);
+    /** cached sorted views (read-only) keyed by grouping fields (guarded by this) */
+    private final Map<List<GranuleGroupingField>, List<Granule>> sortedViews
+                                                                 = new HashMap<List<GranuleGroupingField>, List<Granule>>(8);
+
+    /**
+     * Constructor
+     * @param granules granules of the collection
+     */
+    public GranuleSortIndex(final Collection<Granule> granules) {
+        this.granules = granules.toArray(new Granule[granules.size()]);
+    }
+
+    /**
+     * Return the granules sorted by the given grouping fields (cached)
+     * @param fields grouping fields (sort order)
+     * @param bucketIndex bucket index (required if any field is derived)
+     * @return sorted granules (read-only)
+     */
+    public synchronized List<Granule> getSortedGranules(final List<GranuleGroupingField> fields, final GranuleBucketIndex bucketIndex) {
+        List<Granule> sorted = sortedViews.get(fields);
+        if (sorted == null) {
+            final long startTime = System.nanoTime();
+
+            final int len = fields.size();
+            final int[][] ranks = new int[len][];
+            for (int i = 0; i < len; i++) {
+                ranks[i] = getRanks(fields.get(i), bucketIndex);
+            }
+
+            final int nGranules = granules.length;
+            final Integer[] order = new Integer[nGranules];
+            for (int i = 0; i < nGranules; i++) {
+                order[i] = i;
+            }
+
+            // stable sort on ranks:
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer i1, final Integer i2) {
+                    final int g1 = i1.intValue();
+                    final int g2 = i2.intValue();
+                    for (int i = 0; i < len; i++) {
+                        final int res = Integer.compare(ranks[i][g1], ranks[i][g2]);
+                        if (res != 0) {
+                            return res;
+                        }
+                    }
+                    return 0;
+                }
+            });
+
+            final List<Granule> result = new ArrayList<Granule>(nGranules);
+            for (int i = 0; i < nGranules; i++) {
+                result.add(granules[order[i]]);
+            }
+            sorted = Collections.unmodifiableList(result);
+
+            sortedViews.put(new ArrayList<GranuleGroupingField>(fields), sorted);
+
+            logger.debug("getSortedGranules: {} - duration = {} ms.", fields, 1e-6d * (System.nanoTime() - startTime));
+        }
+        return sorted;
+    }
+
+    /**
+     * Return the ranks of all granules for the given grouping field (computed once)
+     * @param field grouping field
+     * @param bucketIndex bucket index (required if the field is derived)
+     * @return ranks per granule
+     */
+    private synchronized int[] getRanks(final GranuleGroupingField field, final GranuleBucketIndex bucketIndex) {
+        int[] ranks = ranksPerField.get(field);
+        if (ranks == null) {
+            final Comparator<Granule> comparator = (field.isDerived()) ? bucketIndex.getComparator(Arrays.asList(field))
+                    : new GranuleComparator(Arrays.asList(field.getGranuleField()));
+
+            final int nGranules = granules.length;
+            final Integer[] order = new Integer[nGranules];
+            for (int i = 0; i < nGranules; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer i1, final Integer i2) {
+                    return comparator.compare(granules[i1], granules[i2]);
+                }
+            });
+
+            // equal values share the same rank:
+            ranks = new int[nGranules];
+            int rank = 0;
+            for (int i = 0; i < nGranules; i++) {
+                if (i != 0 && comparator.compare(granules[order[i - 1]], granules[order[i]]) != 0) {
+                    rank++;
+                }
+                ranks[order[i]] = rank;
+            }
+            ranksPerField.put(field, ranks);
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.InstrumentMode;
+import fr.jmmc.oitools.model.OIData;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class gathers aggregated statistics on a set of granules (tree node):
+ * number of tables, measurements and valid (unflagged) measurements, wavelength coverage,
+ * distinct baselines and MJD span. Values are stored as primitives; baselines as a sorted array.
+ *
+ * Note: statistics are computed on whole OIData tables.
+ */
+public final class GranuleStatistics {
+
+    /** empty statistics */
+    public static final GranuleStatistics EMPTY = new GranuleStatistics(0, 0L, 0L, Double.NaN, Double.NaN,
+            new String[0], Double.NaN, Double.NaN);
+
+    /**
+     * Sort keys (descending order)
+     */
+    public enum SortKey {
+        /** granule order */
+        NONE("default order"),
+        /** number of measurements */
+        MEASUREMENTS("measurements"),
+        /** number of valid measurements */
+        VALID("valid points"),
+        /** number of distinct baselines */
+        BASELINES("baselines"),
+        /** MJD span */
+        MJD_SPAN("MJD span");
+
+        /** label */
+        private final String label;
+
+        /**
+         * Constructor
+         * @param label label
+         */
+        SortKey(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * Return the comparator (descending order)
+         * @return comparator or null for NONE
+         */
+        public Comparator<GranuleStatistics> getComparator() {
+            switch (this) {
+                case MEASUREMENTS:
+                    return new Comparator<GranuleStatistics>() {
+                        @Override
+                        public int compare(final GranuleStatistics s1, final GranuleStatistics s2) {
+                            return Long.compare(s2.nbMeasurements, s1.nbMeasurements);
+                        }
+                    };
+                case VALID:
+                    return new Comparator<GranuleStatistics>() {
+                        @Override
+                        public int compare(final GranuleStatistics s1, final GranuleStatistics s2) {
+                            return Long.compare(s2.nbValid, s1.nbValid);
+                        }
+                    };
+                case BASELINES:
+                    return new Comparator<GranuleStatistics>() {
+                        @Override
+                        public int compare(final GranuleStatistics s1, final GranuleStatistics s2) {
+                            return Integer.compare(s2.baselines.length, s1.baselines.length);
+                        }
+                    };
+                case MJD_SPAN:
+                    return new Comparator<GranuleStatistics>() {
+                        @Override
+                        public int compare(final GranuleStatistics s1, final GranuleStatistics s2) {
+                            return Double.compare(s2.getMjdSpan(), s1.getMjdSpan());
+                        }
+                    };
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /* members */
+    /** number of tables */
+    private final int nbTables;
+    /** number of measurements */
+    private final long nbMeasurements;
+    /** number of valid (unflagged) measurements */
+    private final long nbValid;
+    /** min wavelength (m) */
+    private final double lambdaMin;
+    /** max wavelength (m) */
+    private final double lambdaMax;
+    /** distinct baselines (sorted) */
+    private final String[] baselines;
+    /** min MJD */
+    private final double mjdMin;
+    /** max MJD */
+    private final double mjdMax;
+
+    /**
+     * Private constructor
+     * @param nbTables number of tables
+     * @param nbMeasurements number of measurements
+     * @param nbValid number of valid measurements
+     * @param lambdaMin min wavelength (m)
+     * @param lambdaMax max wavelength (m)
+     * @param baselines distinct baselines (sorted)
+     * @param mjdMin min MJD
+     * @param mjdMax max MJD
+     */
+    private GranuleStatistics(final int nbTables, final long nbMeasurements, final long nbValid,
+                              final double lambdaMin, final double lambdaMax,
+                              final String[] baselines, final double mjdMin, final double mjdMax) {
+        this.nbTables = nbTables;
+        this.nbMeasurements = nbMeasurements;
+        this.nbValid = nbValid;
+        this.lambdaMin = lambdaMin;
+        this.lambdaMax = lambdaMax;
+        this.baselines = baselines;
+        this.mjdMin = mjdMin;
+        this.mjdMax = mjdMax;
+    }
+
+    /**
+     * Compute the statistics of the given granule
+     * @param granule granule
+     * @param oiDatas OIData tables of the granule (may be null)
+     * @return granule statistics
+     */
+    public static GranuleStatistics compute(final Granule granule, final Collection<OIData> oiDatas) {
+        if (oiDatas == null || oiDatas.isEmpty()) {
+            return EMPTY;
+        }
+        long nbMeasurements = 0L;
+        long nbValid = 0L;
+        double mjdMin = Double.POSITIVE_INFINITY;
+        double mjdMax = Double.NEGATIVE_INFINITY;
+        final Set<String> baselineSet = new HashSet<String>();
+
+        for (OIData oiData : oiDatas) {
+            nbMeasurements += oiData.getNbMeasurements();
+
+            final boolean[][] flags = oiData.getFlag();
+            if (flags != null) {
+                for (boolean[] row : flags) {
+                    for (boolean flag : row) {
+                        if (!flag) {
+                            nbValid++;
+                        }
+                    }
+                }
+            }
+
+            final double[] mjds = oiData.getMJD();
+            if (mjds != null) {
+                for (double mjd : mjds) {
+                    if (mjd < mjdMin) {
+                        mjdMin = mjd;
+                    }
+                    if (mjd > mjdMax) {
+                        mjdMax = mjd;
+                    }
+                }
+            }
+
+            for (short[] staIndex : oiData.getDistinctStaIndex()) {
+                baselineSet.add(oiData.getStaNames(staIndex)); // cached
+            }
+        }
+
+        final Object insMode = granule.getField(Granule.GranuleField.INS_MODE);
+        final double lambdaMin = (insMode instanceof InstrumentMode) ? ((InstrumentMode) insMode).getLambdaMin() : Double.NaN;
+        final double lambdaMax = (insMode instanceof InstrumentMode) ? ((InstrumentMode) insMode).getLambdaMax() : Double.NaN;
+
+        return new GranuleStatistics(oiDatas.size(), nbMeasurements, nbValid, lambdaMin, lambdaMax,
+                toSortedArray(baselineSet), (mjdMin <= mjdMax) ? mjdMin : Double.NaN, (mjdMin <= mjdMax) ? mjdMax : Double.NaN);
+    }
+
+    /**
+     * Aggregate the given statistics
+     * @param stats statistics to merge
+     * @return aggregated statistics
+     */
+    public static GranuleStatistics merge(final Collection<GranuleStatistics> stats) {
+        if (stats.size() == 1) {
+            return stats.iterator().next();
+        }
+        int nbTables = 0;
+        long nbMeasurements = 0L;
+        long nbValid = 0L;
+        double lambdaMin = Double.NaN;
+        double lambdaMax = Double.NaN;
+        double mjdMin = Double.NaN;
+        double mjdMax = Double.NaN;
+        final Set<String> baselineSet = new HashSet<String>();
+
+        for (GranuleStatistics s : stats) {
+            nbTables += s.nbTables;
+            nbMeasurements += s.nbMeasurements;
+            nbValid += s.nbValid;
+            lambdaMin = min(lambdaMin, s.lambdaMin);
+            lambdaMax = max(lambdaMax, s.lambdaMax);
+            mjdMin = min(mjdMin, s.mjdMin);
+            mjdMax = max(mjdMax, s.mjdMax);
+            baselineSet.addAll(Arrays.asList(s.baselines));
+        }
+        return new GranuleStatistics(nbTables, nbMeasurements, nbValid, lambdaMin, lambdaMax,
+                toSortedArray(baselineSet), mjdMin, mjdMax);
+    }
+
+    /**
+     * Write these statistics (see SessionSnapshot)
+     * @param out output
+     * @throws IOException if any I/O error occurs
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(nbTables);
+        out.writeLong(nbMeasurements);
+        out.writeLong(nbValid);
+        out.writeDouble(lambdaMin);
+        out.writeDouble(lambdaMax);
+        out.writeInt(baselines.length);
+        for (String baseline : baselines) {
+            out.writeUTF(baseline);
+        }
+        out.writeDouble(mjdMin);
+        out.writeDouble(mjdMax);
+    }
+
+    /**
+     * Read statistics written by write()
+     * @param in input
+     * @return granule statistics
+     * @throws IOException if any I/O error occurs or invalid content
+     */
+    static GranuleStatistics read(final DataInput in) throws IOException {
+        final int nbTables = in.readInt();
+        final long nbMeasurements = in.readLong();
+        final long nbValid = in.readLong();
+        final double lambdaMin = in.readDouble();
+        final double lambdaMax = in.readDouble();
+        final String[] baselines = new String[SessionSnapshot.readCount(in)];
+        for (int i = 0; i < baselines.length; i++) {
+            baselines[i] = in.readUTF();
+        }
+        final double mjdMin = in.readDouble();
+        final double mjdMax = in.readDouble();
+        return new GranuleStatistics(nbTables, nbMeasurements, nbValid, lambdaMin, lambdaMax, baselines, mjdMin, mjdMax);
+    }
+
+    /**
+     * Return the number of tables
+     * @return number of tables
+     */
+    public int getNbTables() {
+        return nbTables;
+    }
+
+    /**
+     * Return the number of measurements
+     * @return number of measurements
+     */
+    public long getNbMeasurements() {
+        return nbMeasurements;
+    }
+
+    /**
+     * Return the number of valid (unflagged) measurements
+     * @return number of valid (unflagged) measurements
+     */
+    public long getNbValid() {
+        return nbValid;
+    }
+
+    /**
+     * Return the min wavelength (m)
+     * @return min wavelength (m)
+     */
+    public double getLambdaMin() {
+        return lambdaMin;
+    }
+
+    /**
+     * Return the max wavelength (m)
+     * @return max wavelength (m)
+     */
+    public double getLambdaMax() {
+        return lambdaMax;
+    }
+
+    /**
+     * Return the number of distinct baselines
+     * @return number of distinct baselines
+     */
+    public int getNbBaselines() {
+        return baselines.length;
+    }
+
+    /**
+     * Return the min MJD
+     * @return min MJD
+     */
+    public double getMjdMin() {
+        return mjdMin;
+    }
+
+    /**
+     * Return the max MJD
+     * @return max MJD
+     */
+    public double getMjdMax() {
+        return mjdMax;
+    }
+
+    /**
+     * Return the MJD span (days)
+     * @return MJD span or 0 if undefined
+     */
+    public double getMjdSpan() {
+        return (Double.isNaN(mjdMin)) ? 0.0 : (mjdMax - mjdMin);
+    }
+
+    /**
+     * Append the short summary displayed in tree labels
+     * @param sb buffer
+     * @return buffer
+     */
+    public StringBuilder toShortString(final StringBuilder sb) {
+        sb.append(nbValid).append('/').append(nbMeasurements).append(" pts, ")
+                .append(baselines.length).append(" bl");
+        return sb;
+    }
+
+    /**
+     * Append the HTML description displayed in tooltips
+     * @param sb buffer
+     * @return buffer
+     */
+    public StringBuilder toHtml(final StringBuilder sb) {
+        sb.append("<b>Tables:</b> ").append(nbTables);
+        sb.append("<br><b>Measurements:</b> ").append(nbMeasurements);
+        sb.append("<br><b>Valid (unflagged):</b> ").append(nbValid);
+        if (!Double.isNaN(lambdaMin)) {
+            sb.append("<br><b>Wavelength</b> (&micro;m): ").append(lambdaMin * 1e6).append(" - ").append(lambdaMax * 1e6);
+        }
+        sb.append("<br><b>Baselines:</b> ").append(baselines.length);
+        if (!Double.isNaN(mjdMin)) {
+            sb.append("<br><b>MJD:</b> ").append(mjdMin).append(" - ").append(mjdMax);
+        }
+        return sb;
+    }
+
+    /**
+     * Return the given values as a sorted array
+     * @param values values
+     * @return sorted array
+     */
+    private static String[] toSortedArray(final Set<String> values) {
+        final String[] array = values.toArray(new String[values.size()]);
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * Return the minimum of the given values ignoring NaN
+     * @param a first value
+     * @param b second value
+     * @return minimum
+     */
+    private static double min(final double a, final double b) {
+        return (Double.isNaN(a) || b < a) ? b : a;
+    }
+
+    /**
+     * Return the maximum of the given values ignoring NaN
+     * @param a first value
+     * @param b second value
+     * @return maximum
+     */
+    private static double max(final double a, final double b) {
+        return (Double.isNaN(a) || b > a) ? b : a;
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class reads the OIFits file entries of an OIFits Explorer collection file (oixp) using a streaming (StAX) parser:
+ * no object graph is created for subsets and plots (their elements are only scanned).
+ * It is used to append the OIFits files of a collection and to capture file fingerprints before loading;
+ * loading a whole collection (subsets and plots) still relies on the JAXB loader of OIFitsCollectionManager.
+ */
+public final class OIDataCollectionFileReader {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(OIDataCollectionFileReader.class.getName());
+    /** file element name */
+    private static final String ELEMENT_FILE = "file";
+    /** shared XMLInputFactory (thread-safe once configured) */
+    private static final XMLInputFactory XML_FACTORY = createFactory();
+
+    /**
+     * Forbidden constructor
+     */
+    private OIDataCollectionFileReader() {
+        // no-op
+    }
+
+    /**
+     * Create the XMLInputFactory (no DTD nor external entities)
+     * @return XMLInputFactory
+     */
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Read the file locations (file paths or URLs as written) of the given OIFits Explorer collection file
+     * @param oixpFile OIFits Explorer collection file
+     * @return file locations in document order
+     * @throws IOException if any I/O error occurs
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    public static List<String> readFileLocations(final File oixpFile) throws IOException, XMLStreamException {
+        final long startTime = System.nanoTime();
+
+        final List<String> locations = new ArrayList<String>(64);
+
+        final InputStream in = new BufferedInputStream(new FileInputStream(oixpFile), 64 * 1024);
+        try {
+            final XMLStreamReader reader = XML_FACTORY.createXMLStreamReader(in);
+            try {
+                // depth: 1 = collection, 2 = collection child, 3 = OIDataFile child
+                int depth = 0;
+                boolean inFile = false;
+
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        final boolean isFile = ELEMENT_FILE.equals(reader.getLocalName());
+
+                        if (depth == 2) {
+                            inFile = isFile;
+                        } else if (depth == 3 && inFile && isFile) {
+                            // getElementText() consumes the END_ELEMENT:
+                            final String location = reader.getElementText().trim();
+                            depth--;
+                            if (!location.isEmpty()) {
+                                locations.add(location);
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        logger.info("readFileLocations[{}]: {} files - duration = {} ms.", oixpFile, locations.size(),
+                1e-6d * (System.nanoTime() - startTime));
+
+        return locations;
+    }
+
+    /**
+     * Resolve the given file location relative to the given OIFits Explorer collection file
+     * @param oixpFile OIFits Explorer collection file
+     * @param location file location (path or URL)
+     * @return resolved file or null if the location is a remote URL
+     */
+    public static File resolveFile(final File oixpFile, final String location) {
+        String path = location;
+        if (path.startsWith("file:")) {
+            try {
+                // absolute file URL (decoded):
+                return new File(new URI(location));
+            } catch (URISyntaxException use) {
+                logger.debug("invalid file URL: {}", location, use);
+            } catch (IllegalArgumentException iae) {
+                logger.debug("invalid file URL: {}", location, iae);
+            }
+            // relative path:
+            path = path.substring("file:".length());
+        } else if (location.contains("://")) {
+            return null;
+        }
+        final File file = new File(path);
+        if (file.isAbsolute()) {
+            return file;
+        }
+        return new File(oixpFile.getAbsoluteFile().getParentFile(), path);
+    }
+}
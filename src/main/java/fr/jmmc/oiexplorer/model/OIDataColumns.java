@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.meta.ColumnMeta;
+import fr.jmmc.oitools.meta.Types;
+import fr.jmmc.oitools.model.OIData;
+
+/**
+ * This class gives a uniform access to the numerical values of standard or derived OIData columns
+ * (see ColumnStatisticsCatalog) as a [row][wavelength] matrix (1D columns have a single value per row).
+ */
+final class OIDataColumns {
+
+    /**
+     * Forbidden constructor
+     */
+    private OIDataColumns() {
+        super();
+    }
+
+    /**
+     * Return the metadata of the given standard or derived column
+     * @param oiData OIData table
+     * @param columnName column name
+     * @return column metadata or null if the table has no such column
+     */
+    static ColumnMeta getColumnMeta(final OIData oiData, final String columnName) {
+        final ColumnMeta meta = oiData.getColumnDesc(columnName);
+        return (meta != null) ? meta : oiData.getColumnDerivedDesc(columnName);
+    }
+
+    /**
+     * Return the numerical values of the given column as a [row][wavelength] matrix
+     * @param oiData OIData table
+     * @param columnName column name
+     * @return values per row (1 value per row for 1D columns) or null if the table has no such numerical column
+     */
+    static double[][] getDoubles(final OIData oiData, final String columnName) {
+        final ColumnMeta meta = getColumnMeta(oiData, columnName);
+        if (meta == null || meta.getDataType() == Types.TYPE_CHAR) {
+            return null;
+        }
+        if (meta.isArray()) {
+            return oiData.getColumnAsDoubles(columnName);
+        }
+        final double[] values = oiData.getColumnAsDouble(columnName);
+        if (values == null) {
+            return null;
+        }
+        final double[][] rows = new double[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            rows[i] = new double[]{values[i]};
+        }
+        return rows;
+    }
+}
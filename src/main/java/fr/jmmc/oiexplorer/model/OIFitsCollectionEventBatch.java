@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.jmcs.gui.util.SwingUtils;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventListener;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class batches the OIFitsCollectionManager events during bulk operations (new collection, load, refresh or
+ * remove files, new view): application listeners register on the manager notifiers through a batching listener
+ * (see getListener()) so that every event goes through a single dispatch point. Between begin() and commit(),
+ * events are queued instead of being delivered; at commit, each listener receives only its last event per type
+ * (and per subset / plot), and all queued events are replayed in the global order of their last occurrence
+ * (latest state wins, listeners interleaved as the manager dispatched them), so trees and plots are rebuilt once.
+ *
+ * Listeners of oiexplorer-core (plot views and chart panels) register on the notifiers by themselves
+ * and are not suspended: they still process every event.
+ *
+ * As the manager may dispatch its events later on the EDT, the deferred events are replayed after the events
+ * already queued (invokeLater), and nested batches are flushed by the outermost commit. Actions depending on the
+ * replayed state (like the Ready event) must be given to commit(Runnable) to run after the flush.
+ *
+ * Note: this class must only be used by the Swing EDT; always call commit() in a finally block
+ * (or in the load listener done() callback) so that a failure never leaves the batch open.
+ */
+public final class OIFitsCollectionEventBatch {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(OIFitsCollectionEventBatch.class.getName());
+    /** singleton instance */
+    private static OIFitsCollectionEventBatch _instance = null;
+
+    /* members */
+    /** nesting depth of open batches */
+    private int depth = 0;
+    /** true if the flush is scheduled (events still deferred until then) */
+    private boolean flushPending = false;
+    /** deferred deliveries keyed by listener and subject key (last occurrence order) */
+    private final Map<DeferredKey, Runnable> deferred = new LinkedHashMap<DeferredKey, Runnable>(64);
+    /** batching listeners per application listener (weak keys) */
+    private final Map<OIFitsCollectionManagerEventListener, BatchingListener> batchingListeners = new WeakHashMap<OIFitsCollectionManagerEventListener, BatchingListener>(16);
+    /** number of deferred events (statistics) */
+    private int nbDeferred = 0;
+    /** actions to run once the deferred events are replayed */
+    private final List<Runnable> afterFlush = new ArrayList<Runnable>(4);
+
+    /**
+     * Return the singleton instance
+     * @return singleton instance
+     */
+    public static synchronized OIFitsCollectionEventBatch getInstance() {
+        if (_instance == null) {
+            _instance = new OIFitsCollectionEventBatch();
+        }
+        return _instance;
+    }
+
+    /**
+     * Private constructor
+     */
+    private OIFitsCollectionEventBatch() {
+        super();
+    }
+
+    /**
+     * Return true if events are currently deferred
+     * @return true if a batch is open or not yet flushed
+     */
+    public boolean isActive() {
+        return depth != 0 || flushPending;
+    }
+
+    /**
+     * Open a batch (nested batches allowed): events are deferred until the outermost commit
+     */
+    public void begin() {
+        depth++;
+        logger.debug("begin: depth = {}", depth);
+    }
+
+    /**
+     * Close the current batch: if it is the outermost batch, deferred events are replayed
+     * once the events already queued on the EDT are dispatched
+     */
+    public void commit() {
+        commit(null);
+    }
+
+    /**
+     * Close the current batch and run the given action once the deferred events are replayed
+     * (immediately after the replay if it is the outermost batch, else after the outermost batch flush)
+     * @param action action to run after the flush (may be null)
+     */
+    public void commit(final Runnable action) {
+        if (action != null) {
+            afterFlush.add(action);
+        }
+        if (depth == 0) {
+            logger.warn("commit called without begin");
+            if (!flushPending) {
+                runAfterFlush();
+            }
+            return;
+        }
+        depth--;
+        logger.debug("commit: depth = {}", depth);
+
+        if (depth == 0 && !flushPending) {
+            flushPending = true;
+
+            SwingUtils.invokeLaterEDT(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Return the batching listener to register on the OIFitsCollectionManager notifiers instead of the given listener
+     * (always the same instance for the same listener)
+     * @param listener application listener
+     * @return batching listener
+     */
+    public synchronized OIFitsCollectionManagerEventListener getListener(final OIFitsCollectionManagerEventListener listener) {
+        BatchingListener batchingListener = batchingListeners.get(listener);
+        if (batchingListener == null) {
+            batchingListener = new BatchingListener(this, listener);
+            batchingListeners.put(listener, batchingListener);
+        }
+        return batchingListener;
+    }
+
+    /**
+     * Unregister the batching listener of the given listener from the OIFitsCollectionManager notifiers
+     * and discard its deferred events
+     * @param listener application listener
+     */
+    public void unbind(final OIFitsCollectionManagerEventListener listener) {
+        final BatchingListener batchingListener;
+        synchronized (this) {
+            batchingListener = batchingListeners.remove(listener);
+        }
+        if (batchingListener != null) {
+            OIFitsCollectionManager.getInstance().unbind(batchingListener);
+        }
+        discard(listener);
+    }
+
+    /**
+     * Discard the deferred events of the given listener
+     * @param listener listener
+     */
+    void discard(final Object listener) {
+        for (Iterator<DeferredKey> it = deferred.keySet().iterator(); it.hasNext();) {
+            if (it.next().listener == listener) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Deliver the given event to the given listener or defer it if a batch is active
+     * (only the last event per listener, type and subject is kept)
+     * @param listener listener receiving the event
+     * @param event event
+     */
+    void dispatch(final OIFitsCollectionManagerEventListener listener, final OIFitsCollectionManagerEvent event) {
+        if (!isActive()) {
+            listener.onProcess(event);
+            return;
+        }
+        defer(listener, getSubjectKey(event), new Runnable() {
+            @Override
+            public void run() {
+                listener.onProcess(event);
+            }
+
+            @Override
+            public String toString() {
+                return event.toString();
+            }
+        });
+    }
+
+    /**
+     * Defer the given delivery: only the last delivery per listener and subject key is kept
+     * @param listener listener receiving the event
+     * @param subjectKey subject key (event type and subset / plot identifier)
+     * @param delivery delivery of the event to the listener
+     */
+    void defer(final Object listener, final String subjectKey, final Runnable delivery) {
+        // move the subject to its last occurrence (latest state replayed in the order it was reached):
+        final DeferredKey key = new DeferredKey(listener, subjectKey);
+        deferred.remove(key);
+        deferred.put(key, delivery);
+        nbDeferred++;
+
+        logger.debug("defer: {}", delivery);
+    }
+
+    /**
+     * Replay the consolidated deferred events to their listeners
+     */
+    private void flush() {
+        if (depth != 0) {
+            // a new batch was opened in between: its commit will flush:
+            flushPending = false;
+            return;
+        }
+        final long startTime = System.nanoTime();
+
+        // copy and close the batch before replaying (listeners may fire new events):
+        final List<Runnable> deliveries = new ArrayList<Runnable>(deferred.values());
+        final int nbEvents = nbDeferred;
+
+        deferred.clear();
+        nbDeferred = 0;
+        flushPending = false;
+
+        int nbReplayed = 0;
+        for (Runnable delivery : deliveries) {
+            try {
+                delivery.run();
+            } catch (RuntimeException re) {
+                logger.error("flush: failure on {}", delivery, re);
+            }
+            nbReplayed++;
+        }
+
+        logger.info("flush: {} events replayed ({} deferred) - duration = {} ms.", nbReplayed, nbEvents, 1e-6d * (System.nanoTime() - startTime));
+
+        runAfterFlush();
+    }
+
+    /**
+     * Run the pending actions given to commit(Runnable)
+     */
+    private void runAfterFlush() {
+        if (!afterFlush.isEmpty()) {
+            // copy before running (actions may open and commit new batches):
+            final List<Runnable> actions = new ArrayList<Runnable>(afterFlush);
+            afterFlush.clear();
+
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException re) {
+                    logger.error("flush: failure on {}", action, re);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the key used to coalesce events: event type and its subset or plot identifier if any
+     * @param event event
+     * @return subject key
+     */
+    private static String getSubjectKey(final OIFitsCollectionManagerEvent event) {
+        final OIFitsCollectionManagerEventType type = event.getType();
+
+        switch (type) {
+            case SUBSET_CHANGED:
+                if (event.getSubsetDefinition() != null) {
+                    return type.name() + '#' + event.getSubsetDefinition().getId();
+                }
+                break;
+            case PLOT_CHANGED:
+                if (event.getPlot() != null) {
+                    return type.name() + '#' + event.getPlot().getId();
+                }
+                break;
+            default:
+        }
+        return type.name();
+    }
+
+    /**
+     * Key of a deferred event: listener (identity) and subject key
+     */
+    private static final class DeferredKey {
+
+        /* members */
+        /** listener receiving the event */
+        private final Object listener;
+        /** subject key (event type and subset / plot identifier) */
+        private final String subjectKey;
+
+        /**
+         * Hidden constructor
+         * @param listener listener receiving the event
+         * @param subjectKey subject key
+         */
+        private DeferredKey(final Object listener, final String subjectKey) {
+            this.listener = listener;
+            this.subjectKey = subjectKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(listener) + subjectKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DeferredKey)) {
+                return false;
+            }
+            final DeferredKey other = (DeferredKey) obj;
+            return (listener == other.listener) && subjectKey.equals(other.subjectKey);
+        }
+    }
+
+    /**
+     * This listener is registered on the OIFitsCollectionManager notifiers instead of an application listener:
+     * it forwards events to the batch dispatch point (weak reference to the application listener)
+     */
+    private static final class BatchingListener implements OIFitsCollectionManagerEventListener {
+
+        /* members */
+        /** event batch */
+        private final OIFitsCollectionEventBatch batch;
+        /** application listener (weak reference) */
+        private final WeakReference<OIFitsCollectionManagerEventListener> listenerRef;
+
+        /**
+         * Hidden constructor
+         * @param batch event batch
+         * @param listener application listener
+         */
+        private BatchingListener(final OIFitsCollectionEventBatch batch, final OIFitsCollectionManagerEventListener listener) {
+            this.batch = batch;
+            this.listenerRef = new WeakReference<OIFitsCollectionManagerEventListener>(listener);
+        }
+
+        /**
+         * Free any ressource or reference to this instance :
+         * remove this instance from OIFitsCollectionManager event notifiers
+         */
+        @Override
+        public void dispose() {
+            OIFitsCollectionManager.getInstance().unbind(this);
+        }
+
+        /**
+         * Return the optional subject id of the application listener
+         * @param type event type
+         * @return subject id (null means accept any event) or DISCARDED_SUBJECT_ID to discard event
+         */
+        @Override
+        public String getSubjectId(final OIFitsCollectionManagerEventType type) {
+            final OIFitsCollectionManagerEventListener listener = listenerRef.get();
+            return (listener != null) ? listener.getSubjectId(type) : null;
+        }
+
+        /**
+         * Deliver or defer the given event to the application listener
+         * @param event OIFits collection event
+         */
+        @Override
+        public void onProcess(final OIFitsCollectionManagerEvent event) {
+            final OIFitsCollectionManagerEventListener listener = listenerRef.get();
+            if (listener != null) {
+                batch.dispatch(listener, event);
+            }
+        }
+    }
+}
@@ -0,0 +1,848 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.jmcs.gui.task.Task;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorker;
+import fr.jmmc.jmcs.gui.task.TaskSwingWorkerExecutor;
+import fr.jmmc.jmcs.util.concurrent.ParallelJobExecutor;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventListener;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType;
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.OIData;
+import fr.jmmc.oitools.model.OIFitsCollection;
+import fr.jmmc.oitools.model.OIFitsFile;
+import fr.jmmc.oitools.model.range.Range;
+import fr.jmmc.oitools.processing.Selector;
+import fr.jmmc.oitools.processing.SelectorResult;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class gathers the values derived from the current OIFitsCollection (column ranges, distinct values ...)
+ * that are costly to compute: they are computed once per collection version and reset on COLLECTION_CHANGED events.
+ * It also keeps the fingerprint of every loaded OIFits file to detect files modified or deleted on disk:
+ * its size and date are captured just before the file is loaded (see addLoadFingerprints()), then its content sum
+ * is read in background once the file enters the collection (only if the file did not change meanwhile).
+ * The bucket index of the derived grouping fields is built in background after each COLLECTION_CHANGED event
+ * (bucket index listeners are notified once it is built).
+ * The column statistics catalog is also built in background after each COLLECTION_CHANGED event,
+ * unless a valid session snapshot provides it (with the granule statistics, see loadSnapshot()):
+ * the snapshot is only applied once all its OIFits files are loaded.
+ *
+ * Note: this singleton must be created before any GUI listener (see OIFitsExplorer.initServices())
+ * so that it processes COLLECTION_CHANGED events first.
+ * All methods must be called from the Swing Event Dispatcher Thread.
+ */
+public final class OIFitsCollectionIndex implements OIFitsCollectionManagerEventListener {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(OIFitsCollectionIndex.class.getName());
+    /** singleton instance */
+    private static OIFitsCollectionIndex _instance = null;
+    /** column statistics task */
+    private static final Task TASK_COLUMN_STATS = new Task("ColumnStatistics");
+    /** fingerprint task */
+    private static final Task TASK_FINGERPRINTS = new Task("Fingerprints");
+    /** number of files fingerprinted per parallel job */
+    private static final int FILES_PER_JOB = 16;
+    /** session snapshot task */
+    private static final Task TASK_SNAPSHOT = new Task("SessionSnapshot");
+    /** bucket index task */
+    private static final Task TASK_BUCKET_INDEX = new Task("GranuleBucketIndex");
+
+    /* members */
+    /** OIFitsCollectionManager singleton reference */
+    private final OIFitsCollectionManager ocm = OIFitsCollectionManager.getInstance();
+    /** collection version (incremented on each COLLECTION_CHANGED event) */
+    private int version = 0;
+    /** cached column ranges [min, max] keyed by column name */
+    private final Map<String, double[]> columnRanges = new HashMap<String, double[]>(32);
+    /** cached distinct values keyed by column name */
+    private final Map<String, List<String>> distinctValues = new HashMap<String, List<String>>(16);
+    /** fingerprints of the loaded OIFits files keyed by absolute file path */
+    private final Map<String, OIFitsFileFingerprint> fingerprints = new HashMap<String, OIFitsFileFingerprint>(64);
+    /** fingerprints captured before loading OIFits files keyed by absolute file path (see addLoadFingerprints()) */
+    private final Map<String, OIFitsFileFingerprint> loadFingerprints = new HashMap<String, OIFitsFileFingerprint>(64);
+    /** fingerprints of loaded files whose content sum is not read yet keyed by absolute file path */
+    private final Map<String, OIFitsFileFingerprint> pendingContentSums = new HashMap<String, OIFitsFileFingerprint>(64);
+    /** search index (built on demand) */
+    private GranuleSearchIndex searchIndex = null;
+    /** bucket index of the derived grouping fields (null until built in background) */
+    private GranuleBucketIndex bucketIndex = null;
+    /** listeners notified when the bucket index is built */
+    private final List<ChangeListener> bucketIndexListeners = new ArrayList<ChangeListener>(2);
+    /** immutable snapshot of the OIData tables per granule (created on demand) */
+    private Map<Granule, Set<OIData>> granuleSnapshot = null;
+    /** cached sorted granule views (created on demand) */
+    private GranuleSortIndex sortIndex = null;
+    /** column statistics catalog (null until built) */
+    private ColumnStatisticsCatalog columnStatistics = null;
+    /** granule statistics (null until computed or restored) */
+    private Map<Granule, GranuleStatistics> granuleStatistics = null;
+    /** validated session snapshot to restore once its files are loaded */
+    private SessionSnapshot pendingSnapshot = null;
+    /** session snapshot version (incremented on each loadSnapshot() call) */
+    private int snapshotVersion = 0;
+
+    /**
+     * Return the singleton instance
+     * @return singleton instance
+     */
+    public static synchronized OIFitsCollectionIndex getInstance() {
+        if (_instance == null) {
+            _instance = new OIFitsCollectionIndex();
+        }
+        return _instance;
+    }
+
+    /**
+     * Private constructor
+     */
+    private OIFitsCollectionIndex() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+    }
+
+    /**
+     * Free any ressource or reference to this instance :
+     * remove this instance from OIFitsCollectionManager event notifiers
+     */
+    @Override
+    public void dispose() {
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
+    }
+
+    /**
+     * Return the current collection version
+     * @return collection version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the range [min, max] of the given column in the current OIFitsCollection
+     * @param columnName column name
+     * @return range [min, max] (values may be NaN or infinite); do not modify the returned array
+     */
+    public double[] getColumnRange(final String columnName) {
+        double[] range = columnRanges.get(columnName);
+        if (range == null) {
+            final ColumnStatistics stats = getColumnStatistics(columnName);
+            if (stats != null) {
+                range = new double[]{stats.getMin(), stats.getMax()};
+                columnRanges.put(columnName, range);
+                return range;
+            }
+            final Range colRange = ocm.getOIFitsCollection().getColumnRange(columnName);
+            range = (colRange != null) ? new double[]{colRange.getMin(), colRange.getMax()}
+                    : new double[]{Double.NaN, Double.NaN};
+            columnRanges.put(columnName, range);
+        }
+        return range;
+    }
+
+    /**
+     * Return the statistics of the given numerical column in the current OIFitsCollection
+     * @param columnName column name
+     * @return statistics or null if not available (column not numerical or catalog not yet built)
+     */
+    public ColumnStatistics getColumnStatistics(final String columnName) {
+        return (columnStatistics != null) ? columnStatistics.get(columnName) : null;
+    }
+
+    /**
+     * Return the distinct values of the given column in the current OIFitsCollection
+     * @param columnName column name
+     * @return distinct values or null if undefined; do not modify the returned list
+     */
+    public List<String> getDistinctValues(final String columnName) {
+        if (distinctValues.containsKey(columnName)) {
+            return distinctValues.get(columnName);
+        }
+        final List<String> values = ocm.getOIFitsCollection().getDistinctValues(columnName);
+        distinctValues.put(columnName, values);
+        return values;
+    }
+
+    /**
+     * Return the search index of the current collection (built on first use)
+     * @return search index
+     */
+    public GranuleSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = GranuleSearchIndex.build(ocm.getOIFitsCollection());
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Return the bucket index of the derived grouping fields of the current collection
+     * @return bucket index or null if not built yet (see addBucketIndexListener())
+     */
+    public GranuleBucketIndex getBucketIndex() {
+        return bucketIndex;
+    }
+
+    /**
+     * Register a listener notified (EDT) when the bucket index of a new collection is built
+     * @param listener listener to add
+     */
+    public void addBucketIndexListener(final ChangeListener listener) {
+        bucketIndexListeners.add(listener);
+    }
+
+    /**
+     * Unregister the given bucket index listener
+     * @param listener listener to remove
+     */
+    public void removeBucketIndexListener(final ChangeListener listener) {
+        bucketIndexListeners.remove(listener);
+    }
+
+    /**
+     * Return the immutable snapshot of the OIData tables per granule of the current collection:
+     * it is copied once per collection version (unmodifiable map and sets) so that background workers never
+     * read the live collection
+     * @return unmodifiable map of unmodifiable OIData sets keyed by granule
+     */
+    public Map<Granule, Set<OIData>> getGranuleSnapshot() {
+        if (granuleSnapshot == null) {
+            final Map<Granule, Set<OIData>> oiDataPerGranule = ocm.getOIFitsCollection().getOiDataPerGranule();
+
+            final Map<Granule, Set<OIData>> snapshot = new LinkedHashMap<Granule, Set<OIData>>(2 * oiDataPerGranule.size());
+            for (Map.Entry<Granule, Set<OIData>> e : oiDataPerGranule.entrySet()) {
+                snapshot.put(e.getKey(), Collections.unmodifiableSet(new LinkedHashSet<OIData>(e.getValue())));
+            }
+            granuleSnapshot = Collections.unmodifiableMap(snapshot);
+        }
+        return granuleSnapshot;
+    }
+
+    /**
+     * Return the sorted granule views of the current collection (created on first use)
+     * @return sort index
+     */
+    public GranuleSortIndex getSortIndex() {
+        if (sortIndex == null) {
+            sortIndex = new GranuleSortIndex(ocm.getOIFitsCollection().getOiDataPerGranule().keySet());
+        }
+        return sortIndex;
+    }
+
+    /**
+     * Return a copy of the fingerprints of the loaded OIFits files keyed by absolute file path
+     * @return fingerprints keyed by absolute file path
+     */
+    public Map<String, OIFitsFileFingerprint> getFingerprints() {
+        return new HashMap<String, OIFitsFileFingerprint>(fingerprints);
+    }
+
+    /**
+     * Define the fingerprint of the given loaded OIFits file (touched file with the same content)
+     * @param filePath absolute file path
+     * @param fingerprint new fingerprint
+     */
+    public void setFingerprint(final String filePath, final OIFitsFileFingerprint fingerprint) {
+        fingerprints.put(filePath, fingerprint);
+    }
+
+    /**
+     * Register the fingerprints (size and date) captured just before loading (or reloading) the given OIFits files:
+     * each one replaces the fingerprint of its file once the file is in the collection (see reset()).
+     * Files loaded without such fingerprint (remote files) are not checked by the collection refresh.
+     * @param captured fingerprints keyed by absolute file path
+     */
+    public void addLoadFingerprints(final Map<String, OIFitsFileFingerprint> captured) {
+        loadFingerprints.putAll(captured);
+    }
+
+    /**
+     * Return the granule statistics of the current collection
+     * @return granule statistics or null if not computed yet; do not modify the returned map
+     */
+    public Map<Granule, GranuleStatistics> getGranuleStatistics() {
+        return granuleStatistics;
+    }
+
+    /**
+     * Define the granule statistics of the current collection (computed by the granule tree)
+     * if the collection did not change
+     * @param granuleStatistics granule statistics
+     * @param taskVersion collection version when the statistics computation started
+     */
+    public void setGranuleStatistics(final Map<Granule, GranuleStatistics> granuleStatistics, final int taskVersion) {
+        if (taskVersion == version) {
+            this.granuleStatistics = granuleStatistics;
+        }
+    }
+
+    /**
+     * Read and validate in background the given session snapshot: if its OIFits files did not change on disk
+     * (same size and date), its analysis will be restored once the loaded collection has the same files (checked only once).
+     * Any previous snapshot is discarded.
+     * @param snapshotFile session snapshot file or null to discard any previous snapshot
+     */
+    public void loadSnapshot(final File snapshotFile) {
+        snapshotVersion++;
+        pendingSnapshot = null;
+        TaskSwingWorkerExecutor.cancelTask(TASK_SNAPSHOT);
+
+        if (snapshotFile != null && snapshotFile.isFile()) {
+            new SnapshotSwingWorker(this, snapshotFile, snapshotVersion).executeTask();
+        }
+    }
+
+    /**
+     * Restore the validated snapshot if the current collection is already loaded, else keep it pending
+     * @param snapshot validated snapshot
+     * @param taskVersion snapshot version when the task started
+     */
+    private void snapshotValidated(final SessionSnapshot snapshot, final int taskVersion) {
+        if (taskVersion == snapshotVersion) {
+            pendingSnapshot = snapshot;
+
+            final OIFitsCollection oiFitsCollection = ocm.getOIFitsCollection();
+            if (!oiFitsCollection.isEmpty()) {
+                restoreSnapshot(oiFitsCollection, getFilePaths(oiFitsCollection.getSortedOIFitsFiles()));
+            }
+        }
+    }
+
+    /**
+     * Restore the pending snapshot if it matches the given collection. The pending snapshot is cleared
+     * once restored or as soon as the collection has files out of the snapshot;
+     * it is kept while the collection is still partially loaded.
+     * @param oiFitsCollection current OIFitsCollection (not empty)
+     * @param filePaths absolute file paths of the loaded OIFits files
+     */
+    private void restoreSnapshot(final OIFitsCollection oiFitsCollection, final List<String> filePaths) {
+        final SessionSnapshot snapshot = pendingSnapshot;
+
+        if (!snapshot.containsAll(filePaths)) {
+            logger.info("session snapshot ignored: loaded files differ");
+            pendingSnapshot = null;
+            return;
+        }
+        if (filePaths.size() != snapshot.getFingerprints().size()) {
+            logger.debug("session snapshot: waiting for {} files", snapshot.getFingerprints().size() - filePaths.size());
+            return;
+        }
+        // restore only once:
+        pendingSnapshot = null;
+        logger.info("restoring session snapshot ({} files)", filePaths.size());
+
+        // files are unchanged since the snapshot was validated (keep its content sums):
+        for (Map.Entry<String, OIFitsFileFingerprint> e : snapshot.getFingerprints().entrySet()) {
+            final OIFitsFileFingerprint fingerprint = e.getValue();
+
+            if (fingerprint.matches(fingerprints.get(e.getKey())) || !fingerprints.containsKey(e.getKey())) {
+                fingerprints.put(e.getKey(), fingerprint);
+
+                if (fingerprint.getContentSum() != null) {
+                    pendingContentSums.remove(e.getKey());
+                }
+            }
+        }
+
+        if (snapshot.getColumnStatistics() != null) {
+            TaskSwingWorkerExecutor.cancelTask(TASK_COLUMN_STATS);
+            columnStatistics = snapshot.getColumnStatistics();
+            columnRanges.clear();
+        }
+
+        final Map<String, GranuleStatistics> statsPerKey = snapshot.getGranuleStatistics();
+        if (statsPerKey != null && granuleStatistics == null) {
+            final Set<Granule> granules = oiFitsCollection.getOiDataPerGranule().keySet();
+            final Map<Granule, GranuleStatistics> stats = new HashMap<Granule, GranuleStatistics>(2 * granules.size());
+
+            for (Granule granule : granules) {
+                final GranuleStatistics gs = statsPerKey.get(SessionSnapshot.getGranuleKey(granule));
+                if (gs == null) {
+                    logger.info("session snapshot: missing statistics for granule {}", granule);
+                    return;
+                }
+                stats.put(granule, gs);
+            }
+            // ambiguous keys (same names but different granules) are not restored:
+            if (stats.size() == granules.size() && statsPerKey.size() == granules.size()) {
+                granuleStatistics = stats;
+            }
+        }
+    }
+
+    /**
+     * Create a session snapshot from the current OIFitsCollection and its analysis
+     * (column statistics catalog and granule statistics)
+     * @return new session snapshot
+     */
+    public SessionSnapshot createSnapshot() {
+        final OIFitsCollection oiFitsCollection = ocm.getOIFitsCollection();
+        final List<OIFitsFile> oiFitsFiles = oiFitsCollection.getSortedOIFitsFiles();
+
+        final Map<String, OIFitsFileFingerprint> fileFingerprints = new LinkedHashMap<String, OIFitsFileFingerprint>(oiFitsFiles.size());
+        for (OIFitsFile oiFitsFile : oiFitsFiles) {
+            final String filePath = oiFitsFile.getAbsoluteFilePath();
+            // use the fingerprint of the loaded content:
+            final OIFitsFileFingerprint fingerprint = fingerprints.get(filePath);
+            if (fingerprint != null) {
+                fileFingerprints.put(filePath, fingerprint);
+            }
+        }
+
+        Map<String, GranuleStatistics> statsPerKey = null;
+        if (granuleStatistics != null) {
+            statsPerKey = new HashMap<String, GranuleStatistics>(2 * granuleStatistics.size());
+            for (Map.Entry<Granule, GranuleStatistics> e : granuleStatistics.entrySet()) {
+                statsPerKey.put(SessionSnapshot.getGranuleKey(e.getKey()), e.getValue());
+            }
+        }
+        return new SessionSnapshot(fileFingerprints, columnStatistics, statsPerKey);
+    }
+
+    /**
+     * Return the absolute file paths of the given OIFits files
+     * @param oiFitsFiles OIFits files
+     * @return absolute file paths
+     */
+    private static List<String> getFilePaths(final List<OIFitsFile> oiFitsFiles) {
+        final List<String> filePaths = new ArrayList<String>(oiFitsFiles.size());
+        for (OIFitsFile oiFitsFile : oiFitsFiles) {
+            if (oiFitsFile.getAbsoluteFilePath() != null) {
+                filePaths.add(oiFitsFile.getAbsoluteFilePath());
+            }
+        }
+        return filePaths;
+    }
+
+    /**
+     * Reset the cached values for the given collection and restore the pending snapshot if it is still valid
+     * @param oiFitsCollection new OIFitsCollection
+     */
+    private void reset(final OIFitsCollection oiFitsCollection) {
+        version++;
+        columnRanges.clear();
+        distinctValues.clear();
+        searchIndex = null;
+        bucketIndex = null;
+        sortIndex = null;
+        granuleSnapshot = null;
+        columnStatistics = null;
+        granuleStatistics = null;
+
+        final List<OIFitsFile> oiFitsFiles = oiFitsCollection.getSortedOIFitsFiles();
+        final List<String> filePaths = getFilePaths(oiFitsFiles);
+
+        // forget removed files:
+        final Set<String> loaded = new HashSet<String>(filePaths);
+        fingerprints.keySet().retainAll(loaded);
+        pendingContentSums.keySet().retainAll(loaded);
+
+        // use the fingerprints captured before loading files:
+        for (String filePath : filePaths) {
+            final OIFitsFileFingerprint fingerprint = loadFingerprints.remove(filePath);
+            if (fingerprint != null) {
+                fingerprints.put(filePath, fingerprint);
+                pendingContentSums.put(filePath, fingerprint);
+            }
+        }
+
+        if (pendingSnapshot != null && !filePaths.isEmpty()) {
+            restoreSnapshot(oiFitsCollection, filePaths);
+        }
+
+        // read the content sums of newly loaded files in background:
+        if (pendingContentSums.isEmpty()) {
+            TaskSwingWorkerExecutor.cancelTask(TASK_FINGERPRINTS);
+        } else {
+            new FingerprintSwingWorker(this, pendingContentSums, version).executeTask();
+        }
+
+        if (columnStatistics == null) {
+            buildColumnStatistics(oiFitsFiles);
+        }
+
+        if (oiFitsCollection.isEmpty()) {
+            TaskSwingWorkerExecutor.cancelTask(TASK_BUCKET_INDEX);
+        } else {
+            new BucketIndexSwingWorker(this, getGranuleSnapshot(), version).executeTask();
+        }
+    }
+
+    /**
+     * Define the bucket index if the collection did not change and notify listeners
+     * @param index bucket index
+     * @param taskVersion collection version when the task started
+     */
+    private void bucketIndexBuilt(final GranuleBucketIndex index, final int taskVersion) {
+        if (taskVersion == version) {
+            bucketIndex = index;
+
+            final ChangeEvent ce = new ChangeEvent(this);
+            for (ChangeListener listener : new ArrayList<ChangeListener>(bucketIndexListeners)) {
+                listener.stateChanged(ce);
+            }
+        }
+    }
+
+    /**
+     * This worker builds the bucket index of the derived grouping fields in background
+     */
+    private static final class BucketIndexSwingWorker extends TaskSwingWorker<GranuleBucketIndex> {
+
+        /* members */
+        /** collection index to update */
+        private final OIFitsCollectionIndex index;
+        /** immutable snapshot of the OIData tables per granule */
+        private final Map<Granule, Set<OIData>> oiDataPerGranule;
+        /** collection version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param index collection index to update
+         * @param oiDataPerGranule immutable snapshot of the OIData tables per granule
+         * @param version collection version
+         */
+        private BucketIndexSwingWorker(final OIFitsCollectionIndex index, final Map<Granule, Set<OIData>> oiDataPerGranule,
+                                       final int version) {
+            super(TASK_BUCKET_INDEX);
+            this.index = index;
+            this.oiDataPerGranule = oiDataPerGranule;
+            this.version = version;
+        }
+
+        /**
+         * Build the bucket index.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return bucket index
+         */
+        @Override
+        public GranuleBucketIndex computeInBackground() {
+            return GranuleBucketIndex.build(oiDataPerGranule);
+        }
+
+        /**
+         * Define the bucket index.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param bucketIndex bucket index
+         */
+        @Override
+        public void refreshUI(final GranuleBucketIndex bucketIndex) {
+            if (bucketIndex != null) {
+                index.bucketIndexBuilt(bucketIndex, version);
+            }
+        }
+    }
+
+    /**
+     * Build in background the column statistics catalog of the given OIFits files; cancels any pending build
+     * @param oiFitsFiles OIFits files of the collection
+     */
+    private void buildColumnStatistics(final List<OIFitsFile> oiFitsFiles) {
+        final List<OIData> oiDatas = new ArrayList<OIData>();
+        for (OIFitsFile oiFitsFile : oiFitsFiles) {
+            oiDatas.addAll(Arrays.asList(oiFitsFile.getOiDatas()));
+        }
+        if (oiDatas.isEmpty()) {
+            TaskSwingWorkerExecutor.cancelTask(TASK_COLUMN_STATS);
+            return;
+        }
+
+        // numerical columns (special columns first):
+        final Set<String> columnNames = new LinkedHashSet<String>();
+        for (String specialName : Selector.SPECIAL_COLUMN_NAMES) {
+            if (Selector.isRangeFilter(specialName)) {
+                columnNames.add(specialName);
+            }
+        }
+        // default data model:
+        columnNames.addAll(SelectorResult.getDataModel(null).getNumericalColumnNames());
+
+        new ColumnStatisticsSwingWorker(this, oiDatas, new ArrayList<String>(columnNames), version).executeTask();
+    }
+
+    /**
+     * Define the column statistics catalog if the collection did not change
+     * @param catalog column statistics catalog
+     * @param taskVersion collection version when the task started
+     */
+    private void columnStatisticsBuilt(final ColumnStatisticsCatalog catalog, final int taskVersion) {
+        if (taskVersion == version) {
+            columnStatistics = catalog;
+        }
+    }
+
+    /**
+     * This worker builds the column statistics catalog in background using parallel jobs
+     */
+    private static final class ColumnStatisticsSwingWorker extends TaskSwingWorker<ColumnStatisticsCatalog> {
+
+        /* members */
+        /** collection index to update */
+        private final OIFitsCollectionIndex index;
+        /** OIData tables of the collection */
+        private final List<OIData> oiDatas;
+        /** numerical column names */
+        private final List<String> columnNames;
+        /** collection version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param index collection index to update
+         * @param oiDatas OIData tables of the collection
+         * @param columnNames numerical column names
+         * @param version collection version
+         */
+        private ColumnStatisticsSwingWorker(final OIFitsCollectionIndex index, final List<OIData> oiDatas,
+                                            final List<String> columnNames, final int version) {
+            super(TASK_COLUMN_STATS);
+            this.index = index;
+            this.oiDatas = oiDatas;
+            this.columnNames = columnNames;
+            this.version = version;
+        }
+
+        /**
+         * Build the column statistics catalog.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return catalog or null if interrupted
+         */
+        @Override
+        public ColumnStatisticsCatalog computeInBackground() {
+            return ColumnStatisticsCatalog.build(oiDatas, columnNames);
+        }
+
+        /**
+         * Define the column statistics catalog.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param catalog column statistics catalog or null if interrupted
+         */
+        @Override
+        public void refreshUI(final ColumnStatisticsCatalog catalog) {
+            if (catalog != null) {
+                index.columnStatisticsBuilt(catalog, version);
+            }
+        }
+    }
+
+    /**
+     * Define the fingerprints completed in background if the collection did not change
+     * (fingerprints modified meanwhile are kept)
+     * @param filePaths absolute paths of the processed files
+     * @param completed fingerprints with their content sum keyed by absolute file path
+     * @param taskVersion collection version when the task started
+     */
+    private void fingerprintsCompleted(final List<String> filePaths, final Map<String, OIFitsFileFingerprint> completed,
+                                       final int taskVersion) {
+        if (taskVersion == version) {
+            // content sums are read only once (undefined without DATASUM keywords):
+            pendingContentSums.keySet().removeAll(filePaths);
+
+            for (Map.Entry<String, OIFitsFileFingerprint> e : completed.entrySet()) {
+                if (e.getValue().matches(fingerprints.get(e.getKey()))) {
+                    fingerprints.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * This worker reads the content sums of loaded files using parallel jobs
+     */
+    private static final class FingerprintSwingWorker extends TaskSwingWorker<Map<String, OIFitsFileFingerprint>> {
+
+        /* members */
+        /** collection index to update */
+        private final OIFitsCollectionIndex index;
+        /** absolute file paths */
+        private final List<String> filePaths;
+        /** fingerprints captured when files were loaded (same order) */
+        private final List<OIFitsFileFingerprint> loadedFingerprints;
+        /** collection version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param index collection index to update
+         * @param fingerprints fingerprints captured when files were loaded keyed by absolute file path
+         * @param version collection version
+         */
+        private FingerprintSwingWorker(final OIFitsCollectionIndex index, final Map<String, OIFitsFileFingerprint> fingerprints,
+                                       final int version) {
+            super(TASK_FINGERPRINTS);
+            this.index = index;
+            this.filePaths = new ArrayList<String>(fingerprints.keySet());
+            this.loadedFingerprints = new ArrayList<OIFitsFileFingerprint>(fingerprints.values());
+            this.version = version;
+        }
+
+        /**
+         * Read the content sums of the files unchanged since they were loaded.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return completed fingerprints keyed by absolute file path or null if interrupted
+         */
+        @Override
+        public Map<String, OIFitsFileFingerprint> computeInBackground() {
+            final long startTime = System.nanoTime();
+
+            final int nFiles = filePaths.size();
+            final OIFitsFileFingerprint[] results = new OIFitsFileFingerprint[nFiles];
+
+            final int nJobs = 1 + (nFiles - 1) / FILES_PER_JOB;
+            final Callable<?>[] jobs = new Callable<?>[nJobs];
+
+            for (int j = 0; j < nJobs; j++) {
+                final int from = j * FILES_PER_JOB;
+                final int to = Math.min(from + FILES_PER_JOB, nFiles);
+
+                jobs[j] = new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = from; i < to; i++) {
+                            results[i] = loadedFingerprints.get(i).withContentSum(new File(filePaths.get(i)));
+                        }
+                        return Boolean.TRUE;
+                    }
+                };
+            }
+
+            if (nJobs == 1) {
+                try {
+                    jobs[0].call();
+                } catch (Exception e) {
+                    throw new IllegalStateException("fingerprint failure", e);
+                }
+            } else if (ParallelJobExecutor.getInstance().forkAndJoin("OIFitsCollectionIndex.fingerprints", jobs) == null) {
+                // interrupted:
+                return null;
+            }
+
+            final Map<String, OIFitsFileFingerprint> completed = new HashMap<String, OIFitsFileFingerprint>(2 * nFiles);
+            for (int i = 0; i < nFiles; i++) {
+                if (results[i] != null) {
+                    completed.put(filePaths.get(i), results[i]);
+                }
+            }
+            logger.info("content sums: {} files - duration = {} ms.", nFiles, 1e-6d * (System.nanoTime() - startTime));
+            return completed;
+        }
+
+        /**
+         * Define the completed fingerprints.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param completed fingerprints or null if interrupted
+         */
+        @Override
+        public void refreshUI(final Map<String, OIFitsFileFingerprint> completed) {
+            if (completed != null) {
+                index.fingerprintsCompleted(filePaths, completed, version);
+            }
+        }
+    }
+
+    /**
+     * This worker reads the session snapshot and checks that its OIFits files did not change on disk
+     */
+    private static final class SnapshotSwingWorker extends TaskSwingWorker<SessionSnapshot> {
+
+        /* members */
+        /** collection index to update */
+        private final OIFitsCollectionIndex index;
+        /** session snapshot file */
+        private final File snapshotFile;
+        /** snapshot version */
+        private final int version;
+
+        /**
+         * Hidden constructor
+         * @param index collection index to update
+         * @param snapshotFile session snapshot file
+         * @param version snapshot version
+         */
+        private SnapshotSwingWorker(final OIFitsCollectionIndex index, final File snapshotFile, final int version) {
+            super(TASK_SNAPSHOT);
+            this.index = index;
+            this.snapshotFile = snapshotFile;
+            this.version = version;
+        }
+
+        /**
+         * Read and validate the session snapshot.
+         * This code is executed by a Worker thread (Not Swing EDT)
+         * @return valid snapshot or null
+         */
+        @Override
+        public SessionSnapshot computeInBackground() {
+            final SessionSnapshot snapshot = SessionSnapshot.read(snapshotFile);
+            if (snapshot != null && !snapshot.getFingerprints().isEmpty() && snapshot.isUpToDate()) {
+                return snapshot;
+            }
+            logger.info("session snapshot outdated or invalid: {}", snapshotFile);
+            return null;
+        }
+
+        /**
+         * Restore the session snapshot.
+         * This code is executed by the Swing Event Dispatcher thread (EDT)
+         * @param snapshot valid snapshot or null
+         */
+        @Override
+        public void refreshUI(final SessionSnapshot snapshot) {
+            if (snapshot != null) {
+                index.snapshotValidated(snapshot, version);
+            }
+        }
+    }
+
+    /*
+     * OIFitsCollectionManagerEventListener implementation
+     */
+    /**
+     * Return the optional subject id i.e. related object id that this listener accepts
+     * @param type event type
+     * @return subject id (null means accept any event) or DISCARDED_SUBJECT_ID to discard event
+     */
+    @Override
+    public String getSubjectId(final OIFitsCollectionManagerEventType type) {
+        // accept all
+        return null;
+    }
+
+    /**
+     * Handle the given OIFits collection event
+     * @param event OIFits collection event
+     */
+    @Override
+    public void onProcess(final OIFitsCollectionManagerEvent event) {
+        logger.debug("onProcess {}", event);
+
+        switch (event.getType()) {
+            case COLLECTION_CHANGED:
+                reset(event.getOIFitsCollection());
+                break;
+            default:
+        }
+        logger.debug("onProcess {} - done", event);
+    }
+}
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.nom.tam.fits.FitsException;
+import fr.nom.tam.fits.Header;
+import fr.nom.tam.fits.HeaderCard;
+import fr.nom.tam.util.ArrayDataInput;
+import fr.nom.tam.util.BufferedDataInputStream;
+import fr.nom.tam.util.BufferedFile;
+import fr.nom.tam.util.Cursor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a lightweight fingerprint of an OIFits file on disk:
+ * its size, its last modification date and optionally a content sum of all its HDUs
+ * (checksum of the header cards and DATASUM keyword).
+ *
+ * The size and date identify the loaded file (see matches()); they must be captured before the file is read.
+ * The content sum only tells if a touched file (new date) still has the same content (see sameContent()):
+ * any header change (including CHECKSUM) or DATASUM change makes the content different.
+ */
+public final class OIFitsFileFingerprint {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(OIFitsFileFingerprint.class.getName());
+    /** max number of HDUs */
+    private static final int MAX_HDUS = 1000;
+
+    /* members */
+    /** file size (bytes) */
+    private final long size;
+    /** last modification date (ms) */
+    private final long lastModified;
+    /** optional content sum of all HDUs (header checksum:DATASUM) separated by ',' (null if DATASUM is undefined in any HDU) */
+    private final String contentSum;
+
+    /**
+     * Private constructor
+     * @param size file size (bytes)
+     * @param lastModified last modification date (ms)
+     * @param contentSum optional content sum
+     */
+    private OIFitsFileFingerprint(final long size, final long lastModified, final String contentSum) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentSum = contentSum;
+    }
+
+    /**
+     * Return the fingerprint of the given file
+     * @param file file to inspect
+     * @param useContentSum true to read the headers of all HDUs (data units are skipped)
+     * @return fingerprint or null if the file does not exist
+     */
+    public static OIFitsFileFingerprint of(final File file, final boolean useContentSum) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        return new OIFitsFileFingerprint(file.length(), file.lastModified(), (useContentSum) ? readContentSum(file) : null);
+    }
+
+    /**
+     * Return the fingerprints (size and date only) of the given local files, to be captured just before loading them
+     * @param files files to inspect
+     * @return fingerprints keyed by absolute file path (missing files are ignored)
+     */
+    public static Map<String, OIFitsFileFingerprint> of(final Collection<File> files) {
+        final Map<String, OIFitsFileFingerprint> fingerprints = new HashMap<String, OIFitsFileFingerprint>(2 * files.size());
+        for (File file : files) {
+            final OIFitsFileFingerprint fingerprint = of(file, false);
+            if (fingerprint != null) {
+                fingerprints.put(file.getAbsolutePath(), fingerprint);
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Return a copy of this fingerprint completed with the content sum of the given file if the file still has
+     * the same size and date before and after its headers are read: the content sum then describes the content
+     * identified by this fingerprint.
+     * @param file file to inspect
+     * @return completed fingerprint or null if the file changed or its content sum is undefined
+     */
+    public OIFitsFileFingerprint withContentSum(final File file) {
+        if (!matches(of(file, false))) {
+            return null;
+        }
+        final String sum = readContentSum(file);
+        if (sum == null || !matches(of(file, false))) {
+            return null;
+        }
+        return new OIFitsFileFingerprint(size, lastModified, sum);
+    }
+
+    /**
+     * Write this fingerprint (see SessionSnapshot)
+     * @param out output
+     * @throws IOException if any I/O error occurs
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        out.writeBoolean(contentSum != null);
+        if (contentSum != null) {
+            out.writeUTF(contentSum);
+        }
+    }
+
+    /**
+     * Read a fingerprint written by write()
+     * @param in input
+     * @return fingerprint
+     * @throws IOException if any I/O error occurs
+     */
+    static OIFitsFileFingerprint read(final DataInput in) throws IOException {
+        final long size = in.readLong();
+        final long lastModified = in.readLong();
+        final String contentSum = (in.readBoolean()) ? in.readUTF() : null;
+        return new OIFitsFileFingerprint(size, lastModified, contentSum);
+    }
+
+    /**
+     * Return the file size (bytes)
+     * @return file size (bytes)
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the last modification date (ms)
+     * @return last modification date (ms)
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Return the optional content sum of all HDUs
+     * @return content sum or null if undefined
+     */
+    public String getContentSum() {
+        return contentSum;
+    }
+
+    /**
+     * Return true if the given fingerprint corresponds to the same file: same size and same last modification date
+     * @param other other fingerprint
+     * @return true if both fingerprints match
+     */
+    public boolean matches(final OIFitsFileFingerprint other) {
+        return other != null && this.size == other.size && this.lastModified == other.lastModified;
+    }
+
+    /**
+     * Return true if the given fingerprint has the same content (touched file):
+     * same size and both content sums defined and equal
+     * @param other other fingerprint
+     * @return true if both fingerprints have the same content
+     */
+    public boolean sameContent(final OIFitsFileFingerprint other) {
+        return other != null && this.size == other.size
+                && this.contentSum != null && this.contentSum.equals(other.contentSum);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof OIFitsFileFingerprint)) {
+            return false;
+        }
+        final OIFitsFileFingerprint other = (OIFitsFileFingerprint) obj;
+        return this.size == other.size && this.lastModified == other.lastModified
+                && ((this.contentSum == null) ? other.contentSum == null : this.contentSum.equals(other.contentSum));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + (int) (this.size ^ (this.size >>> 32));
+        hash = 31 * hash + (int) (this.lastModified ^ (this.lastModified >>> 32));
+        hash = 31 * hash + ((this.contentSum != null) ? this.contentSum.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "OIFitsFileFingerprint[size=" + size + ", lastModified=" + lastModified + ", contentSum=" + contentSum + ']';
+    }
+
+    /**
+     * Read the content sum of all HDUs of the given FITS file (gzip supported): headers are read (nom.tam)
+     * and data units are skipped
+     * @param file FITS file
+     * @return header checksums and DATASUM values separated by ',' or null if DATASUM is undefined in any HDU or any failure
+     */
+    static String readContentSum(final File file) {
+        ArrayDataInput in = null;
+        try {
+            in = (isGzipped(file)) ? new BufferedDataInputStream(new GZIPInputStream(new FileInputStream(file))) : new BufferedFile(file);
+
+            final CRC32 crc = new CRC32();
+            final StringBuilder sb = new StringBuilder(24 * 8);
+
+            for (int hdu = 0; hdu < MAX_HDUS; hdu++) {
+                final Header header = Header.readHeader(in);
+                if (header == null) {
+                    // end of file:
+                    return (hdu == 0) ? null : sb.toString();
+                }
+                final String dataSum = header.getStringValue("DATASUM");
+                if (dataSum == null) {
+                    return null;
+                }
+                crc.reset();
+                for (Cursor<String, HeaderCard> it = header.iterator(); it.hasNext();) {
+                    crc.update(it.next().toString().getBytes(StandardCharsets.US_ASCII));
+                }
+                if (hdu != 0) {
+                    sb.append(',');
+                }
+                sb.append(Long.toHexString(crc.getValue())).append(':').append(dataSum);
+
+                // skip the data unit (padded to FITS blocks):
+                in.skipAllBytes(header.getDataSize());
+            }
+        } catch (FitsException fe) {
+            logger.debug("Unable to read headers in file: {}", file, fe);
+        } catch (IOException ioe) {
+            logger.debug("Unable to read headers in file: {}", file, ioe);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    logger.debug("close failure:", ioe);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return true if the given file starts with the gzip magic number
+     * @param file file to inspect
+     * @return true if the given file is gzipped
+     * @throws IOException if any I/O error occurs
+     */
+    private static boolean isGzipped(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        } finally {
+            in.close();
+        }
+    }
+}
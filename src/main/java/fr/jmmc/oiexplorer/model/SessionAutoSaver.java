@@ -0,0 +1,422 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.jmcs.gui.util.SwingUtils;
+import fr.jmmc.oiexplorer.Preferences;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManager;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEvent;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventListener;
+import fr.jmmc.oiexplorer.core.model.OIFitsCollectionManagerEventType;
+import fr.jmmc.oiexplorer.core.model.oi.Identifiable;
+import fr.jmmc.oiexplorer.core.model.oi.OIDataFile;
+import fr.jmmc.oiexplorer.core.model.oi.OiDataCollection;
+import fr.jmmc.oiexplorer.core.model.oi.Plot;
+import fr.jmmc.oiexplorer.core.model.oi.SubsetDefinition;
+import fr.jmmc.oiexplorer.core.model.plot.PlotDefinition;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.Timer;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class saves automatically the current OIFits Explorer collection (OiDataCollection) in background:
+ * changes (collection, subsets, plots) are debounced using a Swing timer, then a copy of the collection is taken
+ * on the EDT (cloned files, subsets, plot definitions and plots: no shared state with the writer) and
+ * a dedicated thread marshals it into a temporary file (unique per process) renamed atomically.
+ * Only the latest pending content is written if changes arrive while a write is in progress.
+ *
+ * A marker file indicates that the autosaved session has unsaved changes (not saved by the user or closed abnormally)
+ * so that it can be restored at the next startup (see RestoreSessionAction).
+ *
+ * Note: the autosave file is stored in the user home directory (see getAutoSaveFile()).
+ */
+public final class SessionAutoSaver implements OIFitsCollectionManagerEventListener {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(SessionAutoSaver.class.getName());
+    /** autosave file name (user home directory) */
+    private static final String AUTOSAVE_FILE_NAME = ".fr.jmmc.oiexplorer.autosave.oixp";
+    /** unsaved marker file extension appended to the autosave file name */
+    private static final String UNSAVED_EXTENSION = ".unsaved";
+    /** singleton instance */
+    private static SessionAutoSaver _instance = null;
+
+    /* members */
+    /** OIFitsCollectionManager singleton reference */
+    private final OIFitsCollectionManager ocm = OIFitsCollectionManager.getInstance();
+    /** debounce timer (EDT) */
+    private final Timer timer;
+    /** single writer thread */
+    private final ExecutorService writer;
+    /** latest content to write (null if none) */
+    private final AtomicReference<AutoSaveContent> pending = new AtomicReference<AutoSaveContent>();
+    /** lock ordering writes (writer thread and stop()) */
+    private final Object writeLock = new Object();
+    /** sequence number of the last written content (guarded by writeLock) */
+    private long writtenSeq = 0L;
+    /** sequence number of the last collection copy (EDT) */
+    private long seq = 0L;
+    /** lazy JAXB context (guarded by writeLock) */
+    private JAXBContext jaxbContext = null;
+    /** true if the session changed since the last user save or load (EDT) */
+    private boolean modified = false;
+
+    /**
+     * Return the singleton instance
+     * @return singleton instance
+     */
+    public static synchronized SessionAutoSaver getInstance() {
+        if (_instance == null) {
+            _instance = new SessionAutoSaver();
+        }
+        return _instance;
+    }
+
+    /**
+     * Mark the current session as saved (user save or load) if the autosave is started
+     */
+    public static void markSessionSaved() {
+        if (_instance != null) {
+            _instance.markSaved();
+        }
+    }
+
+    /**
+     * Return the autosave file
+     * @return autosave file
+     */
+    public static File getAutoSaveFile() {
+        return new File(System.getProperty("user.home"), AUTOSAVE_FILE_NAME);
+    }
+
+    /**
+     * Return the marker file indicating unsaved changes in the autosave file
+     * @return marker file
+     */
+    private static File getUnsavedMarkerFile() {
+        return new File(System.getProperty("user.home"), AUTOSAVE_FILE_NAME + UNSAVED_EXTENSION);
+    }
+
+    /**
+     * Private constructor
+     */
+    private SessionAutoSaver() {
+        // register through the event batch (single dispatch point, see OIFitsCollectionEventBatch):
+        final OIFitsCollectionManagerEventListener eventListener = OIFitsCollectionEventBatch.getInstance().getListener(this);
+        ocm.bindCollectionChangedEvent(eventListener);
+        ocm.getSubsetDefinitionChangedEventNotifier().register(eventListener);
+        ocm.getPlotChangedEventNotifier().register(eventListener);
+        ocm.bindPlotListChangedEvent(eventListener);
+
+        this.timer = new Timer(getDelay(), new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent ae) {
+                takeSnapshot();
+            }
+        });
+        this.timer.setRepeats(false);
+
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "OIFitsExplorer-AutoSave");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Free any ressource or reference to this instance :
+     * remove this instance from OIFitsCollectionManager event notifiers
+     */
+    @Override
+    public void dispose() {
+        OIFitsCollectionEventBatch.getInstance().unbind(this);
+    }
+
+    /**
+     * Stop the autosave: stop the writer thread and write the pending changes directly
+     * (a single small file, at most after the write in progress).
+     * Must be called from the Swing Event Dispatcher Thread (see OIFitsExplorer.cleanup())
+     */
+    public void stop() {
+        dispose();
+
+        if (timer.isRunning()) {
+            timer.stop();
+            final AutoSaveContent content = copyCollection();
+            if (content != null) {
+                pending.set(content);
+            }
+        }
+        writer.shutdownNow();
+
+        final AutoSaveContent latest = pending.getAndSet(null);
+        if (latest != null) {
+            write(latest);
+        } else if (!modified) {
+            deleteUnsavedMarker();
+        }
+    }
+
+    /**
+     * Return true if the session has changed since the last user save or load
+     * @return true if the session has unsaved changes
+     */
+    public boolean isModified() {
+        return modified && !ocm.getOIFitsCollection().isEmpty();
+    }
+
+    /**
+     * Return true if the autosaved session has unsaved changes (previous session closed without saving)
+     * @return true if the autosaved session can be restored
+     */
+    public boolean hasUnsavedSession() {
+        return getAutoSaveFile().isFile() && getUnsavedMarkerFile().isFile();
+    }
+
+    /**
+     * Forget the unsaved changes of the autosaved session (restore declined)
+     */
+    public void discardUnsavedSession() {
+        deleteUnsavedMarker();
+    }
+
+    /**
+     * Mark the current session as saved: done later on the EDT so that the events
+     * fired by the load or save are processed first
+     */
+    private void markSaved() {
+        SwingUtils.invokeLaterEDT(new Runnable() {
+            @Override
+            public void run() {
+                modified = false;
+                // update the marker with the next autosave:
+                scheduleSave();
+            }
+        });
+    }
+
+    /**
+     * Return the debounce delay (ms) from preferences
+     * @return debounce delay (ms)
+     */
+    private static int getDelay() {
+        return Math.max(100, Preferences.getInstance().getPreferenceAsInt(Preferences.SESSION_AUTOSAVE_DELAY));
+    }
+
+    /**
+     * Schedule an autosave: restart the debounce timer
+     */
+    private void scheduleSave() {
+        if (Preferences.getInstance().getPreferenceAsBoolean(Preferences.SESSION_AUTOSAVE)) {
+            timer.setInitialDelay(getDelay());
+            timer.restart();
+        }
+    }
+
+    /**
+     * Copy the current collection (EDT) and submit it to the writer thread
+     */
+    private void takeSnapshot() {
+        final AutoSaveContent content = copyCollection();
+        if (content == null) {
+            return;
+        }
+        // only the latest content is written:
+        if (pending.getAndSet(content) == null) {
+            try {
+                writer.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        final AutoSaveContent latest = pending.getAndSet(null);
+                        if (latest != null) {
+                            write(latest);
+                        }
+                    }
+                });
+            } catch (RuntimeException re) {
+                // rejected (stopped):
+                logger.debug("autosave: writer stopped", re);
+            }
+        }
+    }
+
+    /**
+     * Copy the current collection (EDT): cloned files, subsets, plot definitions and plots
+     * so that the writer thread marshals a collection no longer modified by the EDT
+     * @return content to write or null if the collection is empty
+     */
+    private AutoSaveContent copyCollection() {
+        if (ocm.getOIFitsCollection().isEmpty()) {
+            // keep the previous autosave (startup, new collection ...):
+            return null;
+        }
+        final OiDataCollection userCollection = ocm.getUserCollection();
+        final OiDataCollection copy = new OiDataCollection();
+
+        for (OIDataFile dataFile : userCollection.getFiles()) {
+            copy.getFiles().add(Identifiable.clone(dataFile));
+        }
+        for (SubsetDefinition subsetDefinition : userCollection.getSubsetDefinitions()) {
+            copy.getSubsetDefinitions().add(Identifiable.clone(subsetDefinition));
+        }
+        for (PlotDefinition plotDefinition : userCollection.getPlotDefinitions()) {
+            copy.getPlotDefinitions().add(Identifiable.clone(plotDefinition));
+        }
+        for (Plot plot : userCollection.getPlots()) {
+            copy.getPlots().add(Identifiable.clone(plot));
+        }
+        return new AutoSaveContent(++seq, copy, modified);
+    }
+
+    /**
+     * Marshal the given content into the autosave file (writer thread or stop())
+     * using a temporary file unique per process; older contents are ignored
+     * @param content content to write
+     */
+    private void write(final AutoSaveContent content) {
+        final long startTime = System.nanoTime();
+
+        final File file = getAutoSaveFile();
+
+        synchronized (writeLock) {
+            if (content.seq <= writtenSeq) {
+                // obsolete:
+                return;
+            }
+            File tmpFile = null;
+            try {
+                if (jaxbContext == null) {
+                    jaxbContext = JAXBContext.newInstance(OiDataCollection.class.getPackage().getName());
+                }
+                final Marshaller marshaller = jaxbContext.createMarshaller();
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+
+                tmpFile = File.createTempFile(AUTOSAVE_FILE_NAME, ".tmp", file.getParentFile());
+
+                final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024);
+                try {
+                    marshaller.marshal(content.collection, out);
+                } finally {
+                    out.close();
+                }
+                try {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException amnse) {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                writtenSeq = content.seq;
+
+                if (content.unsaved) {
+                    if (!getUnsavedMarkerFile().isFile() && !getUnsavedMarkerFile().createNewFile()) {
+                        logger.debug("autosave: could not create the marker file");
+                    }
+                } else {
+                    deleteUnsavedMarker();
+                }
+                logger.info("autosave[{}]: duration = {} ms.", file, 1e-6d * (System.nanoTime() - startTime));
+
+            } catch (JAXBException je) {
+                logger.warn("autosave: could not marshal the collection", je);
+            } catch (IOException ioe) {
+                logger.warn("autosave: could not write the file: {}", file, ioe);
+            } finally {
+                if (tmpFile != null && tmpFile.exists() && !tmpFile.delete()) {
+                    logger.debug("autosave: could not delete the temporary file: {}", tmpFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the unsaved marker file if present
+     */
+    private static void deleteUnsavedMarker() {
+        final File marker = getUnsavedMarkerFile();
+        if (marker.exists() && !marker.delete()) {
+            logger.debug("autosave: could not delete the marker file: {}", marker);
+        }
+    }
+
+    /**
+     * Collection copy to write
+     */
+    private static final class AutoSaveContent {
+
+        /* members */
+        /** sequence number */
+        final long seq;
+        /** collection copy (not shared with the EDT) */
+        final OiDataCollection collection;
+        /** true if the session has unsaved changes */
+        final boolean unsaved;
+
+        /**
+         * Constructor
+         * @param seq sequence number
+         * @param collection collection copy
+         * @param unsaved true if the session has unsaved changes
+         */
+        AutoSaveContent(final long seq, final OiDataCollection collection, final boolean unsaved) {
+            this.seq = seq;
+            this.collection = collection;
+            this.unsaved = unsaved;
+        }
+    }
+
+    /*
+     * OIFitsCollectionManagerEventListener implementation
+     */
+    /**
+     * Return the optional subject id i.e. related object id that this listener accepts
+     * @param type event type
+     * @return subject id (null means accept any event) or DISCARDED_SUBJECT_ID to discard event
+     */
+    @Override
+    public String getSubjectId(final OIFitsCollectionManagerEventType type) {
+        // accept all
+        return null;
+    }
+
+    /**
+     * Handle the given OIFits collection event
+     * @param event OIFits collection event
+     */
+    @Override
+    public void onProcess(final OIFitsCollectionManagerEvent event) {
+        logger.debug("onProcess {}", event);
+
+        switch (event.getType()) {
+            case COLLECTION_CHANGED:
+            case SUBSET_CHANGED:
+            case PLOT_CHANGED:
+            case PLOT_LIST_CHANGED:
+                modified = true;
+                scheduleSave();
+                break;
+            default:
+        }
+        logger.debug("onProcess {} - done", event);
+    }
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.Granule.GranuleField;
+import fr.jmmc.oitools.model.InstrumentMode;
+import fr.jmmc.oitools.model.NightId;
+import fr.jmmc.oitools.model.Target;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents the binary session snapshot saved next to an OIFits Explorer collection (oixp):
+ * it gathers the per-file fingerprints and the analysis built from the loaded OIFitsCollection
+ * (column statistics catalog, granule statistics) so that it is not computed again when the collection
+ * is reopened while its OIFits files are unchanged.
+ * Only this derived analysis is restored, once the OIFits files are loaded: the OIFits data and the granule tree
+ * always come from the OIFits loader.
+ *
+ * The file format is explicit (gzipped DataOutputStream): magic number, format version, then counted sections;
+ * any unexpected content makes the whole snapshot ignored (no java serialization).
+ *
+ * Note: this class is immutable (thread-safe).
+ */
+public final class SessionSnapshot {
+
+    /** Class logger */
+    private static final Logger logger = LoggerFactory.getLogger(SessionSnapshot.class.getName());
+    /** snapshot file extension appended to the oixp file name */
+    public final static String SNAPSHOT_EXTENSION = ".snapshot";
+    /** magic number ('OIXS') */
+    final static int MAGIC = 0x4F495853;
+    /** format version */
+    final static int FORMAT_VERSION = 3;
+    /** maximum number of entries in any section (sanity check) */
+    private final static int MAX_COUNT = 1000000;
+
+    /* members */
+    /** fingerprints keyed by absolute file path */
+    private final Map<String, OIFitsFileFingerprint> fingerprints;
+    /** column statistics catalog or null if not built */
+    private final ColumnStatisticsCatalog columnStatistics;
+    /** granule statistics keyed by granule key (see getGranuleKey()) or null if not computed */
+    private final Map<String, GranuleStatistics> granuleStatistics;
+
+    /**
+     * Constructor (see OIFitsCollectionIndex.createSnapshot())
+     * @param fingerprints fingerprints keyed by absolute file path
+     * @param columnStatistics column statistics catalog or null if not built
+     * @param granuleStatistics granule statistics keyed by granule key or null if not computed
+     */
+    SessionSnapshot(final Map<String, OIFitsFileFingerprint> fingerprints,
+                    final ColumnStatisticsCatalog columnStatistics,
+                    final Map<String, GranuleStatistics> granuleStatistics) {
+        this.fingerprints = Collections.unmodifiableMap(new LinkedHashMap<String, OIFitsFileFingerprint>(fingerprints));
+        this.columnStatistics = columnStatistics;
+        this.granuleStatistics = (granuleStatistics != null)
+                ? Collections.unmodifiableMap(new HashMap<String, GranuleStatistics>(granuleStatistics)) : null;
+    }
+
+    /**
+     * Return the fingerprints keyed by absolute file path
+     * @return fingerprints keyed by absolute file path
+     */
+    public Map<String, OIFitsFileFingerprint> getFingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * Return the column statistics catalog
+     * @return column statistics catalog or null if not built
+     */
+    public ColumnStatisticsCatalog getColumnStatistics() {
+        return columnStatistics;
+    }
+
+    /**
+     * Return the granule statistics keyed by granule key (see getGranuleKey())
+     * @return granule statistics keyed by granule key or null if not computed
+     */
+    public Map<String, GranuleStatistics> getGranuleStatistics() {
+        return granuleStatistics;
+    }
+
+    /**
+     * Return true if this snapshot contains all the given files
+     * @param filePaths absolute file paths of the loaded OIFits files
+     * @return true if every given file belongs to this snapshot
+     */
+    public boolean containsAll(final Collection<String> filePaths) {
+        return fingerprints.keySet().containsAll(filePaths);
+    }
+
+    /**
+     * Return true if none of the files of this snapshot changed on disk (size and date only: file contents are not read).
+     * Note: this method performs I/O, do not call it from the Swing EDT
+     * @return true if this snapshot is still valid
+     */
+    public boolean isUpToDate() {
+        for (Map.Entry<String, OIFitsFileFingerprint> e : fingerprints.entrySet()) {
+            final OIFitsFileFingerprint fingerprint = e.getValue();
+
+            if (!fingerprint.matches(OIFitsFileFingerprint.of(new File(e.getKey()), false))) {
+                logger.debug("snapshot: modified file {}", e.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the stable key of the given granule (target name, instrument name and night)
+     * used to restore granule statistics
+     * @param granule granule
+     * @return granule key
+     */
+    public static String getGranuleKey(final Granule granule) {
+        final StringBuilder sb = new StringBuilder(64);
+
+        final Object target = granule.getField(GranuleField.TARGET);
+        sb.append((target instanceof Target) ? ((Target) target).getTarget() : String.valueOf(target)).append('|');
+
+        final Object insMode = granule.getField(GranuleField.INS_MODE);
+        sb.append((insMode instanceof InstrumentMode) ? ((InstrumentMode) insMode).getInsName() : String.valueOf(insMode)).append('|');
+
+        final Object night = granule.getField(GranuleField.NIGHT);
+        sb.append((night instanceof NightId) ? String.valueOf(((NightId) night).getNightId()) : String.valueOf(night));
+
+        return sb.toString();
+    }
+
+    /**
+     * Return the snapshot file associated to the given OIFits Explorer collection file
+     * @param oixpFile OIFits Explorer collection file
+     * @return snapshot file
+     */
+    public static File getSnapshotFile(final File oixpFile) {
+        return new File(oixpFile.getAbsoluteFile().getParentFile(), oixpFile.getName() + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Write the given snapshot into the given file.
+     * The file is first written in a temporary file then renamed.
+     * @param file file to write
+     * @param snapshot snapshot to save
+     * @throws IOException if any I/O error occurs
+     */
+    public static void write(final File file, final SessionSnapshot snapshot) throws IOException {
+        final long startTime = System.nanoTime();
+
+        final File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            final DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                out.writeInt(snapshot.fingerprints.size());
+                for (Map.Entry<String, OIFitsFileFingerprint> e : snapshot.fingerprints.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    e.getValue().write(out);
+                }
+
+                out.writeBoolean(snapshot.columnStatistics != null);
+                if (snapshot.columnStatistics != null) {
+                    snapshot.columnStatistics.write(out);
+                }
+
+                out.writeBoolean(snapshot.granuleStatistics != null);
+                if (snapshot.granuleStatistics != null) {
+                    out.writeInt(snapshot.granuleStatistics.size());
+                    for (Map.Entry<String, GranuleStatistics> e : snapshot.granuleStatistics.entrySet()) {
+                        out.writeUTF(e.getKey());
+                        e.getValue().write(out);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                logger.debug("Could not delete the temporary file: {}", tmpFile);
+            }
+        }
+
+        logger.info("write snapshot[{}]: duration = {} ms.", file, 1e-6d * (System.nanoTime() - startTime));
+    }
+
+    /**
+     * Read the snapshot stored in the given file.
+     * Note: this method performs I/O, do not call it from the Swing EDT
+     * @param file file to read
+     * @return snapshot or null if the file does not exist or is invalid
+     */
+    public static SessionSnapshot read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        final long startTime = System.nanoTime();
+        try {
+            final DataInputStream in = new DataInputStream(new GZIPInputStream(
+                    new BufferedInputStream(new FileInputStream(file), 64 * 1024)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Invalid snapshot header");
+                }
+                final int formatVersion = in.readInt();
+                if (formatVersion != FORMAT_VERSION) {
+                    throw new IOException("Unsupported snapshot version: " + formatVersion);
+                }
+
+                final int nFiles = readCount(in);
+                final Map<String, OIFitsFileFingerprint> fingerprints = new LinkedHashMap<String, OIFitsFileFingerprint>(2 * nFiles);
+                for (int i = 0; i < nFiles; i++) {
+                    final String filePath = in.readUTF();
+                    fingerprints.put(filePath, OIFitsFileFingerprint.read(in));
+                }
+
+                final ColumnStatisticsCatalog columnStatistics = (in.readBoolean()) ? ColumnStatisticsCatalog.read(in) : null;
+
+                Map<String, GranuleStatistics> granuleStatistics = null;
+                if (in.readBoolean()) {
+                    final int nGranules = readCount(in);
+                    granuleStatistics = new HashMap<String, GranuleStatistics>(2 * nGranules);
+                    for (int i = 0; i < nGranules; i++) {
+                        final String key = in.readUTF();
+                        granuleStatistics.put(key, GranuleStatistics.read(in));
+                    }
+                }
+
+                logger.info("read snapshot[{}]: duration = {} ms.", file, 1e-6d * (System.nanoTime() - startTime));
+
+                return new SessionSnapshot(fingerprints, columnStatistics, granuleStatistics);
+            } finally {
+                in.close();
+            }
+        } catch (EOFException eofe) {
+            logger.info("Ignoring truncated snapshot file: {}", file, eofe);
+        } catch (IOException ioe) {
+            logger.info("Ignoring invalid snapshot file: {}", file, ioe);
+        }
+        return null;
+    }
+
+    /**
+     * Read a section count and check its bounds
+     * @param in input
+     * @return count in [0, MAX_COUNT]
+     * @throws IOException if any I/O error occurs or the count is out of bounds
+     */
+    static int readCount(final DataInput in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+}
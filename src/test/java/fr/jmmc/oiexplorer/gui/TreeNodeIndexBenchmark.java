@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui;
+
+import fr.jmmc.jmcs.gui.component.GenericJTree;
+import java.util.List;
+
+/**
+ * Manual benchmark (not run by the test suite): compare the tree build duration using the linear
+ * GenericJTree.findTreeNode() lookups and the hashed TreeNodeIndex lookups on a large synthetic tree.
+ *
+ * Usage: run main() with the test classpath; optional arguments: [nParents] [nTables]
+ */
+public final class TreeNodeIndexBenchmark {
+
+    /** default number of parent nodes (targets) */
+    private static final int N_PARENTS = 4;
+    /** default number of distinct tables per parent */
+    private static final int N_TABLES = 4000;
+    /** number of warmup iterations */
+    private static final int N_WARMUP = 3;
+    /** number of measured iterations */
+    private static final int N_RUNS = 5;
+
+    /**
+     * Forbidden constructor
+     */
+    private TreeNodeIndexBenchmark() {
+        // no-op
+    }
+
+    /**
+     * Run the benchmark
+     * @param args optional [nParents] [nTables]
+     */
+    public static void main(final String[] args) {
+        final int nParents = (args.length > 0) ? Integer.parseInt(args[0]) : N_PARENTS;
+        final int nTables = (args.length > 1) ? Integer.parseInt(args[1]) : N_TABLES;
+
+        final List<Object> tables = TreeNodeIndexTest.createTables(nTables);
+
+        for (int i = 0; i < N_WARMUP; i++) {
+            run(tables, nParents, false);
+            run(tables, nParents, true);
+        }
+
+        double linear = 0.0;
+        double hashed = 0.0;
+        for (int i = 0; i < N_RUNS; i++) {
+            linear += run(tables, nParents, false);
+            hashed += run(tables, nParents, true);
+        }
+        linear /= N_RUNS;
+        hashed /= N_RUNS;
+
+        System.out.println("tree build: " + nParents + " parents x " + nTables + " tables (" + tables.size() + " references)");
+        System.out.println("linear lookups: " + linear + " ms.");
+        System.out.println("hashed lookups: " + hashed + " ms.");
+        System.out.println("speedup: " + (linear / hashed));
+    }
+
+    /**
+     * Build the tree once and return the duration
+     * @param tables synthetic tables
+     * @param nParents number of parent nodes
+     * @param useIndex true to use the hashed lookups
+     * @return duration (ms)
+     */
+    private static double run(final List<Object> tables, final int nParents, final boolean useIndex) {
+        final GenericJTree<Object> tree = new GenericJTree<Object>(null);
+
+        final long startTime = System.nanoTime();
+        if (useIndex) {
+            TreeNodeIndexTest.buildHashed(tree, tables, nParents);
+        } else {
+            TreeNodeIndexTest.buildLinear(tree, tables, nParents);
+        }
+        return 1e-6d * (System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.gui;
+
+import fr.jmmc.jmcs.gui.component.GenericJTree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Check that the hashed child lookups (TreeNodeIndex) build the same tree
+ * as the linear GenericJTree.findTreeNode() lookups
+ */
+public final class TreeNodeIndexTest {
+
+    /** number of parent nodes (targets) */
+    private static final int N_PARENTS = 3;
+    /** number of distinct tables per parent */
+    private static final int N_TABLES = 5;
+
+    @Test
+    public void testSameTree() {
+        final List<Object> tables = createTables(N_TABLES);
+
+        final GenericJTree<Object> linearTree = new GenericJTree<Object>(null);
+        final GenericJTree<Object> hashedTree = new GenericJTree<Object>(null);
+
+        buildLinear(linearTree, tables, N_PARENTS);
+        buildHashed(hashedTree, tables, N_PARENTS);
+
+        assertSameChildren(linearTree.getRootNode(), hashedTree.getRootNode());
+        Assert.assertEquals(N_PARENTS, hashedTree.getRootNode().getChildCount());
+        Assert.assertEquals(N_TABLES, hashedTree.getRootNode().getFirstChild().getChildCount());
+    }
+
+    /**
+     * Synthetic tables: distinct objects (identity equality like OITable) each referenced twice
+     * (duplicated references as tables shared by several granules)
+     */
+    static List<Object> createTables(final int nTables) {
+        final List<Object> tables = new ArrayList<Object>(2 * nTables);
+        for (int i = 0; i < nTables; i++) {
+            final Object table = new Object();
+            tables.add(table);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    static void buildLinear(final GenericJTree<Object> tree, final List<Object> tables, final int nParents) {
+        for (int p = 0; p < nParents; p++) {
+            final DefaultMutableTreeNode parent = tree.addNode(tree.getRootNode(), "target-" + p);
+            for (Object table : tables) {
+                if (GenericJTree.findTreeNode(parent, table) == null) {
+                    tree.addNode(parent, table);
+                }
+            }
+        }
+    }
+
+    static void buildHashed(final GenericJTree<Object> tree, final List<Object> tables, final int nParents) {
+        final TreeNodeIndex nodeIndex = new TreeNodeIndex();
+        for (int p = 0; p < nParents; p++) {
+            final DefaultMutableTreeNode parent = nodeIndex.addNode(tree, tree.getRootNode(), "target-" + p);
+            for (Object table : tables) {
+                if (nodeIndex.findChild(parent, table) == null) {
+                    nodeIndex.addNode(tree, parent, table);
+                }
+            }
+        }
+    }
+
+    private static void assertSameChildren(final DefaultMutableTreeNode expected, final DefaultMutableTreeNode actual) {
+        Assert.assertEquals(expected.getChildCount(), actual.getChildCount());
+        for (int i = 0, len = expected.getChildCount(); i < len; i++) {
+            final DefaultMutableTreeNode expectedChild = (DefaultMutableTreeNode) expected.getChildAt(i);
+            final DefaultMutableTreeNode actualChild = (DefaultMutableTreeNode) actual.getChildAt(i);
+            Assert.assertEquals(expectedChild.getUserObject(), actualChild.getUserObject());
+            assertSameChildren(expectedChild, actualChild);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.plot.Range;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual benchmark (not run by the test suite): compare the per-point evaluation of accepted ranges
+ * interpreted over the Range list and compiled by FilterPredicate on a large synthetic column.
+ *
+ * Usage: run main() with the test classpath; optional arguments: [nPoints] [nRanges]
+ */
+public final class FilterPredicateBenchmark {
+
+    /** default number of data points */
+    private static final int N_POINTS = 4000000;
+    /** default number of accepted ranges */
+    private static final int N_RANGES = 3;
+    /** number of warmup iterations */
+    private static final int N_WARMUP = 3;
+    /** number of measured iterations */
+    private static final int N_RUNS = 5;
+
+    /**
+     * Forbidden constructor
+     */
+    private FilterPredicateBenchmark() {
+        // no-op
+    }
+
+    /**
+     * Run the benchmark
+     * @param args optional [nPoints] [nRanges]
+     */
+    public static void main(final String[] args) {
+        final int nPoints = (args.length > 0) ? Integer.parseInt(args[0]) : N_POINTS;
+        final int nRanges = (args.length > 1) ? Integer.parseInt(args[1]) : N_RANGES;
+
+        final Random random = new Random(1L);
+
+        final double[] values = new double[nPoints];
+        for (int i = 0; i < nPoints; i++) {
+            // 1% NaN:
+            values[i] = (random.nextInt(100) == 0) ? Double.NaN : random.nextDouble();
+        }
+
+        final List<Range> ranges = new ArrayList<Range>(nRanges);
+        for (int i = 0; i < nRanges; i++) {
+            final Range range = new Range();
+            range.setMin((i + 0.25) / nRanges);
+            range.setMax((i + 0.75) / nRanges);
+            ranges.add(range);
+        }
+        final FilterPredicate predicate = FilterPredicate.compileRanges("TEST", ranges);
+
+        long nInterpreted = 0L;
+        long nCompiled = 0L;
+        for (int i = 0; i < N_WARMUP; i++) {
+            nInterpreted = runInterpreted(values, ranges);
+            nCompiled = runCompiled(values, predicate);
+        }
+        if (nInterpreted != nCompiled) {
+            throw new IllegalStateException("accepted points differ: " + nInterpreted + " <> " + nCompiled);
+        }
+
+        double interpreted = 0.0;
+        double compiled = 0.0;
+        for (int i = 0; i < N_RUNS; i++) {
+            long startTime = System.nanoTime();
+            runInterpreted(values, ranges);
+            interpreted += 1e-6d * (System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            runCompiled(values, predicate);
+            compiled += 1e-6d * (System.nanoTime() - startTime);
+        }
+        interpreted /= N_RUNS;
+        compiled /= N_RUNS;
+
+        System.out.println("filter evaluation: " + nPoints + " points x " + nRanges + " ranges (" + nCompiled + " accepted)");
+        System.out.println("interpreted ranges: " + interpreted + " ms.");
+        System.out.println("compiled predicate: " + compiled + " ms.");
+        System.out.println("speedup: " + (interpreted / compiled));
+    }
+
+    /**
+     * Count the accepted points by iterating the Range list for every value
+     * @param values column values
+     * @param ranges accepted ranges
+     * @return number of accepted points
+     */
+    private static long runInterpreted(final double[] values, final List<Range> ranges) {
+        long nAccepted = 0L;
+        for (double value : values) {
+            for (Range range : ranges) {
+                if ((Double.isNaN(range.getMin()) || value >= range.getMin())
+                        && (Double.isNaN(range.getMax()) || value <= range.getMax()) && !Double.isNaN(value)) {
+                    nAccepted++;
+                    break;
+                }
+            }
+        }
+        return nAccepted;
+    }
+
+    /**
+     * Count the accepted points using the compiled predicate
+     * @param values column values
+     * @param predicate compiled predicate
+     * @return number of accepted points
+     */
+    private static long runCompiled(final double[] values, final FilterPredicate predicate) {
+        long nAccepted = 0L;
+        for (double value : values) {
+            if (predicate.accept(value)) {
+                nAccepted++;
+            }
+        }
+        return nAccepted;
+    }
+}
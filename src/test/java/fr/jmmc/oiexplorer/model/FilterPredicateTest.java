@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.oi.DataType;
+import fr.jmmc.oiexplorer.core.model.oi.GenericFilter;
+import fr.jmmc.oiexplorer.core.model.plot.Range;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Check the compiled generic filters (FilterPredicate) on small deterministic cases
+ */
+public final class FilterPredicateTest {
+
+    @Test
+    public void testOverlappingUnsortedRanges() {
+        // unsorted, [1, 2] and [1.5, 3] overlap:
+        final FilterPredicate predicate = compileRanges(createRange(5.0, 6.0), createRange(1.0, 2.0), createRange(1.5, 3.0));
+
+        Assert.assertFalse(predicate.accept(0.5));
+        Assert.assertTrue(predicate.accept(1.0));
+        Assert.assertTrue(predicate.accept(2.5));
+        Assert.assertTrue(predicate.accept(3.0));
+        Assert.assertFalse(predicate.accept(4.0));
+        Assert.assertTrue(predicate.accept(5.0));
+        Assert.assertTrue(predicate.accept(6.0));
+        Assert.assertFalse(predicate.accept(6.5));
+    }
+
+    @Test
+    public void testSingleRange() {
+        final FilterPredicate predicate = compileRanges(createRange(1.0, 2.0));
+
+        Assert.assertFalse(predicate.accept(0.999));
+        Assert.assertTrue(predicate.accept(1.0));
+        Assert.assertTrue(predicate.accept(2.0));
+        Assert.assertFalse(predicate.accept(2.001));
+    }
+
+    @Test
+    public void testNaNBounds() {
+        // undefined bounds are open:
+        final FilterPredicate predicate = compileRanges(createRange(Double.NaN, -10.0), createRange(10.0, Double.NaN));
+
+        Assert.assertTrue(predicate.accept(Double.NEGATIVE_INFINITY));
+        Assert.assertTrue(predicate.accept(-10.0));
+        Assert.assertFalse(predicate.accept(0.0));
+        Assert.assertTrue(predicate.accept(10.0));
+        Assert.assertTrue(predicate.accept(Double.POSITIVE_INFINITY));
+
+        // fully undefined range accepts any defined value:
+        final FilterPredicate any = compileRanges(createRange(Double.NaN, Double.NaN));
+        Assert.assertTrue(any.accept(-1e300));
+        Assert.assertTrue(any.accept(1e300));
+    }
+
+    @Test
+    public void testInvalidAndEmptyRanges() {
+        // min > max is ignored:
+        final FilterPredicate inverted = compileRanges(createRange(2.0, 1.0));
+        Assert.assertFalse(inverted.accept(1.5));
+
+        final FilterPredicate none = FilterPredicate.compileRanges("TEST", Collections.<Range>emptyList());
+        Assert.assertFalse(none.accept(0.0));
+        Assert.assertFalse(none.overlaps(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testNaNValues() {
+        Assert.assertFalse(compileRanges(createRange(1.0, 2.0)).accept(Double.NaN));
+        Assert.assertFalse(compileRanges(createRange(1.0, 2.0), createRange(3.0, 4.0)).accept(Double.NaN));
+        Assert.assertFalse(compileRanges(createRange(Double.NaN, Double.NaN)).accept(Double.NaN));
+    }
+
+    @Test
+    public void testStringValues() {
+        final GenericFilter filter = new GenericFilter();
+        filter.setColumnName("INSNAME");
+        filter.setDataType(DataType.STRING);
+        filter.getAcceptedValues().add(" GRAVITY_SC ");
+        filter.getAcceptedValues().add("PIONIER");
+
+        final FilterPredicate predicate = FilterPredicate.compile(filter);
+
+        Assert.assertTrue(predicate.isString());
+        Assert.assertEquals("INSNAME", predicate.getColumnName());
+        Assert.assertTrue(predicate.accept("GRAVITY_SC"));
+        Assert.assertTrue(predicate.accept("PIONIER  "));
+        Assert.assertFalse(predicate.accept("pionier"));
+        Assert.assertFalse(predicate.accept("GRAVITY_FT"));
+        Assert.assertFalse(predicate.accept((String) null));
+    }
+
+    private static FilterPredicate compileRanges(final Range... ranges) {
+        final List<Range> list = new ArrayList<Range>(ranges.length);
+        Collections.addAll(list, ranges);
+        return FilterPredicate.compileRanges("TEST", list);
+    }
+
+    private static Range createRange(final double min, final double max) {
+        final Range range = new Range();
+        range.setMin(min);
+        range.setMax(max);
+        return range;
+    }
+}
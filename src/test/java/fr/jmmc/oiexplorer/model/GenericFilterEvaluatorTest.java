@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oiexplorer.core.model.oi.DataType;
+import fr.jmmc.oiexplorer.core.model.oi.GenericFilter;
+import fr.jmmc.oiexplorer.core.model.plot.Range;
+import fr.jmmc.oitools.model.OIData;
+import fr.jmmc.oitools.model.OIFitsFile;
+import fr.jmmc.oitools.model.OIFitsLoader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Check that the compiled generic filters (GenericFilterEvaluator) accept the same data points as the interpreted
+ * evaluation of the accepted ranges on the test OIFits files
+ */
+public final class GenericFilterEvaluatorTest {
+
+    /** test OIFits files (src/test/resources) */
+    private static final String[] FILES = new String[]{
+        "2008-Contest_Binary.fits",
+        "Mystery-Med_H-AmberVISPHI.oifits.gz"
+    };
+
+    /* members */
+    /** OIData tables of the test files */
+    private static List<OIData> oiDatas;
+
+    @BeforeClass
+    public static void loadTables() throws Exception {
+        final File dir = new File("src/test/resources");
+
+        oiDatas = new ArrayList<OIData>();
+        for (String fileName : FILES) {
+            final OIFitsFile oiFitsFile = OIFitsLoader.loadOIFits(new File(dir, fileName).getAbsolutePath());
+            oiDatas.addAll(Arrays.asList(oiFitsFile.getOiDatas()));
+        }
+        Assert.assertFalse(oiDatas.isEmpty());
+    }
+
+    @Test
+    public void testNoFilter() {
+        final long[] counts = GenericFilterEvaluator.compile(Collections.<GenericFilter>emptyList()).countAccepted(oiDatas);
+
+        Assert.assertEquals(counts[1], counts[0]);
+        Assert.assertEquals(getTotalPoints(), counts[1]);
+    }
+
+    @Test
+    public void testSameAsInterpreted() {
+        final ColumnStatisticsCatalog catalog = ColumnStatisticsCatalog.build(oiDatas, Arrays.asList("EFF_WAVE", "VIS2DATA", "MJD"));
+
+        final List<List<GenericFilter>> filterSets = new ArrayList<List<GenericFilter>>();
+        filterSets.add(Arrays.asList(createFilter("EFF_WAVE", catalog, 0.25, 0.75)));
+        filterSets.add(Arrays.asList(createFilter("VIS2DATA", catalog, 0.0, 0.5), createFilter("VIS2DATA", catalog, 0.4, 0.9)));
+        filterSets.add(Arrays.asList(createFilter("MJD", catalog, 0.1, 0.6), createFilter("EFF_WAVE", catalog, 0.5, 1.0)));
+
+        // disabled filters are ignored:
+        final GenericFilter disabled = createFilter("EFF_WAVE", catalog, 0.0, 0.1);
+        disabled.setEnabled(false);
+        filterSets.add(Arrays.asList(disabled, createFilter("MJD", catalog, 0.0, 0.5)));
+
+        for (List<GenericFilter> filters : filterSets) {
+            final GenericFilterEvaluator evaluator = GenericFilterEvaluator.compile(filters);
+
+            long expected = 0L;
+            for (OIData oiData : oiDatas) {
+                final long nAccepted = countInterpreted(oiData, filters);
+                Assert.assertEquals(oiData.toString(), nAccepted, evaluator.countAccepted(oiData));
+                expected += nAccepted;
+            }
+            final long[] counts = evaluator.countAccepted(oiDatas);
+            Assert.assertEquals(expected, counts[0]);
+            Assert.assertEquals(getTotalPoints(), counts[1]);
+        }
+    }
+
+    @Test
+    public void testStringFiltersIgnored() {
+        final GenericFilter filter = new GenericFilter();
+        filter.setEnabled(true);
+        filter.setColumnName("INSNAME");
+        filter.setDataType(DataType.STRING);
+        filter.getAcceptedValues().add("UNKNOWN");
+
+        final long[] counts = GenericFilterEvaluator.compile(Arrays.asList(filter)).countAccepted(oiDatas);
+        Assert.assertEquals(counts[1], counts[0]);
+    }
+
+    /**
+     * Count the accepted points by iterating the accepted ranges of every filter for every value
+     * @param oiData OIData table
+     * @param filters generic filters (enabled numerical ones are evaluated)
+     * @return number of accepted points
+     */
+    private static long countInterpreted(final OIData oiData, final List<GenericFilter> filters) {
+        long nAccepted = 0L;
+        for (int r = 0, nRows = oiData.getNbRows(); r < nRows; r++) {
+            for (int w = 0, nWaves = oiData.getNWave(); w < nWaves; w++) {
+                boolean accepted = true;
+                for (GenericFilter filter : filters) {
+                    final double[][] values = OIDataColumns.getDoubles(oiData, filter.getColumnName());
+                    if (filter.isEnabled() && values != null) {
+                        final double value = (values[r].length == 1) ? values[r][0] : values[r][w];
+                        boolean inRange = false;
+                        for (Range range : filter.getAcceptedRanges()) {
+                            if ((Double.isNaN(range.getMin()) || value >= range.getMin())
+                                    && (Double.isNaN(range.getMax()) || value <= range.getMax()) && !Double.isNaN(value)) {
+                                inRange = true;
+                            }
+                        }
+                        accepted &= inRange;
+                    }
+                }
+                if (accepted) {
+                    nAccepted++;
+                }
+            }
+        }
+        return nAccepted;
+    }
+
+    private static long getTotalPoints() {
+        long nPoints = 0L;
+        for (OIData oiData : oiDatas) {
+            nPoints += ((long) oiData.getNbRows()) * oiData.getNWave();
+        }
+        return nPoints;
+    }
+
+    /**
+     * Create a numerical filter accepting the given fraction [from, to] of the column range
+     * @param columnName column name
+     * @param catalog column statistics
+     * @param from start fraction
+     * @param to end fraction
+     * @return generic filter
+     */
+    private static GenericFilter createFilter(final String columnName, final ColumnStatisticsCatalog catalog,
+                                              final double from, final double to) {
+        final ColumnStatistics stats = catalog.get(columnName);
+        Assert.assertNotNull(columnName, stats);
+
+        final double width = stats.getMax() - stats.getMin();
+        final Range range = new Range();
+        range.setMin(stats.getMin() + from * width);
+        range.setMax(stats.getMin() + to * width);
+
+        final GenericFilter filter = new GenericFilter();
+        filter.setEnabled(true);
+        filter.setColumnName(columnName);
+        filter.setDataType(DataType.NUMERIC);
+        filter.getAcceptedRanges().add(range);
+        return filter;
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the GranuleSearchIndex matching rules: prefix of any word start, case folding and aliases
+ */
+public final class GranuleSearchIndexTest {
+
+    /** target value */
+    private static final Object TARGET = "target:HD 1234";
+    /** other target value */
+    private static final Object OTHER_TARGET = "target:Alpha Cen";
+    /** instrument mode value */
+    private static final Object INS_MODE = "insMode:GRAVITY_FT";
+
+    /* members */
+    /** search index */
+    private GranuleSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new GranuleSearchIndex();
+        index.add("HD 1234", TARGET);
+        // aliases:
+        index.add("HIP 5678", TARGET);
+        index.add("Alpha Cen", OTHER_TARGET);
+        index.add("Rigil Kentaurus", OTHER_TARGET);
+        index.add("GRAVITY_FT", INS_MODE);
+    }
+
+    @Test
+    public void testWordStart() {
+        assertMatches("hd", TARGET);
+        assertMatches("1234", TARGET);
+        assertMatches("12", TARGET);
+        assertMatches("cen", OTHER_TARGET);
+        // '_' separates words:
+        assertMatches("ft", INS_MODE);
+        // not a word start:
+        assertMatches("234");
+        assertMatches("lpha");
+    }
+
+    @Test
+    public void testCaseFolding() {
+        assertMatches("ALPHA", OTHER_TARGET);
+        assertMatches("Gravity", INS_MODE);
+        assertMatches("  hd 12  ", TARGET);
+    }
+
+    @Test
+    public void testAliases() {
+        assertMatches("hip", TARGET);
+        assertMatches("5678", TARGET);
+        assertMatches("kent", OTHER_TARGET);
+    }
+
+    @Test
+    public void testSharedPrefix() {
+        // "h" matches "HD 1234" and "HIP 5678" (same target) only once:
+        assertMatches("h", TARGET);
+        assertMatches("g", INS_MODE);
+    }
+
+    @Test
+    public void testEmptyQuery() {
+        Assert.assertNull(index.search(null));
+        Assert.assertNull(index.search(""));
+        Assert.assertNull(index.search("   "));
+    }
+
+    private void assertMatches(final String query, final Object... expected) {
+        final Set<Object> matches = index.search(query);
+        Assert.assertNotNull(matches);
+        Assert.assertEquals("query: '" + query + "'", new HashSet<Object>(Arrays.asList(expected)), matches);
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import fr.jmmc.oitools.model.Granule;
+import fr.jmmc.oitools.model.Granule.GranuleField;
+import fr.jmmc.oitools.model.OIFitsCollection;
+import fr.jmmc.oitools.model.OIFitsLoader;
+import fr.jmmc.oitools.util.GranuleComparator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Check that the rank-based sorted views of GranuleSortIndex equal the GranuleComparator order
+ * (and the GranuleBucketIndex comparator for derived fields), including under concurrent access
+ */
+public final class GranuleSortIndexTest {
+
+    /** test OIFits files (src/test/resources) */
+    private static final String[] FILES = new String[]{
+        "2008-Contest_Binary.fits",
+        "Mystery-Low_HK.oifits.gz",
+        "Mystery-Med_H-AmberVISPHI.oifits.gz",
+        "PRODUCT_Gamma2_Velorum_2.02-2.09micron_2007-03-31T01_39_00.5372.fits"
+    };
+    /** number of concurrent threads */
+    private static final int N_THREADS = 4;
+    /** granule field orders to test */
+    private static final List<List<GranuleGroupingField>> FIELD_ORDERS = Arrays.asList(
+            fields(GranuleField.TARGET),
+            fields(GranuleField.NIGHT),
+            fields(GranuleField.INS_MODE, GranuleField.NIGHT),
+            fields(GranuleField.TARGET, GranuleField.INS_MODE, GranuleField.NIGHT),
+            fields(GranuleField.NIGHT, GranuleField.TARGET, GranuleField.INS_MODE)
+    );
+
+    /* members */
+    /** OIFits collection */
+    private static OIFitsCollection oiFitsCollection;
+
+    @BeforeClass
+    public static void loadCollection() throws Exception {
+        final File dir = new File("src/test/resources");
+
+        oiFitsCollection = new OIFitsCollection();
+        for (String fileName : FILES) {
+            oiFitsCollection.addOIFitsFile(OIFitsLoader.loadOIFits(new File(dir, fileName).getAbsolutePath()));
+        }
+        oiFitsCollection.analyzeCollection();
+
+        Assert.assertFalse(oiFitsCollection.getOiDataPerGranule().isEmpty());
+    }
+
+    @Test
+    public void testSameOrderAsGranuleComparator() {
+        final GranuleSortIndex sortIndex = new GranuleSortIndex(oiFitsCollection.getOiDataPerGranule().keySet());
+
+        for (List<GranuleGroupingField> fields : FIELD_ORDERS) {
+            Assert.assertEquals(fields.toString(), getExpected(fields), sortIndex.getSortedGranules(fields, null));
+            // cached view:
+            Assert.assertSame(sortIndex.getSortedGranules(fields, null), sortIndex.getSortedGranules(fields, null));
+        }
+    }
+
+    @Test
+    public void testDerivedFields() {
+        final GranuleBucketIndex bucketIndex = GranuleBucketIndex.build(oiFitsCollection.getOiDataPerGranule());
+        final GranuleSortIndex sortIndex = new GranuleSortIndex(oiFitsCollection.getOiDataPerGranule().keySet());
+
+        final List<GranuleGroupingField> fields = Arrays.asList(GranuleGroupingField.RUN, GranuleGroupingField.ARRAY_CONF,
+                GranuleGroupingField.of(GranuleField.TARGET));
+
+        final List<Granule> expected = new ArrayList<Granule>(oiFitsCollection.getOiDataPerGranule().keySet());
+        Collections.sort(expected, bucketIndex.getComparator(fields));
+
+        Assert.assertEquals(expected, sortIndex.getSortedGranules(fields, bucketIndex));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final GranuleSortIndex sortIndex = new GranuleSortIndex(oiFitsCollection.getOiDataPerGranule().keySet());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+        try {
+            final List<Future<List<List<Granule>>>> futures = new ArrayList<Future<List<List<Granule>>>>(N_THREADS);
+            for (int t = 0; t < N_THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<List<List<Granule>>>() {
+                    @Override
+                    public List<List<Granule>> call() {
+                        // each thread requests the views in a different order:
+                        final List<List<Granule>> views = new ArrayList<List<Granule>>(FIELD_ORDERS.size());
+                        for (int i = 0, len = FIELD_ORDERS.size(); i < len; i++) {
+                            views.add(sortIndex.getSortedGranules(FIELD_ORDERS.get((i + offset) % len), null));
+                        }
+                        return views;
+                    }
+                }));
+            }
+            for (int t = 0; t < N_THREADS; t++) {
+                final List<List<Granule>> views = futures.get(t).get();
+                for (int i = 0, len = FIELD_ORDERS.size(); i < len; i++) {
+                    final List<GranuleGroupingField> fields = FIELD_ORDERS.get((i + t) % len);
+                    Assert.assertEquals(fields.toString(), getExpected(fields), views.get(i));
+                    // single cached view:
+                    Assert.assertSame(sortIndex.getSortedGranules(fields, null), views.get(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Granule> getExpected(final List<GranuleGroupingField> fields) {
+        final List<GranuleField> granuleFields = new ArrayList<GranuleField>(fields.size());
+        for (GranuleGroupingField field : fields) {
+            granuleFields.add(field.getGranuleField());
+        }
+        final List<Granule> expected = new ArrayList<Granule>(oiFitsCollection.getOiDataPerGranule().keySet());
+        Collections.sort(expected, new GranuleComparator(granuleFields));
+        return expected;
+    }
+
+    private static List<GranuleGroupingField> fields(final GranuleField... granuleFields) {
+        final List<GranuleGroupingField> fields = new ArrayList<GranuleGroupingField>(granuleFields.length);
+        for (GranuleField field : granuleFields) {
+            fields.add(GranuleGroupingField.of(field));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the event batch: coalescing of deferred deliveries, global replay order, nested batches
+ * and actions given to commit(Runnable)
+ */
+public final class OIFitsCollectionEventBatchTest {
+
+    /* members */
+    /** event batch */
+    private final OIFitsCollectionEventBatch batch = OIFitsCollectionEventBatch.getInstance();
+    /** first listener */
+    private final Object listener1 = new Object();
+    /** second listener */
+    private final Object listener2 = new Object();
+    /** recorded deliveries and actions (EDT) */
+    private final List<String> records = new ArrayList<String>();
+
+    @Before
+    public void setUp() throws Exception {
+        // flush any batch left by a previous test:
+        waitEDT();
+        Assert.assertFalse(batch.isActive());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.begin();
+                batch.defer(listener1, "COLLECTION_CHANGED", record("1:COLLECTION_CHANGED#1"));
+                batch.defer(listener2, "COLLECTION_CHANGED", record("2:COLLECTION_CHANGED#1"));
+                batch.defer(listener1, "SUBSET_CHANGED#SUBSET_1", record("1:SUBSET_CHANGED#1"));
+                batch.defer(listener1, "SUBSET_CHANGED#SUBSET_2", record("1:SUBSET_CHANGED#2"));
+                batch.defer(listener1, "COLLECTION_CHANGED", record("1:COLLECTION_CHANGED#2"));
+                batch.defer(listener2, "COLLECTION_CHANGED", record("2:COLLECTION_CHANGED#2"));
+                batch.defer(listener1, "SUBSET_CHANGED#SUBSET_1", record("1:SUBSET_CHANGED#3"));
+                batch.commit();
+
+                Assert.assertTrue(batch.isActive());
+                Assert.assertTrue(records.isEmpty());
+            }
+        });
+        waitEDT();
+
+        // last delivery per listener and subject, in the global order of their last occurrence:
+        Assert.assertEquals(Arrays.asList("1:SUBSET_CHANGED#2", "1:COLLECTION_CHANGED#2", "2:COLLECTION_CHANGED#2",
+                "1:SUBSET_CHANGED#3"), records);
+        Assert.assertFalse(batch.isActive());
+    }
+
+    @Test
+    public void testNestedBatches() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.begin();
+                batch.begin();
+                batch.defer(listener1, "PLOT_LIST_CHANGED", record("1:PLOT_LIST_CHANGED"));
+                batch.commit(record("inner"));
+            }
+        });
+        waitEDT();
+
+        // still open:
+        Assert.assertTrue(batch.isActive());
+        Assert.assertTrue(records.isEmpty());
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.defer(listener2, "ACTIVE_PLOT_CHANGED", record("2:ACTIVE_PLOT_CHANGED"));
+                batch.commit(record("outer"));
+            }
+        });
+        waitEDT();
+
+        // actions run after the replay, in commit order:
+        Assert.assertEquals(Arrays.asList("1:PLOT_LIST_CHANGED", "2:ACTIVE_PLOT_CHANGED", "inner", "outer"), records);
+        Assert.assertFalse(batch.isActive());
+    }
+
+    @Test
+    public void testCommitRunnableOrdering() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.begin();
+                batch.defer(listener1, "COLLECTION_CHANGED", record("1:COLLECTION_CHANGED"));
+                batch.commit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the batch is closed when the action runs:
+                        records.add("ready:" + batch.isActive());
+                    }
+                });
+                // the replay happens after the events already queued on the EDT:
+                records.add("queued");
+            }
+        });
+        waitEDT();
+
+        Assert.assertEquals(Arrays.asList("queued", "1:COLLECTION_CHANGED", "ready:false"), records);
+    }
+
+    @Test
+    public void testCommitWithoutBegin() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.commit(record("action"));
+                Assert.assertEquals(Arrays.asList("action"), records);
+            }
+        });
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                batch.begin();
+                batch.defer(listener1, "COLLECTION_CHANGED", record("1:COLLECTION_CHANGED"));
+                batch.defer(listener2, "COLLECTION_CHANGED", record("2:COLLECTION_CHANGED"));
+                batch.defer(listener1, "PLOT_LIST_CHANGED", record("1:PLOT_LIST_CHANGED"));
+                // unbound listener:
+                batch.discard(listener1);
+                batch.commit();
+            }
+        });
+        waitEDT();
+
+        Assert.assertEquals(Arrays.asList("2:COLLECTION_CHANGED"), records);
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                records.add(name);
+            }
+        };
+    }
+
+    private static void waitEDT() throws Exception {
+        // the flush is posted with invokeLater: wait for it
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                // no-op
+            }
+        });
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * JMMC project ( http://www.jmmc.fr ) - Copyright (C) CNRS.
+ ******************************************************************************/
+package fr.jmmc.oiexplorer.model;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the binary session snapshot format: write / read round trip and rejection of invalid files
+ */
+public final class SessionSnapshotTest {
+
+    /* members */
+    /** temporary directory */
+    private File dir;
+    /** fake OIFits file referenced by the snapshot */
+    private File dataFile;
+    /** snapshot file */
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot").toFile();
+        dataFile = new File(dir, "data.fits");
+        Files.write(dataFile.toPath(), new byte[2880]);
+        snapshotFile = new File(dir, "test.oixp" + SessionSnapshot.SNAPSHOT_EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final SessionSnapshot snapshot = createSnapshot();
+        SessionSnapshot.write(snapshotFile, snapshot);
+
+        final SessionSnapshot read = SessionSnapshot.read(snapshotFile);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(snapshot.getFingerprints(), read.getFingerprints());
+        Assert.assertNull(read.getColumnStatistics());
+        Assert.assertEquals(snapshot.getGranuleStatistics().keySet(), read.getGranuleStatistics().keySet());
+        Assert.assertEquals(0, read.getGranuleStatistics().get("HD1234|AMBER|56000").getNbTables());
+        Assert.assertTrue(read.isUpToDate());
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        SessionSnapshot.write(snapshotFile, createSnapshot());
+
+        Assert.assertTrue(dataFile.setLastModified(dataFile.lastModified() - 60000L));
+
+        final SessionSnapshot read = SessionSnapshot.read(snapshotFile);
+        Assert.assertNotNull(read);
+        Assert.assertFalse(read.isUpToDate());
+    }
+
+    @Test
+    public void testWrongMagic() throws IOException {
+        writeHeader(SessionSnapshot.MAGIC + 1, SessionSnapshot.FORMAT_VERSION);
+        Assert.assertNull(SessionSnapshot.read(snapshotFile));
+    }
+
+    @Test
+    public void testWrongVersion() throws IOException {
+        writeHeader(SessionSnapshot.MAGIC, SessionSnapshot.FORMAT_VERSION + 1);
+        Assert.assertNull(SessionSnapshot.read(snapshotFile));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        SessionSnapshot.write(snapshotFile, createSnapshot());
+
+        final byte[] content = Files.readAllBytes(snapshotFile.toPath());
+        Files.write(snapshotFile.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        Assert.assertNull(SessionSnapshot.read(snapshotFile));
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        final byte[] content = new byte[256];
+        Arrays.fill(content, (byte) 0x55);
+        Files.write(snapshotFile.toPath(), content);
+
+        Assert.assertNull(SessionSnapshot.read(snapshotFile));
+    }
+
+    @Test
+    public void testMissingFile() {
+        Assert.assertNull(SessionSnapshot.read(snapshotFile));
+    }
+
+    private SessionSnapshot createSnapshot() {
+        final Map<String, OIFitsFileFingerprint> fingerprints = new LinkedHashMap<String, OIFitsFileFingerprint>();
+        fingerprints.put(dataFile.getAbsolutePath(), OIFitsFileFingerprint.of(dataFile, false));
+
+        final Map<String, GranuleStatistics> granuleStatistics = new HashMap<String, GranuleStatistics>();
+        granuleStatistics.put("HD1234|AMBER|56000", GranuleStatistics.EMPTY);
+
+        return new SessionSnapshot(fingerprints, null, granuleStatistics);
+    }
+
+    private void writeHeader(final int magic, final int formatVersion) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(snapshotFile)));
+        try {
+            out.writeInt(magic);
+            out.writeInt(formatVersion);
+            out.writeInt(0);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+        } finally {
+            out.close();
+        }
+    }
+}